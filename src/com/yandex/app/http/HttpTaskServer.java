@@ -4,11 +4,15 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.yandex.app.http.adapter.DurationAdapter;
 import com.yandex.app.http.adapter.LocalDateTimeAdapter;
+import com.yandex.app.http.adapter.TaskAdapter;
 import com.yandex.app.http.handler.EpicsHandler;
+import com.yandex.app.http.handler.FreeSlotHandler;
 import com.yandex.app.http.handler.HistoryHandler;
 import com.yandex.app.http.handler.PrioritizedHandler;
 import com.yandex.app.http.handler.SubtasksHandler;
 import com.yandex.app.http.handler.TasksHandler;
+import com.yandex.app.model.Task;
+import com.yandex.app.service.ConcurrentTaskManager;
 import com.yandex.app.service.Managers;
 import com.yandex.app.service.TaskManager;
 import com.sun.net.httpserver.HttpServer;
@@ -16,6 +20,8 @@ import com.sun.net.httpserver.HttpServer;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 /**
  * HTTP-сервер для трекера задач. Принимает запросы на порт 8080 и
@@ -31,9 +37,11 @@ public class HttpTaskServer {
     private static final Gson GSON = new GsonBuilder()
             // Регистрируем адаптеры для Duration и LocalDateTime, чтобы корректно сериализовать
             // и десериализовать эти типы (в JSON Duration представляется количеством минут,
-            // а LocalDateTime — в формате ISO_LOCAL_DATE_TIME).
+            // а LocalDateTime — в формате ISO_LOCAL_DATE_TIME). Задачи всех типов пишутся адаптером,
+            // который переводит хранимые в модели минуты в эти поля.
             .registerTypeAdapter(java.time.Duration.class, new DurationAdapter())
             .registerTypeAdapter(java.time.LocalDateTime.class, new LocalDateTimeAdapter())
+            .registerTypeHierarchyAdapter(Task.class, new TaskAdapter())
             .create();
 
     /**
@@ -45,14 +53,29 @@ public class HttpTaskServer {
      * @throws IOException если не удаётся открыть порт
      */
     public HttpTaskServer(TaskManager manager) throws IOException {
+        this(manager, null);
+    }
+
+    /**
+     * Создаёт HTTP-сервер, обрабатывающий запросы в потоках переданного исполнителя.
+     * Если исполнитель многопоточный, менеджер должен быть потокобезопасным,
+     * например обёрнутым в ConcurrentTaskManager. Исполнитель не завершается в {@link #stop()}.
+     *
+     * @param manager  менеджер задач
+     * @param executor исполнитель запросов или null — обработка в одном служебном потоке сервера
+     * @throws IOException если не удаётся открыть порт
+     */
+    public HttpTaskServer(TaskManager manager, Executor executor) throws IOException {
         TaskManager safeManager = Objects.requireNonNull(manager, "manager must not be null");
         this.server = HttpServer.create(new InetSocketAddress(PORT), 0);
+        server.setExecutor(executor);
         // привязываем обработчики к путям
         server.createContext("/tasks", new TasksHandler(safeManager));
         server.createContext("/subtasks", new SubtasksHandler(safeManager));
         server.createContext("/epics", new EpicsHandler(safeManager));
         server.createContext("/history", new HistoryHandler(safeManager));
         server.createContext("/prioritized", new PrioritizedHandler(safeManager));
+        server.createContext("/free-slot", new FreeSlotHandler(safeManager));
     }
 
     /**
@@ -80,8 +103,9 @@ public class HttpTaskServer {
     }
 
     public static void main(String[] args) throws IOException {
-        TaskManager manager = Managers.getDefault();
-        HttpTaskServer httpServer = new HttpTaskServer(manager);
+        TaskManager manager = new ConcurrentTaskManager(Managers.getDefault());
+        HttpTaskServer httpServer = new HttpTaskServer(manager,
+                Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()));
         httpServer.start();
         System.out.println("HTTP сервер запущен на порту " + PORT);
     }
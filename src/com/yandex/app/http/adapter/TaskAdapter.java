@@ -0,0 +1,122 @@
+package com.yandex.app.http.adapter;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonDeserializationContext;
+import com.google.gson.JsonDeserializer;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonSerializationContext;
+import com.google.gson.JsonSerializer;
+import com.yandex.app.model.Epic;
+import com.yandex.app.model.EpochMinutes;
+import com.yandex.app.model.Subtask;
+import com.yandex.app.model.Task;
+import com.yandex.app.model.TaskStatus;
+
+import java.lang.reflect.Type;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Адаптер для сериализации и десериализации Task, Subtask и Epic.
+ * Модель хранит время в минутах от начала эпохи, а в JSON сохраняется прежний формат полей:
+ * title, description, id, status, duration (число минут), startTime (ISO_LOCAL_DATE_TIME),
+ * у подзадачи дополнительно epicId, у эпика — subtaskIds и endTime. Отсутствующие значения не выводятся.
+ * Класс создаваемого объекта определяется ожидаемым типом: Epic, Subtask или Task.
+ */
+public class TaskAdapter implements JsonSerializer<Task>, JsonDeserializer<Task> {
+    @Override
+    public JsonElement serialize(Task src, Type typeOfSrc, JsonSerializationContext context) {
+        JsonObject json = new JsonObject();
+        // Поля подклассов идут первыми, как при сериализации полей по умолчанию
+        if (src instanceof Subtask subtask) {
+            json.addProperty("epicId", subtask.getEpicId());
+        } else if (src instanceof Epic epic) {
+            JsonArray ids = new JsonArray(epic.getSubtaskCount());
+            epic.forEachSubtaskId(ids::add);
+            json.add("subtaskIds", ids);
+            if (epic.getEndMinute() != Task.NO_TIME) {
+                json.add("endTime", context.serialize(EpochMinutes.toDateTime(epic.getEndMinute()), LocalDateTime.class));
+            }
+        }
+        json.addProperty("title", src.getTitle());
+        json.addProperty("description", src.getDescription());
+        json.addProperty("id", src.getId());
+        json.add("status", context.serialize(src.getStatus(), TaskStatus.class));
+        if (src.getDurationMinutes() != Task.NO_DURATION) {
+            json.add("duration", context.serialize(Duration.ofMinutes(src.getDurationMinutes()), Duration.class));
+        }
+        if (src.getStartMinute() != Task.NO_TIME) {
+            json.add("startTime", context.serialize(EpochMinutes.toDateTime(src.getStartMinute()), LocalDateTime.class));
+        }
+        return json;
+    }
+
+    @Override
+    public Task deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
+        if (json == null || json.isJsonNull()) {
+            return null;
+        }
+        if (!json.isJsonObject()) {
+            throw new JsonParseException("Задача должна быть JSON-объектом");
+        }
+        JsonObject object = json.getAsJsonObject();
+        String title = string(object, "title");
+        String description = string(object, "description");
+        if (title == null || description == null) {
+            throw new JsonParseException("Поля title и description обязательны");
+        }
+        int id = object.has("id") && !object.get("id").isJsonNull() ? number(object, "id") : 0;
+        TaskStatus status = context.deserialize(object.get("status"), TaskStatus.class);
+        Duration duration = context.deserialize(object.get("duration"), Duration.class);
+        LocalDateTime startTime = context.deserialize(object.get("startTime"), LocalDateTime.class);
+
+        try {
+            if (typeOfT == Epic.class) {
+                Epic epic = new Epic(title, description);
+                epic.setId(id);
+                if (status != null) {
+                    epic.setStatus(status);
+                }
+                JsonElement ids = object.get("subtaskIds");
+                if (ids != null && !ids.isJsonNull()) {
+                    if (!ids.isJsonArray()) {
+                        throw new JsonParseException("subtaskIds должен быть массивом id");
+                    }
+                    for (JsonElement subtaskId : ids.getAsJsonArray()) {
+                        epic.addSubtaskId(subtaskId.getAsInt());
+                    }
+                }
+                LocalDateTime endTime = context.deserialize(object.get("endTime"), LocalDateTime.class);
+                epic.updateEpicTime(duration == null ? Task.NO_DURATION : duration.toMinutes(),
+                        startTime == null ? Task.NO_TIME : EpochMinutes.of(startTime),
+                        endTime == null ? Task.NO_TIME : EpochMinutes.of(endTime));
+                return epic;
+            }
+            if (typeOfT == Subtask.class) {
+                return new Subtask(id, title, description, status, duration, startTime, number(object, "epicId"));
+            }
+            return new Task(id, title, description, status, duration, startTime);
+        } catch (IllegalArgumentException | IllegalStateException | UnsupportedOperationException e) {
+            throw new JsonParseException(e.getMessage(), e);
+        }
+    }
+
+    private static String string(JsonObject object, String name) {
+        JsonElement element = object.get(name);
+        return element == null || element.isJsonNull() ? null : element.getAsString();
+    }
+
+    private static int number(JsonObject object, String name) {
+        JsonElement element = object.get(name);
+        if (element == null || element.isJsonNull()) {
+            throw new JsonParseException("Поле " + name + " обязательно");
+        }
+        try {
+            return element.getAsInt();
+        } catch (NumberFormatException | IllegalStateException | UnsupportedOperationException e) {
+            throw new JsonParseException("Некорректное значение поля " + name, e);
+        }
+    }
+}
@@ -9,7 +9,11 @@ import com.yandex.app.service.TaskManager;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.net.URI;
+import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Objects;
 
 /**
@@ -66,6 +70,40 @@ public abstract class BaseHttpHandler implements HttpHandler {
         exchange.close();
     }
 
+    /**
+     * Возвращает код 400.
+     * Используется, когда параметры запроса отсутствуют или имеют неверный формат.
+     *
+     * @param exchange объект обмена HTTP
+     * @param message  текст ошибки
+     * @throws IOException при ошибке отправки
+     */
+    protected void sendBadRequest(HttpExchange exchange, String message) throws IOException {
+        sendResponse(exchange, message, 400);
+    }
+
+    /**
+     * Разбирает параметры строки запроса (?name=value&...) в карту.
+     * Значения декодируются из URL-кодировки; при повторе параметра берётся последнее значение.
+     *
+     * @param uri адрес запроса
+     * @return параметры запроса
+     */
+    protected Map<String, String> queryParams(URI uri) {
+        Map<String, String> params = new HashMap<>();
+        String query = uri.getRawQuery();
+        if (query == null || query.isEmpty()) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
     /**
      * Возвращает код 404.
      * Используется, когда запрашиваемый ресурс отсутствует.
@@ -0,0 +1,70 @@
+package com.yandex.app.http.handler;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.yandex.app.service.TaskManager;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Обработчик HTTP‑запросов для пути /free-slot.
+ * Поддерживает только метод GET с параметрами duration (длительность окна в минутах, обязательный)
+ * и notBefore (время в формате ISO_LOCAL_DATE_TIME, по умолчанию — текущее).
+ * Возвращает 200 и время начала самого раннего свободного окна в виде JSON-строки,
+ * 404 — если окна нет, 400 — если параметры неверны.
+ */
+public class FreeSlotHandler extends BaseHttpHandler {
+
+    public FreeSlotHandler(TaskManager manager) {
+        super(manager);
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        URI uri = exchange.getRequestURI();
+        String path = uri.getPath();
+        if (!"/free-slot".equals(path)) {
+            sendNotFound(exchange, "Неверный путь: " + path);
+            return;
+        }
+        if (!"GET".equals(method)) {
+            // Метод не поддерживается
+            sendResponse(exchange, "", 405);
+            return;
+        }
+
+        Map<String, String> params = queryParams(uri);
+        Duration duration;
+        LocalDateTime notBefore;
+        try {
+            duration = Duration.ofMinutes(Long.parseLong(params.getOrDefault("duration", "")));
+            String notBeforeParam = params.get("notBefore");
+            notBefore = notBeforeParam == null ? LocalDateTime.now() : LocalDateTime.parse(notBeforeParam);
+        } catch (NumberFormatException | DateTimeParseException | ArithmeticException e) {
+            // ArithmeticException — длительность в минутах не помещается в Duration
+            sendBadRequest(exchange, "Ожидаются параметры duration (минуты) и notBefore (дата и время)");
+            return;
+        }
+        if (duration.isNegative() || duration.isZero()) {
+            sendBadRequest(exchange, "Длительность окна должна быть больше нуля");
+            return;
+        }
+
+        try {
+            Optional<LocalDateTime> start = manager.findEarliestFreeSlot(duration, notBefore);
+            if (start.isPresent()) {
+                sendResponse(exchange, gson.toJson(start.get()), 200);
+            } else {
+                sendNotFound(exchange, "Свободное окно не найдено");
+            }
+        } catch (Exception e) {
+            sendServerError(exchange, "Внутренняя ошибка сервера: " + e.getMessage());
+        }
+    }
+}
@@ -5,10 +5,15 @@ import com.yandex.app.service.TaskManager;
 
 import java.io.IOException;
 import java.net.URI;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
 
 /**
  * Обработчик HTTP‑запросов для пути /prioritized.
  * Поддерживает только метод GET, возвращающий список задач в порядке приоритета (по времени начала).
+ * Необязательные параметры from и to (ISO_LOCAL_DATE_TIME) ограничивают время начала задач
+ * интервалом [from, to); при неверном значении возвращается 400.
  * Если запрос выполнен успешно, возвращается статус 200 и JSON‑массив задач.
  * Если метод не поддерживается, возвращается 405.
  */
@@ -28,8 +33,24 @@ public class PrioritizedHandler extends BaseHttpHandler {
             return;
         }
         if ("GET".equals(method)) {
+            Map<String, String> params = queryParams(uri);
+            LocalDateTime from;
+            LocalDateTime to;
+            try {
+                from = params.containsKey("from") ? LocalDateTime.parse(params.get("from")) : null;
+                to = params.containsKey("to") ? LocalDateTime.parse(params.get("to")) : null;
+            } catch (DateTimeParseException e) {
+                sendBadRequest(exchange, "Параметры from и to должны быть датой и временем");
+                return;
+            }
+            if (from != null && to != null && from.isAfter(to)) {
+                sendBadRequest(exchange, "Параметр from позже параметра to");
+                return;
+            }
             // Возвращаем список задач в порядке приоритета
-            String json = gson.toJson(manager.getPrioritizedTasks());
+            String json = gson.toJson(from == null && to == null
+                    ? manager.getPrioritizedTasks()
+                    : manager.getPrioritizedTasks(from, to));
             sendResponse(exchange, json, 200);
         } else {
             // Метод не поддерживается
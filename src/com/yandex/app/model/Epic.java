@@ -1,20 +1,20 @@
 package com.yandex.app.model;
 
-import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.IntConsumer;
 
 /**
- * Класс Epic расширяет Task и хранит список id подзадач.
+ * Класс Epic расширяет Task и хранит множество id подзадач.
  * Используется для группировки подзадач в рамках одной большой задачи.
+ * Id подзадач хранятся в {@link SubtaskIdSet}: добавление, удаление и проверка за O(1),
+ * обход через {@link #forEachSubtaskId(IntConsumer)} без копирования.
  */
 public class Epic extends Task {
-    private List<Integer> subtaskIds = new ArrayList<>();
+    private SubtaskIdSet subtaskIds = new SubtaskIdSet();
 
-    private LocalDateTime endTime; // время завершения эпика (самое позднее из подзадач)
+    private long endMinute = NO_TIME; // время завершения эпика (самое позднее из подзадач) в минутах
 
     /**
      * Конструктор для создания нового эпика.
@@ -34,10 +34,10 @@ public class Epic extends Task {
     public Epic(Epic other) {
         super(other.getTitle(), other.getDescription(), other.getStatus());
         this.setId(other.getId());
-        this.subtaskIds = new ArrayList<>(other.getSubtaskIds());
-        this.duration = other.duration;
-        this.startTime = other.startTime;
-        this.endTime = other.endTime;
+        this.subtaskIds = new SubtaskIdSet(other.ids());
+        this.durationMinutes = other.durationMinutes;
+        this.startMinute = other.startMinute;
+        this.endMinute = other.endMinute;
     }
 
     /**
@@ -46,7 +46,42 @@ public class Epic extends Task {
      * @return список id подзадач эпика
      */
     public List<Integer> getSubtaskIds() {
-        return new ArrayList<>(subtaskIds);
+        return ids().toList();
+    }
+
+    /**
+     * Передаёт id подзадач в порядке добавления, не копируя их.
+     * Изменять состав эпика во время обхода нельзя.
+     *
+     * @param action действие для каждого id подзадачи
+     */
+    public void forEachSubtaskId(IntConsumer action) {
+        ids().forEach(action);
+    }
+
+    /**
+     * Проверяет, входит ли подзадача в эпик.
+     *
+     * @param id id подзадачи
+     * @return true, если подзадача принадлежит эпику
+     */
+    public boolean containsSubtaskId(int id) {
+        return ids().contains(id);
+    }
+
+    /**
+     * Возвращает количество подзадач эпика.
+     */
+    public int getSubtaskCount() {
+        return ids().size();
+    }
+
+    // Десериализатор JSON может оставить поле пустым, если в теле запроса нет subtaskIds
+    private SubtaskIdSet ids() {
+        if (subtaskIds == null) {
+            subtaskIds = new SubtaskIdSet();
+        }
+        return subtaskIds;
     }
 
     @Override
@@ -55,7 +90,7 @@ public class Epic extends Task {
     }
 
     /**
-     * Добавляет id в список подзадач эпика.
+     * Добавляет id в множество подзадач эпика. Повторное добавление ничего не меняет.
      *
      * @throws IllegalArgumentException если переданный id совпадает с id самого эпика
      */
@@ -63,24 +98,24 @@ public class Epic extends Task {
         if (id == this.getId()) {
             throw new IllegalArgumentException("Эпик не может содержать сам себя как подзадачу");
         }
-        subtaskIds.add(id);
+        ids().add(id);
     }
 
     /**
-     * Удаляет id из списка подзадач эпика.
+     * Удаляет id из множества подзадач эпика.
      *
      * @param id id подзадачи для удаления
      */
     public void removeSubtaskId(int id) {
-        subtaskIds.remove(Integer.valueOf(id));
+        ids().remove(id);
     }
 
     /**
-     * Очищает список подзадач эпика.
+     * Очищает множество подзадач эпика.
      * После вызова этого метода эпик не будет содержать никаких подзадач.
      */
     public void clearSubtasks() {
-        subtaskIds.clear();
+        ids().clear();
     }
 
     /**
@@ -90,35 +125,41 @@ public class Epic extends Task {
      * @param subtasks список всех подзадач эпика
      */
     public void updateEpicTime(List<Subtask> subtasks) {
-        if (subtasks == null || subtasks.isEmpty()) {
-            this.duration = Duration.ZERO;
-            this.startTime = null;
-            this.endTime = null;
-            return;
+        long total = 0;
+        long start = NO_TIME;
+        long end = NO_TIME;
+        if (subtasks != null) {
+            for (Subtask subtask : subtasks) {
+                if (subtask.durationMinutes != NO_DURATION) {
+                    total += subtask.durationMinutes;
+                }
+                if (subtask.startMinute != NO_TIME && (start == NO_TIME || subtask.startMinute < start)) {
+                    start = subtask.startMinute;
+                }
+                long subtaskEnd = subtask.getEndMinute();
+                if (subtaskEnd != NO_TIME && subtaskEnd > end) {
+                    end = subtaskEnd;
+                }
+            }
         }
+        updateEpicTime(total, start, end);
+    }
 
-        // Рассчитываем общую продолжительность
-        this.duration = subtasks.stream()
-                .map(Subtask::getDuration)
-                .filter(Optional::isPresent)
-                .map(Optional::get)
-                .reduce(Duration.ZERO, Duration::plus);
-
-        // Находим самое раннее время начала
-        this.startTime = subtasks.stream()
-                .map(Subtask::getStartTime)
-                .filter(Optional::isPresent)
-                .map(Optional::get)
-                .min(Comparator.naturalOrder())
-                .orElse(null);
-
-        // Находим самое позднее время окончания
-        this.endTime = subtasks.stream()
-                .map(Subtask::getEndTime)
-                .filter(Optional::isPresent)
-                .map(Optional::get)
-                .max(Comparator.naturalOrder())
-                .orElse(null);
+    /**
+     * Устанавливает уже вычисленные поля времени эпика.
+     * Используется менеджером, который поддерживает их по мере изменения подзадач.
+     * Суммарная длительность, не помещающаяся в int, ограничивается его пределами.
+     *
+     * @param totalMinutes суммарная длительность подзадач в минутах или {@link #NO_DURATION}
+     * @param startMinute  самое раннее время начала в минутах или {@link #NO_TIME}
+     * @param endMinute    самое позднее время окончания в минутах или {@link #NO_TIME}
+     */
+    public void updateEpicTime(long totalMinutes, long startMinute, long endMinute) {
+        this.durationMinutes = totalMinutes == NO_DURATION
+                ? NO_DURATION
+                : Math.clamp(totalMinutes, NO_DURATION + 1, Integer.MAX_VALUE);
+        this.startMinute = startMinute;
+        this.endMinute = endMinute;
     }
 
     /**
@@ -128,7 +169,15 @@ public class Epic extends Task {
      */
     @Override
     public Optional<LocalDateTime> getEndTime() {
-        return Optional.ofNullable(endTime);
+        return endMinute == NO_TIME ? Optional.empty() : Optional.of(EpochMinutes.toDateTime(endMinute));
+    }
+
+    /**
+     * Возвращает время окончания эпика в минутах или {@link #NO_TIME}.
+     */
+    @Override
+    public long getEndMinute() {
+        return endMinute;
     }
 
     /**
@@ -139,7 +188,7 @@ public class Epic extends Task {
     @Override
     public String toString() {
         return "Epic{" +
-                "subtaskIds=" + subtaskIds +
+                "subtaskIds=" + ids() +
                 ", title='" + getTitle() + '\'' +
                 ", description='" + getDescription() + '\'' +
                 ", id=" + getId() +
@@ -0,0 +1,39 @@
+package com.yandex.app.model;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Перевод времени в минуты от 1970-01-01T00:00 и обратно.
+ * В таком виде модель хранит время начала и окончания задач: одно число long
+ * вместо объекта LocalDateTime, который сравнивается и складывается без создания объектов.
+ */
+public final class EpochMinutes {
+
+    private EpochMinutes() {
+    }
+
+    /**
+     * Возвращает номер минуты, в которую попадает момент времени (секунды отбрасываются).
+     */
+    public static long of(LocalDateTime time) {
+        return Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), 60);
+    }
+
+    /**
+     * Возвращает номер первой минуты, начинающейся не раньше момента времени.
+     */
+    public static long ceil(LocalDateTime time) {
+        long minute = of(time);
+        return time.getSecond() == 0 && time.getNano() == 0 ? minute : minute + 1;
+    }
+
+    /**
+     * Возвращает время начала минуты.
+     *
+     * @throws java.time.DateTimeException если минута выходит за пределы LocalDateTime
+     */
+    public static LocalDateTime toDateTime(long minute) {
+        return LocalDateTime.ofEpochSecond(minute * 60, 0, ZoneOffset.UTC);
+    }
+}
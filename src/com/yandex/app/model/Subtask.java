@@ -53,8 +53,8 @@ public class Subtask extends Task {
     public Subtask(Subtask other) {
         super(other.getTitle(), other.getDescription(), other.getStatus());
         this.setId(other.getId());
-        this.setDuration(other.duration);
-        this.setStartTime(other.startTime);
+        this.durationMinutes = other.durationMinutes;
+        this.startMinute = other.startMinute;
         this.epicId = other.getEpicId();
     }
 
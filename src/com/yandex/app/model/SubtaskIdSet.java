@@ -0,0 +1,242 @@
+package com.yandex.app.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Множество id подзадач эпика на примитивных int с сохранением порядка добавления.
+ * <p>
+ * Id лежат в массиве order в порядке добавления, а хеш-таблица с открытой адресацией
+ * хранит для каждого id его позицию в этом массиве. Добавление, удаление и проверка
+ * принадлежности выполняются за O(1) в среднем и не создают объектов-обёрток.
+ * Удалённый id заменяется в order пометкой, а массив уплотняется, когда пометок становится
+ * больше, чем живых id, поэтому удаление остаётся O(1) амортизированно.
+ */
+public final class SubtaskIdSet {
+
+    private static final int FREE = Integer.MIN_VALUE; // пустая ячейка таблицы и удалённый элемент order
+
+    private int[] order = new int[4];  // id в порядке добавления, удалённые заменены FREE
+    private int used;                  // занятая длина order
+    private int size;                  // количество id в множестве
+
+    private int[] keys = newTable(8);  // id или FREE
+    private int[] positions = new int[8];
+
+    /**
+     * Создаёт пустое множество.
+     */
+    public SubtaskIdSet() {
+    }
+
+    /**
+     * Создаёт копию множества.
+     *
+     * @param other копируемое множество
+     */
+    public SubtaskIdSet(SubtaskIdSet other) {
+        this.order = Arrays.copyOf(other.order, Math.max(other.used, 4));
+        this.used = other.used;
+        this.size = other.size;
+        this.keys = other.keys.clone();
+        this.positions = other.positions.clone();
+    }
+
+    /**
+     * Добавляет id, если его ещё нет.
+     *
+     * @return true, если id добавлен
+     * @throws IllegalArgumentException если id равен Integer.MIN_VALUE
+     */
+    public boolean add(int id) {
+        if (id == FREE) {
+            throw new IllegalArgumentException("Недопустимый id подзадачи: " + id);
+        }
+        int slot = slotOf(id);
+        if (keys[slot] == id) {
+            return false;
+        }
+        if (used == order.length) {
+            if (size * 2 < used) {
+                compact();
+                slot = slotOf(id);
+            } else {
+                order = Arrays.copyOf(order, used * 2);
+            }
+        }
+        order[used] = id;
+        keys[slot] = id;
+        positions[slot] = used++;
+        if (++size * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+        return true;
+    }
+
+    /**
+     * Удаляет id, если он есть.
+     *
+     * @return true, если id был в множестве
+     */
+    public boolean remove(int id) {
+        if (id == FREE) {
+            return false;
+        }
+        int slot = slotOf(id);
+        if (keys[slot] != id) {
+            return false;
+        }
+        order[positions[slot]] = FREE;
+        size--;
+        deleteSlot(slot);
+        if (size == 0) {
+            used = 0;
+        }
+        return true;
+    }
+
+    /**
+     * Проверяет, входит ли id в множество.
+     */
+    public boolean contains(int id) {
+        return id != FREE && keys[slotOf(id)] == id;
+    }
+
+    /**
+     * Возвращает количество id.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Проверяет, пусто ли множество.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Удаляет все id.
+     */
+    public void clear() {
+        Arrays.fill(keys, FREE);
+        used = 0;
+        size = 0;
+    }
+
+    /**
+     * Передаёт id в порядке добавления, не копируя множество.
+     * Изменять множество во время обхода нельзя.
+     *
+     * @param action действие для каждого id
+     */
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < used; i++) {
+            if (order[i] != FREE) {
+                action.accept(order[i]);
+            }
+        }
+    }
+
+    /**
+     * Возвращает id в порядке добавления в новом массиве.
+     */
+    public int[] toArray() {
+        int[] result = new int[size];
+        int n = 0;
+        for (int i = 0; i < used; i++) {
+            if (order[i] != FREE) {
+                result[n++] = order[i];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Возвращает id в порядке добавления в новом списке.
+     */
+    public List<Integer> toList() {
+        List<Integer> result = new ArrayList<>(size);
+        forEach(result::add);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return toList().toString();
+    }
+
+    /**
+     * Возвращает ячейку таблицы с id или пустую ячейку, куда его следует положить.
+     */
+    private int slotOf(int id) {
+        int mask = keys.length - 1;
+        int slot = mix(id) & mask;
+        while (keys[slot] != FREE && keys[slot] != id) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Освобождает ячейку, сдвигая назад следующие за ней ключи цепочки, чтобы поиск не прерывался.
+     */
+    private void deleteSlot(int slot) {
+        int mask = keys.length - 1;
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (keys[next] != FREE) {
+            int home = mix(keys[next]) & mask;
+            // Ключ можно перенести в дыру, если его исходная ячейка не лежит в циклическом интервале (gap, next]
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                positions[gap] = positions[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[gap] = FREE;
+    }
+
+    /**
+     * Убирает пометки удалённых id из order и заново записывает позиции.
+     */
+    private void compact() {
+        int n = 0;
+        for (int i = 0; i < used; i++) {
+            if (order[i] != FREE) {
+                order[n] = order[i];
+                positions[slotOf(order[i])] = n++;
+            }
+        }
+        used = n;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldPositions = positions;
+        keys = newTable(capacity);
+        positions = new int[capacity];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                int slot = slotOf(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                positions[slot] = oldPositions[i];
+            }
+        }
+    }
+
+    private static int[] newTable(int capacity) {
+        int[] table = new int[capacity];
+        Arrays.fill(table, FREE);
+        return table;
+    }
+
+    private static int mix(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
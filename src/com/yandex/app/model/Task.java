@@ -7,16 +7,27 @@ import java.util.Optional;
 
 /**
  * Базовый класс Task. Представляет задачу с названием, описанием, статусом и id.
+ * <p>
+ * Время начала хранится числом минут от 1970-01-01T00:00 ({@link EpochMinutes}),
+ * а длительность — числом минут; отсутствие значения обозначается {@link #NO_TIME}
+ * и {@link #NO_DURATION}. Время задаётся с точностью до минуты, секунды отбрасываются.
+ * Методы getStartMinute, getDurationMinutes и getEndMinute возвращают эти числа без создания
+ * объектов, а методы с Optional собирают LocalDateTime и Duration при каждом вызове.
  */
 public class Task {
 
+    /** Время начала или окончания не задано. */
+    public static final long NO_TIME = Long.MIN_VALUE;
+    /** Длительность не задана. */
+    public static final int NO_DURATION = Integer.MIN_VALUE;
+
     private String title;
     private String description;
     private int id;
     private TaskStatus status;
 
-    protected Duration duration;         // длительность задачи (в минутах)
-    protected LocalDateTime startTime;   // время начала задачи
+    protected int durationMinutes = NO_DURATION; // длительность задачи в минутах
+    protected long startMinute = NO_TIME;        // время начала задачи в минутах от начала эпохи
 
     /**
      * Конструктор для создания новой задачи.
@@ -41,8 +52,8 @@ public class Task {
         this.setDescription(other.getDescription());
         this.setStatus(other.getStatus());
         this.setId(other.getId());
-        this.duration = other.duration;
-        this.startTime = other.startTime;
+        this.durationMinutes = other.durationMinutes;
+        this.startMinute = other.startMinute;
     }
 
     /**
@@ -75,8 +86,8 @@ public class Task {
                 Duration duration,
                 LocalDateTime startTime) {
         this(id, title, description, status); // вызов конструктора
-        this.duration = duration;
-        this.startTime = startTime;
+        this.durationMinutes = toMinutes(duration);
+        this.startMinute = startTime == null ? NO_TIME : EpochMinutes.of(startTime);
     }
 
 
@@ -119,22 +130,36 @@ public class Task {
 
     /** Возвращает длительность задачи в виде Optional<Duration>. */
     public Optional<Duration> getDuration() {
-        return Optional.ofNullable(duration);
+        return durationMinutes == NO_DURATION ? Optional.empty() : Optional.of(Duration.ofMinutes(durationMinutes));
     }
 
-    /** Устанавливает длительность задачи. */
+    /**
+     * Устанавливает длительность задачи. Секунды отбрасываются.
+     *
+     * @throws IllegalArgumentException если длительность в минутах не помещается в int
+     */
     public void setDuration(Duration duration) {
-        this.duration = duration;
+        this.durationMinutes = toMinutes(duration);
+    }
+
+    /** Возвращает длительность в минутах или {@link #NO_DURATION}. */
+    public int getDurationMinutes() {
+        return durationMinutes;
     }
 
     /** Возвращает время начала задачи в виде Optional<LocalDateTime>. */
     public Optional<LocalDateTime> getStartTime() {
-        return Optional.ofNullable(startTime);
+        return startMinute == NO_TIME ? Optional.empty() : Optional.of(EpochMinutes.toDateTime(startMinute));
     }
 
-    /** Устанавливает время начала задачи. */
+    /** Устанавливает время начала задачи. Секунды отбрасываются. */
     public void setStartTime(LocalDateTime startTime) {
-        this.startTime = startTime;
+        this.startMinute = startTime == null ? NO_TIME : EpochMinutes.of(startTime);
+    }
+
+    /** Возвращает время начала в минутах от начала эпохи или {@link #NO_TIME}. */
+    public long getStartMinute() {
+        return startMinute;
     }
 
     /**
@@ -142,8 +167,24 @@ public class Task {
      * Если duration или startTime не заданы — возвращает пустой Optional.
      */
     public Optional<LocalDateTime> getEndTime() {
-        return getStartTime().flatMap(start ->
-                getDuration().map(start::plus));
+        long endMinute = getEndMinute();
+        return endMinute == NO_TIME ? Optional.empty() : Optional.of(EpochMinutes.toDateTime(endMinute));
+    }
+
+    /** Возвращает время окончания в минутах от начала эпохи или {@link #NO_TIME}, если начало или длительность не заданы. */
+    public long getEndMinute() {
+        return startMinute == NO_TIME || durationMinutes == NO_DURATION ? NO_TIME : startMinute + durationMinutes;
+    }
+
+    private static int toMinutes(Duration duration) {
+        if (duration == null) {
+            return NO_DURATION;
+        }
+        long minutes = duration.toMinutes();
+        if (minutes <= Integer.MIN_VALUE || minutes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Длительность вне допустимого диапазона: " + duration);
+        }
+        return (int) minutes;
     }
 
     /**
@@ -158,8 +199,8 @@ public class Task {
                 ", description='" + description + '\'' +
                 ", id=" + id +
                 ", status=" + status +
-                ", duration=" + duration +
-                ", startTime=" + startTime +
+                ", duration=" + getDuration().orElse(null) +
+                ", startTime=" + getStartTime().orElse(null) +
                 '}';
     }
 
@@ -0,0 +1,360 @@
+package com.yandex.app.service;
+
+import com.yandex.app.model.Epic;
+import com.yandex.app.model.EpochMinutes;
+import com.yandex.app.model.Subtask;
+import com.yandex.app.model.Task;
+import com.yandex.app.model.TaskStatus;
+import com.yandex.app.model.TypeTask;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Снимок в компактном двоичном формате.
+ * <pre>
+ * заголовок: "KNBS", версия (1 байт)
+ * запись:    флаги (1 байт), id (varint), название и описание (varint-длина + UTF-8),
+ *            [длительность в минутах (zigzag varint)],
+ *            [начало в минутах от 1970-01-01T00:00 (zigzag varint), [доли минуты в наносекундах (varint)]],
+ *            [id эпика (varint) — только у подзадач]
+ * конец задач: байт 0
+ * хвост:     количество id истории (varint), id истории (varint), номер записи журнала (varint)
+ * </pre>
+ * Флаги: бит 7 — признак записи, биты 0–1 — тип, биты 2–3 — статус, бит 4 — есть длительность,
+ * бит 5 — есть время начала, бит 6 — за началом следуют доли минуты. Доли минуты писались до того,
+ * как модель стала хранить время с точностью до минуты; теперь они не записываются,
+ * а в старых файлах пропускаются при чтении.
+ * Как и в CSV, время эпиков сохраняется, но при загрузке не читается: оно пересчитывается по подзадачам.
+ */
+final class BinarySnapshot {
+
+    static final byte[] MAGIC = {'K', 'N', 'B', 'S'};
+    static final int VERSION = 1;
+
+    static final int RECORD = 0x80;
+    static final int END = 0;
+    static final int HAS_DURATION = 0x10;
+    static final int HAS_START = 0x20;
+    static final int HAS_SUB_MINUTE = 0x40; // только при чтении старых файлов
+
+    private static final TypeTask[] TYPES = TypeTask.values();
+    private static final TaskStatus[] STATUSES = TaskStatus.values();
+
+    private BinarySnapshot() {
+    }
+
+    /**
+     * Проверяет, начинается ли файл с сигнатуры двоичного снимка.
+     */
+    static boolean isBinary(File file) {
+        if (file.length() < MAGIC.length) {
+            return false;
+        }
+        byte[] head = new byte[MAGIC.length];
+        try (InputStream in = new FileInputStream(file)) {
+            return in.readNBytes(head, 0, head.length) == head.length && Arrays.equals(head, MAGIC);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка при чтении файла: " + file.getName(), e);
+        }
+    }
+
+    static SnapshotWriter openWriter(File target) {
+        try {
+            OutputStream out = new BufferedOutputStream(new FileOutputStream(target), 64 * 1024);
+            out.write(MAGIC);
+            out.write(VERSION);
+            return new BinaryWriter(target, out);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка при сохранении данных в файл: " + target.getName(), e);
+        }
+    }
+
+    /**
+     * Отображает файл снимка в память только для чтения.
+     * Размер двоичного снимка ограничен 2 ГБ — пределом одного отображения.
+     */
+    static ByteBuffer map(File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new ManagerSaveException("Двоичный снимок больше 2 ГБ: " + file.getName());
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка при чтении файла: " + file.getName(), e);
+        }
+    }
+
+    /**
+     * Читает снимок целиком и передаёт его содержимое получателю.
+     */
+    static void read(File file, SnapshotSink sink) {
+        Decoder decoder = new Decoder(map(file), file);
+        try {
+            decoder.checkHeader();
+            int flags;
+            while ((flags = decoder.readByte()) != END) {
+                sink.task(decoder.readRecord(flags));
+            }
+            sink.tasksEnd();
+            long count = decoder.readVarLong();
+            for (long i = 0; i < count; i++) {
+                sink.view((int) decoder.readVarLong());
+            }
+            sink.seq(decoder.readVarLong());
+        } catch (IndexOutOfBoundsException e) {
+            throw new ManagerSaveException("Двоичный снимок оборван: " + file.getName(), e);
+        }
+    }
+
+    /**
+     * Разбор записей из буфера с переиспользуемым массивом для строк.
+     * Читает буфер только абсолютными методами, поэтому несколько разборщиков
+     * могут работать с одним буфером из разных потоков.
+     */
+    static final class Decoder {
+        private final ByteBuffer buffer;
+        private final File file;
+        private int position;
+        private byte[] text = new byte[256];
+
+        Decoder(ByteBuffer buffer, File file) {
+            this.buffer = buffer;
+            this.file = file;
+        }
+
+        int position() {
+            return position;
+        }
+
+        void seek(int position) {
+            this.position = position;
+        }
+
+        void checkHeader() {
+            for (byte b : MAGIC) {
+                if (position >= buffer.limit() || buffer.get(position++) != b) {
+                    throw new ManagerSaveException("Файл не является двоичным снимком: " + file.getName());
+                }
+            }
+            int version = readByte();
+            if (version != VERSION) {
+                throw new ManagerSaveException("Неподдерживаемая версия двоичного снимка " + version
+                        + ": " + file.getName());
+            }
+        }
+
+        int readByte() {
+            return buffer.get(position++) & 0xFF;
+        }
+
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new ManagerSaveException("Некорректное число в двоичном снимке: " + file.getName());
+        }
+
+        /**
+         * Разбирает запись, флаги которой уже прочитаны.
+         */
+        Task readRecord(int flags) {
+            TypeTask type = checkFlags(flags);
+            TaskStatus status = STATUSES[(flags >> 2) & 0x03];
+            int id = (int) readVarLong();
+            String title = readString();
+            String description = readString();
+            Duration duration = null;
+            if ((flags & HAS_DURATION) != 0) {
+                duration = Duration.ofMinutes(zigzagDecode(readVarLong()));
+            }
+            LocalDateTime startTime = null;
+            if ((flags & HAS_START) != 0) {
+                long epochMinute = zigzagDecode(readVarLong());
+                if ((flags & HAS_SUB_MINUTE) != 0) {
+                    readVarLong(); // доли минуты из старого файла: модель их не хранит
+                }
+                startTime = toDateTime(epochMinute);
+            }
+            return switch (type) {
+                case TASK -> new Task(id, title, description, status, duration, startTime);
+                case EPIC -> {
+                    Epic epic = new Epic(title, description);
+                    epic.setId(id);
+                    epic.setStatus(status);
+                    yield epic;
+                }
+                case SUBTASK -> new Subtask(id, title, description, status, duration, startTime,
+                        (int) readVarLong());
+            };
+        }
+
+        /**
+         * Пропускает запись, флаги и id которой уже прочитаны, не создавая объектов.
+         *
+         * @return id эпика для подзадачи, иначе 0
+         */
+        int skipRecord(int flags) {
+            TypeTask type = checkFlags(flags);
+            skipString();
+            skipString();
+            if ((flags & HAS_DURATION) != 0) {
+                readVarLong();
+            }
+            if ((flags & HAS_START) != 0) {
+                readVarLong();
+                if ((flags & HAS_SUB_MINUTE) != 0) {
+                    readVarLong();
+                }
+            }
+            return type == TypeTask.SUBTASK ? (int) readVarLong() : 0;
+        }
+
+        private TypeTask checkFlags(int flags) {
+            if ((flags & RECORD) == 0 || (flags & 0x03) >= TYPES.length || ((flags >> 2) & 0x03) >= STATUSES.length) {
+                throw new ManagerSaveException("Некорректная запись двоичного снимка, флаги " + flags);
+            }
+            return TYPES[flags & 0x03];
+        }
+
+        private String readString() {
+            int length = (int) readVarLong();
+            if (length > text.length) {
+                text = new byte[Math.max(length, text.length * 2)];
+            }
+            buffer.get(position, text, 0, length);
+            position += length;
+            return new String(text, 0, length, StandardCharsets.UTF_8);
+        }
+
+        private void skipString() {
+            int length = (int) readVarLong();
+            if (length < 0 || position + length > buffer.limit()) {
+                throw new IndexOutOfBoundsException(position + length);
+            }
+            position += length;
+        }
+    }
+
+    /**
+     * Вычисляет флаги записи для задачи.
+     */
+    static int flags(Task task) {
+        int flags = RECORD | task.getType().ordinal() | (task.getStatus().ordinal() << 2);
+        if (task.getDurationMinutes() != Task.NO_DURATION) {
+            flags |= HAS_DURATION;
+        }
+        if (task.getStartMinute() != Task.NO_TIME) {
+            flags |= HAS_START;
+        }
+        return flags;
+    }
+
+    static LocalDateTime toDateTime(long epochMinute) {
+        try {
+            return EpochMinutes.toDateTime(epochMinute);
+        } catch (DateTimeException e) {
+            throw new ManagerSaveException("Некорректное время в двоичном снимке", e);
+        }
+    }
+
+    static void writeVarLong(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    static long zigzagEncode(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long zigzagDecode(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static final class BinaryWriter implements SnapshotWriter {
+        private final File target;
+        private final OutputStream out;
+
+        BinaryWriter(File target, OutputStream out) {
+            this.target = target;
+            this.out = out;
+        }
+
+        @Override
+        public void task(Task task) {
+            try {
+                int flags = flags(task);
+                out.write(flags);
+                writeVarLong(out, task.getId());
+                writeString(task.getTitle());
+                writeString(task.getDescription());
+                if ((flags & HAS_DURATION) != 0) {
+                    writeVarLong(out, zigzagEncode(task.getDurationMinutes()));
+                }
+                if ((flags & HAS_START) != 0) {
+                    writeVarLong(out, zigzagEncode(task.getStartMinute()));
+                }
+                if (task instanceof Subtask subtask) {
+                    writeVarLong(out, subtask.getEpicId());
+                }
+            } catch (IOException e) {
+                throw error(e);
+            }
+        }
+
+        private void writeString(String value) throws IOException {
+            byte[] bytes = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+            writeVarLong(out, bytes.length);
+            out.write(bytes);
+        }
+
+        @Override
+        public void finish(List<Integer> history, long seq) {
+            try {
+                out.write(END);
+                writeVarLong(out, history.size());
+                for (int id : history) {
+                    writeVarLong(out, id);
+                }
+                writeVarLong(out, Math.max(seq, 0));
+            } catch (IOException e) {
+                throw error(e);
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                out.close();
+            } catch (IOException e) {
+                throw error(e);
+            }
+        }
+
+        private ManagerSaveException error(IOException e) {
+            return new ManagerSaveException("Ошибка при сохранении данных в файл: " + target.getName(), e);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.yandex.app.service;
+
+/**
+ * Статистика групповой фиксации журнала.
+ * Помогает подобрать окно группировки: размер пачек и задержку до гарантированной записи на диск.
+ */
+public class CommitStats {
+
+    private final long batches;            // количество сбросов на диск (вызовов force)
+    private final long records;            // количество зафиксированных записей
+    private final int maxBatchSize;        // самая большая пачка записей
+    private final long totalLatencyNanos;  // суммарная задержка записей от постановки в очередь до force
+    private final long maxLatencyNanos;    // наибольшая задержка одной записи
+
+    public CommitStats(long batches, long records, int maxBatchSize, long totalLatencyNanos, long maxLatencyNanos) {
+        this.batches = batches;
+        this.records = records;
+        this.maxBatchSize = maxBatchSize;
+        this.totalLatencyNanos = totalLatencyNanos;
+        this.maxLatencyNanos = maxLatencyNanos;
+    }
+
+    public long getBatches() {
+        return batches;
+    }
+
+    public long getRecords() {
+        return records;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /** Возвращает средний размер пачки записей. */
+    public double getAverageBatchSize() {
+        return batches == 0 ? 0 : (double) records / batches;
+    }
+
+    /** Возвращает среднюю задержку фиксации записи в микросекундах. */
+    public double getAverageLatencyMicros() {
+        return records == 0 ? 0 : totalLatencyNanos / 1000.0 / records;
+    }
+
+    /** Возвращает наибольшую задержку фиксации записи в микросекундах. */
+    public double getMaxLatencyMicros() {
+        return maxLatencyNanos / 1000.0;
+    }
+
+    @Override
+    public String toString() {
+        return "CommitStats{" +
+                "batches=" + batches +
+                ", records=" + records +
+                ", avgBatch=" + String.format("%.2f", getAverageBatchSize()) +
+                ", maxBatch=" + maxBatchSize +
+                ", avgLatencyUs=" + String.format("%.1f", getAverageLatencyMicros()) +
+                ", maxLatencyUs=" + String.format("%.1f", getMaxLatencyMicros()) +
+                '}';
+    }
+}
@@ -0,0 +1,212 @@
+package com.yandex.app.service;
+
+import com.yandex.app.model.Epic;
+import com.yandex.app.model.Subtask;
+import com.yandex.app.model.Task;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+/**
+ * Потокобезопасная обёртка над TaskManager для обработки запросов из нескольких потоков.
+ * <p>
+ * Доступ к менеджеру разграничивается StampedLock:
+ * <ul>
+ *     <li>изменения выполняются под блокировкой записи по одному и линеаризуемы;</li>
+ *     <li>чтения выполняются под блокировкой чтения параллельно друг с другом. Оптимистичное чтение
+ *     без блокировки здесь не используется: чтения обходят изменяемые структуры делегата
+ *     (хранилища, расписание, поиск свободного окна в цикле), и запись посреди обхода могла бы
+ *     привести к исключению или зацикливанию раньше, чем чтение успеет проверить штамп;</li>
+ *     <li>getTaskById, getEpicById и getSubtaskById добавляют просмотр в историю, поэтому выполняются
+ *     под блокировкой чтения: параллельно друг с другом, но не с изменениями. История сама
+ *     упорядочивает одновременные просмотры, а удаление задачи из истории не может вклиниться
+ *     между чтением задачи и записью просмотра.</li>
+ * </ul>
+ * Эпики — единственные объекты, которые менеджер меняет на месте, поэтому getAllEpics
+ * возвращает их копии, снятые в согласованном состоянии.
+ * <p>
+ * Если обёрнутый менеджер публикует версии состояния ({@link VersionedTaskManager}),
+ * списки задач, эпиков, подзадач и порядок приоритета читаются прямо из его последней версии
+ * без блокировок и без копирования.
+ * <p>
+ * Обёрнутый менеджер нельзя использовать напрямую в обход обёртки. Для FileBackedTaskManager
+ * ожидание записи на диск происходит под блокировкой записи, поэтому в режиме журнала
+ * операции разных потоков не объединяются в общие пачки.
+ */
+public class ConcurrentTaskManager implements TaskManager {
+
+    private final TaskManager delegate;
+    private final boolean versioned; // списки делегата читаются из неизменяемой версии состояния
+    private final StampedLock lock = new StampedLock();
+
+    /**
+     * Создаёт обёртку над менеджером.
+     *
+     * @param delegate менеджер, к которому сериализуется доступ
+     */
+    public ConcurrentTaskManager(TaskManager delegate) {
+        this.delegate = Objects.requireNonNull(delegate, "delegate не может быть null");
+        this.versioned = delegate instanceof VersionedTaskManager;
+    }
+
+    @Override
+    public void addTask(Task task) {
+        write(() -> delegate.addTask(task));
+    }
+
+    @Override
+    public void addEpic(Epic epic) {
+        write(() -> delegate.addEpic(epic));
+    }
+
+    @Override
+    public void addSubtask(Subtask subtask) {
+        write(() -> delegate.addSubtask(subtask));
+    }
+
+    @Override
+    public List<Task> getAllTasks() {
+        return snapshotRead(delegate::getAllTasks);
+    }
+
+    @Override
+    public List<Epic> getAllEpics() {
+        if (versioned) {
+            return delegate.getAllEpics();
+        }
+        return readLocked(() -> {
+            List<Epic> epics = new ArrayList<>();
+            for (Epic epic : delegate.getAllEpics()) {
+                epics.add(new Epic(epic));
+            }
+            return Collections.unmodifiableList(epics);
+        });
+    }
+
+    @Override
+    public List<Subtask> getAllSubtasks() {
+        return snapshotRead(delegate::getAllSubtasks);
+    }
+
+    @Override
+    public Optional<Task> getTaskById(int id) {
+        return readLocked(() -> delegate.getTaskById(id));
+    }
+
+    @Override
+    public Optional<Epic> getEpicById(int id) {
+        return readLocked(() -> delegate.getEpicById(id));
+    }
+
+    @Override
+    public Optional<Subtask> getSubtaskById(int id) {
+        return readLocked(() -> delegate.getSubtaskById(id));
+    }
+
+    @Override
+    public void updateTask(Task task) {
+        write(() -> delegate.updateTask(task));
+    }
+
+    @Override
+    public void updateEpic(Epic epic) {
+        write(() -> delegate.updateEpic(epic));
+    }
+
+    @Override
+    public void updateSubtask(Subtask subtask) {
+        write(() -> delegate.updateSubtask(subtask));
+    }
+
+    @Override
+    public void deleteTaskById(int id) {
+        write(() -> delegate.deleteTaskById(id));
+    }
+
+    @Override
+    public void deleteEpicById(int id) {
+        write(() -> delegate.deleteEpicById(id));
+    }
+
+    @Override
+    public void deleteSubtaskById(int id) {
+        write(() -> delegate.deleteSubtaskById(id));
+    }
+
+    @Override
+    public void deleteAllTasks() {
+        write(delegate::deleteAllTasks);
+    }
+
+    @Override
+    public void deleteAllEpics() {
+        write(delegate::deleteAllEpics);
+    }
+
+    @Override
+    public void deleteAllSubtasks() {
+        write(delegate::deleteAllSubtasks);
+    }
+
+    @Override
+    public void applyBatch(List<Operation> operations) {
+        write(() -> delegate.applyBatch(operations));
+    }
+
+    @Override
+    public List<Subtask> getSubtasksOfEpic(int epicId) {
+        return snapshotRead(() -> delegate.getSubtasksOfEpic(epicId));
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        return readLocked(delegate::getHistory);
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks() {
+        return snapshotRead(delegate::getPrioritizedTasks);
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks(LocalDateTime from, LocalDateTime to) {
+        return snapshotRead(() -> delegate.getPrioritizedTasks(from, to));
+    }
+
+    @Override
+    public Optional<LocalDateTime> findEarliestFreeSlot(Duration duration, LocalDateTime notBefore) {
+        return readLocked(() -> delegate.findEarliestFreeSlot(duration, notBefore));
+    }
+
+    private void write(Runnable operation) {
+        long stamp = lock.writeLock();
+        try {
+            operation.run();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private <T> T readLocked(Supplier<T> operation) {
+        long stamp = lock.readLock();
+        try {
+            return operation.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Выполняет чтение, которое делегат с версиями состояния обслуживает из опубликованной версии.
+     */
+    private <T> T snapshotRead(Supplier<T> operation) {
+        return versioned ? operation.get() : readLocked(operation);
+    }
+}
@@ -0,0 +1,187 @@
+package com.yandex.app.service;
+
+import com.yandex.app.model.Subtask;
+import com.yandex.app.model.Task;
+import com.yandex.app.model.TypeTask;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Снимок в формате CSV.
+ * После заголовка идут строки задач, эпиков и подзадач, затем пустая строка,
+ * строка истории (id через запятую) и, в режиме журнала, строка "seq,N".
+ */
+final class CsvSnapshot {
+
+    // Дополненный заголовок CSV для учёта времени и длительности
+    static final String CSV_HEADER = "id,type,name,status,description,duration,startTime,epic";
+    private static final String SEQ_PREFIX = "seq,"; // строка снимка с номером последней учтённой записи журнала
+
+    private CsvSnapshot() {
+    }
+
+    /**
+     * Преобразует задачу в CSV-строку.
+     */
+    static String toCsv(Task task) {
+        String epicId = "";
+        if (task.getType() == TypeTask.SUBTASK) {
+            epicId = String.valueOf(((Subtask) task).getEpicId());
+        }
+
+        // Новые поля duration и startTime
+        String duration = task.getDuration()
+                .map(d -> String.valueOf(d.toMinutes()))
+                .orElse("");
+        String startTime = task.getStartTime()
+                .map(LocalDateTime::toString)
+                .orElse("");
+
+        return String.join(",",
+                String.valueOf(task.getId()),
+                task.getType().name(),
+                clearStringForCSV(task.getTitle()),
+                task.getStatus().name(),
+                clearStringForCSV(task.getDescription()),
+                duration,
+                startTime,
+                epicId);
+    }
+
+    /**
+     * Экранирует строку для корректного сохранения в CSV.
+     *
+     * @param value исходная строка.
+     */
+    private static String clearStringForCSV(String value) {
+        if (value == null) return "\"\""; // пустое поле
+        String escaped = value
+                .replace("\"", "\"\"")   // удваиваем кавычки
+                .replace("\r", "")       // удаляем возвраты каретки
+                .replace("\n", "")       // удаляем переводы строк
+                .replace("\t", "")       // удаляем табуляции
+                .trim();
+        return "\"" + escaped + "\"";
+    }
+
+    /**
+     * Открывает файл для записи снимка и записывает заголовок.
+     */
+    static SnapshotWriter openWriter(File target) {
+        try {
+            Writer writer = new BufferedWriter(
+                    new OutputStreamWriter(new FileOutputStream(target), StandardCharsets.UTF_8));
+            writer.write(CSV_HEADER + "\n");
+            return new CsvWriter(target, writer);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка при сохранении данных в файл: " + target.getName(), e);
+        }
+    }
+
+    /**
+     * Читает снимок. Файл читается потоково, поэтому объём памяти не зависит от его размера.
+     * Строки задач большого файла разбираются параллельно.
+     */
+    static void read(File file, SnapshotSink sink) {
+        CsvTaskReader reader = CsvTaskReader.open(file, 0);
+        try {
+            if (!reader.nextLine()) {
+                return;
+            }
+
+            String header = reader.currentLine().trim();
+            if (!header.equals(CSV_HEADER)) {
+                throw new ManagerSaveException("Файл имеет неверный формат CSV: ожидается заголовок \""
+                        + CSV_HEADER + "\", найдено: " + header);
+            }
+
+            if (ParallelSnapshotReader.isWorthwhile(file.length() - reader.getOffset())) {
+                long separator = ParallelSnapshotReader.readRows(file, reader.getOffset(),
+                        ParallelSnapshotReader.defaultChunks(), sink::task);
+                reader.close();
+                reader = CsvTaskReader.open(file, separator);
+                reader.nextLine(); // пустая строка перед историей
+            } else {
+                // Строки задач идут до пустой строки — разделителя между задачами и историей
+                while (reader.nextLine() && !reader.isBlank()) {
+                    Task task;
+                    try {
+                        task = reader.parseTask();
+                    } catch (Exception parseError) {
+                        throw new ManagerSaveException("Ошибка парсинга CSV-строки " + reader.getLineNumber()
+                                + ": " + reader.currentLine(), parseError);
+                    }
+                    sink.task(task);
+                }
+            }
+            sink.tasksEnd();
+
+            if (reader.nextLine() && !reader.isBlank()) {
+                reader.parseIds(sink::view);
+            }
+
+            if (reader.nextLine() && reader.startsWith(SEQ_PREFIX)) {
+                sink.seq(reader.parseLong(SEQ_PREFIX.length()));
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static final class CsvWriter implements SnapshotWriter {
+        private final File target;
+        private final Writer writer;
+
+        CsvWriter(File target, Writer writer) {
+            this.target = target;
+            this.writer = writer;
+        }
+
+        @Override
+        public void task(Task task) {
+            try {
+                writer.write(toCsv(task));
+                writer.write('\n');
+            } catch (IOException e) {
+                throw error(e);
+            }
+        }
+
+        @Override
+        public void finish(List<Integer> history, long seq) {
+            try {
+                writer.write("\n"); // пустая строка перед историей
+                for (int i = 0; i < history.size(); i++) {
+                    if (i > 0) writer.write(',');
+                    writer.write(String.valueOf(history.get(i)));
+                }
+                if (seq >= 0) {
+                    writer.write("\n" + SEQ_PREFIX + seq);
+                }
+            } catch (IOException e) {
+                throw error(e);
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                throw error(e);
+            }
+        }
+
+        private ManagerSaveException error(IOException e) {
+            return new ManagerSaveException("Ошибка при сохранении данных в файл: " + target.getName(), e);
+        }
+    }
+}
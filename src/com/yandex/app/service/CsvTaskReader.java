@@ -0,0 +1,497 @@
+package com.yandex.app.service;
+
+import com.yandex.app.model.Epic;
+import com.yandex.app.model.Subtask;
+import com.yandex.app.model.Task;
+import com.yandex.app.model.TaskStatus;
+import com.yandex.app.model.TypeTask;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Потоковый разбор CSV-файла задач.
+ * Файл читается построчно в переиспользуемые буферы байтов и символов, поля разбираются прямо из них:
+ * числа, перечисления и время начала — без промежуточных строк, а текстовые поля
+ * создают ровно одну строку на значение. Память ограничена самой длинной строкой файла
+ * и не зависит от его размера.
+ */
+final class CsvTaskReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int FIELDS = 8; // id,type,name,status,description,duration,startTime,epic
+    private static final TypeTask[] TYPES = TypeTask.values();
+    private static final TaskStatus[] STATUSES = TaskStatus.values();
+
+    private final InputStream in;
+    private final byte[] buffer;
+    private int position;
+    private int limit;
+    private long offset;     // смещение в байтах от начала файла до следующей непрочитанной строки
+    private long lineOffset; // смещение текущей строки
+
+    private byte[] lineBytes = new byte[256]; // байты текущей строки (UTF-8) без перевода строки
+    private int byteLength;
+    private char[] line = new char[256];      // текущая строка без перевода строки
+    private int length;
+    private int lineNumber;
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    // Границы полей текущей строки (для полей в кавычках — без внешних кавычек)
+    private final int[] fieldStart = new int[FIELDS];
+    private final int[] fieldEnd = new int[FIELDS];
+    private final boolean[] fieldEscaped = new boolean[FIELDS]; // поле содержит удвоенные кавычки
+    private int fieldCount;
+    private final StringBuilder text = new StringBuilder();
+
+    /**
+     * @param in     поток байтов в кодировке UTF-8
+     * @param offset смещение начала потока в файле (для {@link #getOffset()})
+     */
+    CsvTaskReader(InputStream in, long offset) {
+        this(in, offset, BUFFER_SIZE);
+    }
+
+    private CsvTaskReader(InputStream in, long offset, int bufferSize) {
+        this.in = in;
+        this.offset = offset;
+        this.buffer = new byte[Math.max(16, bufferSize)];
+    }
+
+    /**
+     * Открывает файл для чтения с указанного смещения.
+     *
+     * @param file   файл снимка
+     * @param offset смещение в байтах
+     */
+    static CsvTaskReader open(File file, long offset) {
+        try {
+            FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            channel.position(offset);
+            return new CsvTaskReader(Channels.newInputStream(channel), offset);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка при чтении файла: " + file.getName(), e);
+        }
+    }
+
+    /**
+     * Разбирает одну CSV-строку задачи (например, из записи журнала).
+     *
+     * @param csv строка в формате снимка
+     * @return задача
+     */
+    static Task fromString(String csv) {
+        byte[] bytes = csv.getBytes(StandardCharsets.UTF_8);
+        CsvTaskReader reader = new CsvTaskReader(new ByteArrayInputStream(bytes), 0, bytes.length + 1);
+        if (!reader.nextLine()) {
+            throw new ManagerSaveException("Пустая CSV-строка");
+        }
+        return reader.parseTask();
+    }
+
+    /**
+     * Читает следующую строку в буфер.
+     * Строки разделяются по байту '\n', который не встречается внутри многобайтовых
+     * символов UTF-8, поэтому чтение можно начинать с любого смещения.
+     *
+     * @return false, если файл закончился
+     */
+    boolean nextLine() {
+        lineOffset = offset;
+        byteLength = 0;
+        boolean any = false;
+        try {
+            while (true) {
+                if (position == limit) {
+                    limit = in.read(buffer, 0, buffer.length);
+                    position = 0;
+                    if (limit <= 0) {
+                        limit = 0;
+                        break;
+                    }
+                }
+                any = true;
+                int start = position;
+                while (position < limit && buffer[position] != '\n') {
+                    position++;
+                }
+                append(start, position);
+                offset += position - start;
+                if (position < limit) {
+                    position++; // пропускаем '\n'
+                    offset++;
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка при чтении CSV", e);
+        }
+        if (byteLength > 0 && lineBytes[byteLength - 1] == '\r') {
+            byteLength--;
+        }
+        decode();
+        if (any) {
+            lineNumber++;
+        }
+        return any;
+    }
+
+    private void append(int from, int to) {
+        int count = to - from;
+        if (byteLength + count > lineBytes.length) {
+            lineBytes = Arrays.copyOf(lineBytes, Math.max(lineBytes.length * 2, byteLength + count));
+        }
+        System.arraycopy(buffer, from, lineBytes, byteLength, count);
+        byteLength += count;
+    }
+
+    /**
+     * Переводит байты строки в символы. Строки из ASCII копируются напрямую,
+     * остальные декодируются переиспользуемым декодером UTF-8.
+     */
+    private void decode() {
+        if (line.length < byteLength) {
+            line = new char[Math.max(line.length * 2, byteLength)];
+        }
+        int i = 0;
+        for (; i < byteLength && lineBytes[i] >= 0; i++) {
+            line[i] = (char) lineBytes[i];
+        }
+        if (i == byteLength) {
+            length = byteLength;
+            return;
+        }
+        CharBuffer chars = CharBuffer.wrap(line, i, line.length - i);
+        decoder.reset();
+        decoder.decode(ByteBuffer.wrap(lineBytes, i, byteLength - i), chars, true);
+        decoder.flush(chars);
+        length = chars.position();
+    }
+
+    /**
+     * Возвращает смещение в байтах до следующей непрочитанной строки.
+     */
+    long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Возвращает смещение в байтах начала текущей строки.
+     */
+    long getLineOffset() {
+        return lineOffset;
+    }
+
+    /**
+     * Проверяет, что текущая строка пустая или состоит из пробелов.
+     */
+    boolean isBlank() {
+        for (int i = 0; i < length; i++) {
+            if (!Character.isWhitespace(line[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Проверяет, начинается ли текущая строка с префикса.
+     */
+    boolean startsWith(String prefix) {
+        if (length < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (line[i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Возвращает текущую строку целиком. Используется для заголовка и сообщений об ошибках.
+     */
+    String currentLine() {
+        return new String(line, 0, length);
+    }
+
+    int getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Разбирает число, записанное в текущей строке после префикса.
+     */
+    long parseLong(int from) {
+        int start = skipSpaces(from, length);
+        int end = trimEnd(start, length);
+        return parseLong(start, end);
+    }
+
+    /**
+     * Передаёт обработчику id из текущей строки, разделённые запятыми (строка истории).
+     */
+    void parseIds(IntConsumer consumer) {
+        int start = 0;
+        for (int i = 0; i <= length; i++) {
+            if (i == length || line[i] == ',') {
+                int from = skipSpaces(start, i);
+                int to = trimEnd(from, i);
+                if (from < to) {
+                    consumer.accept((int) parseLong(from, to));
+                }
+                start = i + 1;
+            }
+        }
+    }
+
+    /**
+     * Разбирает текущую строку как задачу, эпик или подзадачу.
+     */
+    Task parseTask() {
+        splitFields();
+        if (fieldCount < 6) {
+            throw new ManagerSaveException("Недостаточно полей в CSV-строке: " + currentLine());
+        }
+
+        int id = (int) parseLong(fieldStart[0], fieldEnd[0]);
+        TypeTask type = TYPES[matchName(1, TYPES)];
+        String name = text(2);
+        TaskStatus status = STATUSES[matchName(3, STATUSES)];
+        String description = text(4);
+
+        Duration duration = null;
+        if (!isEmpty(5)) {
+            duration = Duration.ofMinutes(parseLong(fieldStart[5], fieldEnd[5]));
+        }
+        LocalDateTime startTime = null;
+        if (fieldCount > 6 && !isEmpty(6)) {
+            startTime = parseDateTime(fieldStart[6], fieldEnd[6]);
+        }
+
+        return switch (type) {
+            case TASK -> new Task(id, name, description, status, duration, startTime);
+            case EPIC -> {
+                Epic e = new Epic(name, description);
+                e.setId(id);
+                e.setStatus(status);
+                yield e;
+            }
+            case SUBTASK -> {
+                int epicId = fieldCount > 7 && !isEmpty(7) ? (int) parseLong(fieldStart[7], fieldEnd[7]) : 0;
+                yield new Subtask(id, name, description, status, duration, startTime, epicId);
+            }
+        };
+    }
+
+    /**
+     * Находит границы полей текущей строки с учётом кавычек.
+     * Лишние поля после восьмого игнорируются.
+     */
+    private void splitFields() {
+        fieldCount = 0;
+        int i = 0;
+        while (i <= length && fieldCount < FIELDS) {
+            int field = fieldCount++;
+            fieldEscaped[field] = false;
+            if (i < length && line[i] == '"') {
+                int start = ++i;
+                while (i < length) {
+                    if (line[i] == '"') {
+                        if (i + 1 < length && line[i + 1] == '"') {
+                            fieldEscaped[field] = true;
+                            i += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    i++;
+                }
+                fieldStart[field] = start;
+                fieldEnd[field] = Math.min(i, length);
+                while (i < length && line[i] != ',') {
+                    i++; // символы после закрывающей кавычки отбрасываются
+                }
+            } else {
+                int start = i;
+                while (i < length && line[i] != ',') {
+                    i++;
+                }
+                fieldStart[field] = skipSpaces(start, i);
+                fieldEnd[field] = trimEnd(fieldStart[field], i);
+            }
+            i++; // пропускаем запятую
+        }
+    }
+
+    private boolean isEmpty(int field) {
+        return fieldStart[field] >= fieldEnd[field];
+    }
+
+    /**
+     * Создаёт строку из текстового поля, заменяя удвоенные кавычки одинарными.
+     */
+    private String text(int field) {
+        int start = fieldStart[field];
+        int end = fieldEnd[field];
+        if (!fieldEscaped[field]) {
+            return new String(line, start, end - start);
+        }
+        text.setLength(0);
+        for (int i = start; i < end; i++) {
+            text.append(line[i]);
+            if (line[i] == '"' && i + 1 < end && line[i + 1] == '"') {
+                i++;
+            }
+        }
+        return text.toString();
+    }
+
+    private int matchName(int field, Enum<?>[] values) {
+        int start = fieldStart[field];
+        int size = fieldEnd[field] - start;
+        for (int v = 0; v < values.length; v++) {
+            String name = values[v].name();
+            if (name.length() == size && regionMatches(start, name)) {
+                return v;
+            }
+        }
+        throw new ManagerSaveException("Неизвестное значение в CSV-строке " + lineNumber + ": "
+                + new String(line, start, size));
+    }
+
+    private boolean regionMatches(int start, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (line[start + i] != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long parseLong(int start, int end) {
+        if (start >= end) {
+            throw new ManagerSaveException("Ожидалось число в CSV-строке " + lineNumber);
+        }
+        boolean negative = line[start] == '-';
+        int i = negative || line[start] == '+' ? start + 1 : start;
+        if (i == end) {
+            throw new ManagerSaveException("Ожидалось число в CSV-строке " + lineNumber);
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = line[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new ManagerSaveException("Некорректное число в CSV-строке " + lineNumber + ": "
+                        + new String(line, start, end - start));
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Разбирает время в формате {@link LocalDateTime#toString()}: uuuu-MM-ddTHH:mm[:ss[.n]].
+     * Нестандартные варианты (например, годы за пределами 0000–9999) разбираются через
+     * {@link LocalDateTime#parse(CharSequence)}.
+     */
+    private LocalDateTime parseDateTime(int start, int end) {
+        int size = end - start;
+        if (size >= 16 && line[start + 4] == '-' && line[start + 7] == '-'
+                && line[start + 10] == 'T' && line[start + 13] == ':'
+                && (size == 16 || (size >= 19 && line[start + 16] == ':'))
+                && (size <= 19 || (size >= 21 && line[start + 19] == '.'))) {
+            try {
+                int year = digits(start, 4);
+                int month = digits(start + 5, 2);
+                int day = digits(start + 8, 2);
+                int hour = digits(start + 11, 2);
+                int minute = digits(start + 14, 2);
+                int second = size >= 19 ? digits(start + 17, 2) : 0;
+                int nano = 0;
+                if (size > 19) {
+                    int count = size - 20;
+                    if (count > 9) {
+                        return fallbackDateTime(start, end);
+                    }
+                    nano = digits(start + 20, count);
+                    for (int k = count; k < 9; k++) {
+                        nano *= 10;
+                    }
+                }
+                if (year >= 0 && month >= 0 && day >= 0 && hour >= 0 && minute >= 0 && second >= 0 && nano >= 0) {
+                    return LocalDateTime.of(year, month, day, hour, minute, second, nano);
+                }
+            } catch (DateTimeException e) {
+                throw new ManagerSaveException("Некорректное время в CSV-строке " + lineNumber, e);
+            }
+        }
+        return fallbackDateTime(start, end);
+    }
+
+    private LocalDateTime fallbackDateTime(int start, int end) {
+        try {
+            return LocalDateTime.parse(new String(line, start, end - start));
+        } catch (DateTimeParseException e) {
+            throw new ManagerSaveException("Некорректное время в CSV-строке " + lineNumber, e);
+        }
+    }
+
+    /**
+     * Читает count цифр начиная с from; возвращает -1, если встретилась не цифра.
+     */
+    private int digits(int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            int digit = line[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private int skipSpaces(int from, int to) {
+        while (from < to && line[from] == ' ') {
+            from++;
+        }
+        return from;
+    }
+
+    private int trimEnd(int from, int to) {
+        while (to > from && line[to - 1] == ' ') {
+            to--;
+        }
+        return to;
+    }
+
+    @Override
+    public void close() {
+        try {
+            in.close();
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка при закрытии CSV", e);
+        }
+    }
+}
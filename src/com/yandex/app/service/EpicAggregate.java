@@ -0,0 +1,99 @@
+package com.yandex.app.service;
+
+import com.yandex.app.model.Epic;
+import com.yandex.app.model.Subtask;
+import com.yandex.app.model.Task;
+import com.yandex.app.model.TaskStatus;
+
+import java.util.Arrays;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Накопленные поля эпика по его подзадачам: количество подзадач в каждом статусе,
+ * суммарная длительность и упорядоченные мультимножества времён начала и окончания.
+ * <p>
+ * Добавление и удаление подзадачи меняют счётчики за O(1), а мультимножества — за O(log k),
+ * где k — число подзадач эпика. Поэтому изменение подзадачи не требует обхода всех подзадач эпика,
+ * а самое раннее начало и самое позднее окончание берутся из краёв мультимножеств.
+ */
+final class EpicAggregate {
+
+    private final int[] statusCounts = new int[TaskStatus.values().length];
+    private int size;
+    private long totalMinutes;
+    // Мультимножества в минутах от начала эпохи: время → количество подзадач
+    private final NavigableMap<Long, Integer> starts = new TreeMap<>();
+    private final NavigableMap<Long, Integer> ends = new TreeMap<>();
+
+    /**
+     * Учитывает подзадачу эпика.
+     */
+    void add(Subtask subtask) {
+        statusCounts[subtask.getStatus().ordinal()]++;
+        size++;
+        if (subtask.getDurationMinutes() != Task.NO_DURATION) {
+            totalMinutes += subtask.getDurationMinutes();
+        }
+        if (subtask.getStartMinute() != Task.NO_TIME) {
+            starts.merge(subtask.getStartMinute(), 1, Integer::sum);
+        }
+        if (subtask.getEndMinute() != Task.NO_TIME) {
+            ends.merge(subtask.getEndMinute(), 1, Integer::sum);
+        }
+    }
+
+    /**
+     * Перестаёт учитывать подзадачу. Передаётся та же версия подзадачи, что была добавлена.
+     */
+    void remove(Subtask subtask) {
+        statusCounts[subtask.getStatus().ordinal()]--;
+        size--;
+        if (subtask.getDurationMinutes() != Task.NO_DURATION) {
+            totalMinutes -= subtask.getDurationMinutes();
+        }
+        if (subtask.getStartMinute() != Task.NO_TIME) {
+            decrement(starts, subtask.getStartMinute());
+        }
+        if (subtask.getEndMinute() != Task.NO_TIME) {
+            decrement(ends, subtask.getEndMinute());
+        }
+    }
+
+    /**
+     * Забывает все подзадачи эпика.
+     */
+    void clear() {
+        Arrays.fill(statusCounts, 0);
+        size = 0;
+        totalMinutes = 0;
+        starts.clear();
+        ends.clear();
+    }
+
+    /**
+     * Переносит статус и время в эпик. Результат совпадает с полным пересчётом по подзадачам:
+     * эпик без подзадач — NEW, все подзадачи DONE — DONE, все NEW — NEW, иначе IN_PROGRESS.
+     */
+    void applyTo(Epic epic) {
+        if (size == 0) {
+            epic.setStatus(TaskStatus.NEW);
+            epic.updateEpicTime(0, Task.NO_TIME, Task.NO_TIME);
+            return;
+        }
+        if (statusCounts[TaskStatus.DONE.ordinal()] == size) {
+            epic.setStatus(TaskStatus.DONE);
+        } else if (statusCounts[TaskStatus.NEW.ordinal()] == size) {
+            epic.setStatus(TaskStatus.NEW);
+        } else {
+            epic.setStatus(TaskStatus.IN_PROGRESS);
+        }
+        epic.updateEpicTime(totalMinutes,
+                starts.isEmpty() ? Task.NO_TIME : starts.firstKey(),
+                ends.isEmpty() ? Task.NO_TIME : ends.lastKey());
+    }
+
+    private static void decrement(NavigableMap<Long, Integer> multiset, long key) {
+        multiset.computeIfPresent(key, (k, count) -> count == 1 ? null : count - 1);
+    }
+}
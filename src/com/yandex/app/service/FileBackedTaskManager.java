@@ -3,19 +3,92 @@ package com.yandex.app.service;
 import com.yandex.app.model.*;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Менеджер задач, сохраняющий данные в CSV-файл.
+ * В режиме {@link PersistenceMode#JOURNAL} файл служит базовым снимком,
+ * а изменения дописываются в журнал рядом с ним (файл с суффиксом ".journal").
+ * Журнал периодически сворачивается в новый снимок в фоновом потоке
+ * по правилам из {@link JournalSettings}.
+ * В режиме {@link PersistenceMode#WRITE_BEHIND} операции не ждут диска: снимок записывается
+ * в фоне, а {@link #flush()} сохраняет все принятые изменения синхронно.
+ * <p>
+ * Просмотры задач (getTaskById и др.) не перезаписывают файл и не пишутся в журнал операций:
+ * они копятся в памяти и дописываются в отдельный журнал истории (файл с суффиксом ".history").
+ * <p>
+ * Менеджер запускает фоновые потоки: в режиме журнала — при загрузке или первом изменении,
+ * в режиме отложенной записи — при первом изменении, в режиме снимка — при первом просмотре. Потоки демонические
+ * и останавливаются только {@link #close()}, поэтому менеджер, с которым закончили работу, нужно закрыть.
+ * <p>
+ * Двоичный снимок можно открыть лениво ({@link #openMapped(File, PersistenceMode)}):
+ * чтения по id и списки обслуживаются из отображённого в память файла, пока в фоне идёт полная загрузка.
  */
-public class FileBackedTaskManager extends InMemoryTaskManager {
+public class FileBackedTaskManager extends InMemoryTaskManager implements AutoCloseable {
 
     private final File file; // Файл для сохранения данных
-    // Дополненный заголовок CSV для учёта времени и длительности
-    private static final String CSV_HEADER = "id,type,name,status,description,duration,startTime,epic";
+    private static final String JOURNAL_SUFFIX = ".journal";
+    private static final String HISTORY_SUFFIX = ".history";
+    private static final long HISTORY_FLUSH_MILLIS = 1000;
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final PersistenceMode mode;
+    private final JournalSettings settings;
+    private final TaskJournal journal;
+    private final HistoryJournal historyJournal;
+    private boolean restoring;        // true, пока идёт загрузка — изменения не сохраняются повторно
+    private boolean journalAttached;  // true, если базовый снимок соответствует журналу
+    private List<String> transactionRecords; // записи выполняемой транзакции или null вне транзакции
+    private List<Integer> transactionViews;  // просмотры выполняемой транзакции или null вне транзакции
+    private long lastSeq;             // номер последней записи журнала
+    private long snapshotSeq;         // номер последней записи, учтённой в базовом снимке
+
+    private final Object compactionMonitor = new Object();
+    private final AtomicBoolean compactionScheduled = new AtomicBoolean();
+    private ScheduledExecutorService compactor;
+    private long lastCompactionNanos = System.nanoTime();
+
+    // Отложенная запись снимка (режим WRITE_BEHIND)
+    private final Object flushMonitor = new Object();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private ScheduledExecutorService flusher;
+    private long unflushedChanges; // изменения, ещё не взятые в запись снимка
+
+    // Ленивое открытие двоичного снимка (см. openMapped)
+    private volatile MappedSnapshot mapped; // пока не null, чтения обслуживаются из отображённого снимка
+    private volatile CompletableFuture<Void> loaded = CompletableFuture.completedFuture(null);
+    private volatile Thread loader;
+    private final List<Integer> pendingViews = new ArrayList<>(); // просмотры до окончания загрузки
+
+    // Отложенное ожидание записи (см. applyDeferred): поток, который сам дождётся фиксации
+    private Thread deferringThread;
+    private GroupCommitWriter.Commit deferredCommit;
+
+    /**
+     * Операции, записываемые в журнал.
+     */
+    private enum JournalOp {
+        ADD,
+        UPDATE,
+        DELETE,
+        CLEAR,
+        BATCH // пакет операций одной записью: применяется целиком или не применяется вовсе
+    }
 
     /**
      * Конструктор менеджера с указанием файла для сохранения.
@@ -23,204 +96,545 @@ public class FileBackedTaskManager extends InMemoryTaskManager {
      * @param file файл для сохранения данных.
      */
     public FileBackedTaskManager(File file) {
+        this(file, PersistenceMode.SNAPSHOT);
+    }
+
+    /**
+     * Конструктор менеджера с указанием файла и режима сохранения.
+     *
+     * @param file файл для сохранения данных (базовый снимок в режиме журнала).
+     * @param mode режим сохранения.
+     */
+    public FileBackedTaskManager(File file, PersistenceMode mode) {
+        this(file, mode, new JournalSettings());
+    }
+
+    /**
+     * Конструктор менеджера с указанием файла, режима сохранения и настроек журнала.
+     *
+     * @param file     файл для сохранения данных (базовый снимок в режиме журнала).
+     * @param mode     режим сохранения.
+     * @param settings настройки компактизации журнала.
+     */
+    public FileBackedTaskManager(File file, PersistenceMode mode, JournalSettings settings) {
         this.file = file;
+        this.mode = Objects.requireNonNull(mode, "mode must not be null");
+        this.settings = Objects.requireNonNull(settings, "settings must not be null");
+        this.journal = new TaskJournal(new File(file.getPath() + JOURNAL_SUFFIX));
+        this.historyJournal = new HistoryJournal(new File(file.getPath() + HISTORY_SUFFIX));
     }
 
 
     /**
-     * Преобразует историю просмотров в строку ID, разделённых запятыми.
+     * Возвращает id задач из истории просмотров в порядке просмотра.
      */
-    private String historyToString() {
-        return getHistory().stream()
-                .map(task -> String.valueOf(task.getId()))
-                .reduce((a, b) -> a + "," + b)
-                .orElse("");
+    private List<Integer> historyIds() {
+        return getHistory().stream().map(Task::getId).toList();
     }
 
     /**
-     * Восстанавливает историю просмотров из строки с ID.
+     * Добавляет задачу в историю при загрузке, если она найдена.
      */
-    private void loadHistory(String line) {
-        if (line == null || line.isBlank()) return;
-        String[] ids = line.split(",");
-        for (String idStr : ids) {
-            if (idStr.isBlank()) continue;
-            int id = Integer.parseInt(idStr.trim());
-            // добавляем в историю, если задача найдена
-            getTaskById(id)
-                    .or(() -> getEpicById(id))
-                    .or(() -> getSubtaskById(id));
-        }
+    private void restoreView(int id) {
+        findLoaded(id);
+    }
+
+    /**
+     * Ищет задачу любого типа в загруженных данных и добавляет её в историю.
+     */
+    private Optional<? extends Task> findLoaded(int id) {
+        return super.getTaskById(id)
+                .or(() -> super.getEpicById(id))
+                .or(() -> super.getSubtaskById(id));
     }
 
     /**
-     * Сохраняет все задачи в файл в формате CSV.
+     * Сохраняет все задачи в файл в формате из настроек.
      */
     private void save() {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
-            writer.write(CSV_HEADER + "\n");
+        writeSnapshot(file, getAllTasks(), getAllEpics(), getAllSubtasks(), historyIds(), lastSeq);
+        historyJournal.clear(); // вся история уже в снимке
+    }
 
-            for (Task task : getAllTasks()) {
-                writer.write(toString(task) + "\n");
+    /**
+     * Записывает снимок задач в указанный файл в формате из настроек.
+     * В режиме журнала после истории сохраняется номер последней учтённой записи журнала.
+     */
+    private void writeSnapshot(File target, List<? extends Task> tasks, List<Epic> epics,
+                               List<Subtask> subtasks, List<Integer> history, long seq) {
+        try (SnapshotWriter writer = settings.getSnapshotFormat().openWriter(target)) {
+            tasks.forEach(writer::task);
+            epics.forEach(writer::task);
+            subtasks.forEach(writer::task);
+            writer.finish(history, mode == PersistenceMode.JOURNAL ? seq : -1);
+        }
+    }
+
+    /**
+     * Выполняет изменяющую операцию и сохраняет её результат.
+     * Операция и постановка записи в журнал выполняются под блокировкой менеджера,
+     * а ожидание записи на диск — уже без неё, поэтому записи конкурентных
+     * операций попадают в одну пачку и фиксируются общим сбросом на диск.
+     * В режиме отложенной записи операция ждёт только тогда, когда фоновая запись отстала.
+     *
+     * @param operation изменение в памяти
+     * @param record    запись журнала, вычисляется только в режиме журнала
+     */
+    private void persist(Runnable operation, Supplier<String> record) {
+        awaitLoaded();
+        GroupCommitWriter.Commit commit;
+        synchronized (this) {
+            awaitFlushCapacity();
+            operation.run();
+            commit = record(record);
+        }
+        if (Thread.currentThread() == deferringThread) {
+            deferredCommit = deferredCommit.and(commit);
+            return;
+        }
+        commit.await();
+    }
+
+    /**
+     * Выполняет операцию, не дожидаясь записи её изменений на диск: фиксации записей журнала
+     * собираются и возвращаются вызывающему. Так пишущий поток ставит в журнал записи
+     * целой пачки операций и ждёт сброса на диск один раз.
+     */
+    @Override
+    GroupCommitWriter.Commit applyDeferred(Runnable operation) {
+        deferringThread = Thread.currentThread();
+        deferredCommit = GroupCommitWriter.Commit.DONE;
+        try {
+            operation.run();
+            return deferredCommit;
+        } finally {
+            deferringThread = null;
+            deferredCommit = null;
+        }
+    }
+
+    /**
+     * Выполняет чтение по id и запоминает просмотр в журнале истории, если задача найдена.
+     * Файлы на диске при этом не перезаписываются. Пока идёт ленивая загрузка, задача
+     * разбирается из отображённого снимка, а просмотр откладывается до конца загрузки.
+     * Просмотр внутри транзакции попадает в журнал истории только после её фиксации.
+     */
+    private <T extends Task> Optional<T> recordView(int id, Class<T> type, Supplier<Optional<T>> read) {
+        MappedSnapshot snapshot = mapped;
+        if (snapshot != null) {
+            Optional<T> result = snapshot.find(id, type);
+            synchronized (pendingViews) {
+                if (mapped != null) {
+                    result.ifPresent(task -> pendingViews.add(id));
+                    return result;
+                }
             }
-            for (Epic epic : getAllEpics()) {
-                writer.write(toString(epic) + "\n");
+        }
+        awaitLoaded();
+        synchronized (this) {
+            Optional<T> result = read.get();
+            if (result.isPresent() && !restoring) {
+                if (transactionViews != null) {
+                    transactionViews.add(id);
+                } else {
+                    recordHistoryView(id);
+                }
             }
-            for (Subtask subtask : getAllSubtasks()) {
-                writer.write(toString(subtask) + "\n");
+            return result;
+        }
+    }
+
+    /**
+     * Запоминает просмотр в журнале истории. В режиме снимка изменения не запускают фоновых потоков,
+     * поэтому при первом просмотре запускается поток, дописывающий просмотры раз в секунду,
+     * как в остальных режимах. Поток останавливается в {@link #close()}.
+     * Вызывается под блокировкой менеджера.
+     */
+    private void recordHistoryView(int id) {
+        historyJournal.view(id);
+        if (mode == PersistenceMode.SNAPSHOT && flusher == null) {
+            startFlusher();
+        }
+    }
+
+    /**
+     * Сохраняет результат операции в соответствии с режимом:
+     * перезаписывает файл целиком или ставит одну запись в очередь журнала.
+     *
+     * @param record запись журнала, вычисляется только в режиме журнала
+     * @return фиксация записи журнала
+     */
+    private GroupCommitWriter.Commit record(Supplier<String> record) {
+        if (restoring) {
+            return GroupCommitWriter.Commit.DONE;
+        }
+        if (transactionRecords != null) {
+            // Изменения транзакции сохраняются вместе при её фиксации
+            String line = record.get();
+            if (line != null) {
+                transactionRecords.add(line);
             }
+            return GroupCommitWriter.Commit.DONE;
+        }
+        if (mode == PersistenceMode.SNAPSHOT) {
+            save();
+            return GroupCommitWriter.Commit.DONE;
+        }
+        if (mode == PersistenceMode.WRITE_BEHIND) {
+            markUnflushed();
+            return GroupCommitWriter.Commit.DONE;
+        }
+        if (!journalAttached) {
+            // Новый менеджер: фиксируем базовый снимок, старый журнал к нему не относится
+            save();
+            journal.clear();
+            attachJournal();
+            return GroupCommitWriter.Commit.DONE;
+        }
+        String line = record.get();
+        if (line == null) {
+            return GroupCommitWriter.Commit.DONE; // транзакция без изменений
+        }
+        GroupCommitWriter.Commit commit = journal.append(++lastSeq + "," + line);
+        if (settings.isExceeded(journal.getBytes(), journal.getRecords())) {
+            scheduleCompaction();
+        }
+        return commit;
+    }
 
-            writer.write("\n"); // пустая строка перед историей
-            writer.write(historyToString());
+    /**
+     * Учитывает изменение для отложенной записи и при достижении порога запускает её досрочно.
+     * Фоновый поток запускается при первом изменении.
+     */
+    private void markUnflushed() {
+        if (flusher == null) {
+            startFlusher();
+        }
+        unflushedChanges++;
+        long threshold = settings.getFlushThreshold();
+        if (threshold > 0 && unflushedChanges >= threshold) {
+            scheduleFlush();
+        }
+    }
 
-        } catch (IOException e) {
-            throw new ManagerSaveException("Ошибка при сохранении данных в файл: " + file.getName(), e);
+    /**
+     * Ограничивает число несохранённых изменений в режиме отложенной записи:
+     * если фоновая запись отстала, ждёт, пока накопленные изменения не будут взяты в снимок.
+     * Вызывается под блокировкой менеджера; ожидание её освобождает.
+     */
+    private void awaitFlushCapacity() {
+        long max = settings.getMaxUnflushedChanges();
+        if (mode != PersistenceMode.WRITE_BEHIND || restoring || transactionRecords != null || max <= 0) {
+            return;
+        }
+        while (unflushedChanges >= max) {
+            scheduleFlush();
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ManagerSaveException("Прервано ожидание записи снимка: " + file.getName(), e);
+            }
         }
     }
 
     /**
-     * Преобразует задачу в CSV-строку.
+     * Запускает фоновый поток записи. В режиме отложенной записи он записывает снимок раз в интервал
+     * из настроек и дописывает журнал истории; в режиме снимка изменения сохраняются сразу,
+     * и поток только дописывает журнал истории.
      */
-    private String toString(Task task) {
-        String epicId = "";
-        if (task.getType() == TypeTask.SUBTASK) {
-            epicId = String.valueOf(((Subtask) task).getEpicId());
+    private void startFlusher() {
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "snapshot-flusher-" + file.getName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Duration interval = settings.getFlushInterval();
+        if (mode == PersistenceMode.WRITE_BEHIND && interval != null && !interval.isZero()) {
+            long period = Math.max(1, interval.toMillis());
+            flusher.scheduleWithFixedDelay(this::flushQuietly, period, period, TimeUnit.MILLISECONDS);
+        }
+        flusher.scheduleWithFixedDelay(this::flushHistory,
+                HISTORY_FLUSH_MILLIS, HISTORY_FLUSH_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private void scheduleFlush() {
+        if (flusher != null && !flusher.isShutdown() && flushScheduled.compareAndSet(false, true)) {
+            flusher.execute(() -> {
+                // Флаг снимается до записи: изменения, пришедшие во время неё, запросят следующую
+                flushScheduled.set(false);
+                flushQuietly();
+            });
         }
+    }
 
-        // Новые поля duration и startTime
-        String duration = task.getDuration()
-                .map(d -> String.valueOf(d.toMinutes()))
-                .orElse("");
-        String startTime = task.getStartTime()
-                .map(LocalDateTime::toString)
-                .orElse("");
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // Изменения остаются помеченными, следующая попытка запишет снимок заново
+            System.err.println("Ошибка фоновой записи снимка: " + e.getMessage());
+        }
+    }
 
-        return String.join(",",
-                String.valueOf(task.getId()),
-                task.getType().name(),
-                clearStringForCSV(task.getTitle()),
-                task.getStatus().name(),
-                clearStringForCSV(task.getDescription()),
-                duration,
-                startTime,
-                epicId);
+    /**
+     * Синхронно сохраняет на диск все изменения, принятые к моменту вызова.
+     * В режиме отложенной записи записывает снимок, если есть несохранённые изменения;
+     * в остальных режимах изменения уже на диске, и дописывается только история просмотров.
+     * Вызывается перед остановкой приложения; {@link #close()} вызывает его сам.
+     */
+    public void flush() {
+        awaitLoaded();
+        if (mode != PersistenceMode.WRITE_BEHIND) {
+            historyJournal.flush();
+            return;
+        }
+        synchronized (flushMonitor) {
+            ManagerState state;
+            List<Integer> history;
+            synchronized (this) {
+                if (unflushedChanges == 0) {
+                    return;
+                }
+                state = getState(); // неизменяемая версия: копировать задачи под блокировкой не нужно
+                history = historyIds();
+                historyJournal.rotate();
+                unflushedChanges = 0;
+                notifyAll(); // операции, ждущие места для изменений, могут продолжать
+            }
+            try {
+                replaceSnapshot(state, history, -1);
+            } catch (ManagerSaveException e) {
+                synchronized (this) {
+                    unflushedChanges = Math.max(unflushedChanges, 1);
+                }
+                throw e;
+            }
+            historyJournal.dropRotated();
+        }
     }
 
     /**
-     * Экранирует строку для корректного сохранения в CSV.
-     *
-     * @param value исходная строка.
+     * Возвращает статистику групповой фиксации журнала.
      */
-    private String clearStringForCSV(String value) {
-        if (value == null) return "\"\""; // пустое поле
-        String escaped = value
-                .replace("\"", "\"\"")   // удваиваем кавычки
-                .replace("\r", "")       // удаляем возвраты каретки
-                .replace("\n", "")       // удаляем переводы строк
-                .replace("\t", "")       // удаляем табуляции
-                .trim();
-        return "\"" + escaped + "\"";
+    public CommitStats getCommitStats() {
+        return journal.getStats();
     }
 
     /**
-     * Декодирует строку из CSV-формата.
-     *
-     * @param value строка в CSV-формате.
-     */
-    private static String unescapeCSV(String value) {
-        if (value == null || value.isEmpty()) return "";
-        value = value.trim();
-        if (value.startsWith("\"") && value.endsWith("\"") && value.length() >= 2) {
-            value = value.substring(1, value.length() - 1);
-        }
-        return value.replace("\"\"", "\"");
-    }
-
-    /**
-     * Безопасно парсит строку CSV с учётом кавычек и запятых.
-     */
-    private static List<String> parseCSVLine(String line) {
-        // Создаём список, куда будем добавлять найденные поля
-        List<String> result = new ArrayList<>();
-        // Если строка пустая, возвращаем пустой список
-        if (line == null || line.isEmpty()) return result;
-        // Буфер для текущего поля
-        StringBuilder current = new StringBuilder();
-        // Флаг, показывающий, находимся ли мы сейчас "внутри кавычек"
-        boolean inQuotes = false;
-        // Проходим по каждому символу строки
-        for (int i = 0; i < line.length(); i++) {
-            char c = line.charAt(i); // текущий символ
-            // Если встретили кавычку
-            if (c == '"') {
-                // Если уже находимся внутри кавычек, и следующая тоже кавычка — это экранированная кавычка ""
-                if (inQuotes && i + 1 < line.length() && line.charAt(i + 1) == '"') {
-                    current.append('"'); // добавляем одну кавычку в значение поля
-                    i++;                 // пропускаем следующую кавычку
-                } else {
-                    // Меняем состояние — входим или выходим из кавычек
-                    inQuotes = !inQuotes;
+     * Переводит менеджер в режим дописывания в журнал и запускает фоновую компактизацию по времени.
+     */
+    private void attachJournal() {
+        journalAttached = true;
+        journal.open(settings.getGroupCommitWindow());
+        compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "journal-compactor-" + file.getName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Duration interval = settings.getCompactionInterval();
+        if (interval != null && !interval.isZero()) {
+            long period = Math.max(1, Math.min(interval.toMillis(), 1000));
+            compactor.scheduleWithFixedDelay(this::checkCompactionInterval, period, period, TimeUnit.MILLISECONDS);
+        }
+        compactor.scheduleWithFixedDelay(this::flushHistory,
+                HISTORY_FLUSH_MILLIS, HISTORY_FLUSH_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private void flushHistory() {
+        try {
+            historyJournal.flush();
+        } catch (ManagerSaveException e) {
+            System.err.println("Ошибка записи истории просмотров: " + e.getMessage());
+        }
+    }
+
+    private void checkCompactionInterval() {
+        boolean due;
+        synchronized (this) {
+            due = journal.getRecords() > 0
+                    && System.nanoTime() - lastCompactionNanos >= settings.getCompactionInterval().toNanos();
+        }
+        if (due) {
+            scheduleCompaction();
+        }
+    }
+
+    private void scheduleCompaction() {
+        if (compactor != null && compactionScheduled.compareAndSet(false, true)) {
+            compactor.execute(() -> {
+                try {
+                    compact();
+                } catch (RuntimeException e) {
+                    // Сегменты журнала остаются на диске, следующая попытка повторит компактизацию
+                    System.err.println("Ошибка компактизации журнала: " + e.getMessage());
+                } finally {
+                    compactionScheduled.set(false);
                 }
-                // Если встретили запятую, и мы НЕ внутри кавычек
-            } else if (c == ',' && !inQuotes) {
-                // Завершаем текущее поле, добавляем его в список
-                result.add(current.toString());
-                // Очищаем буфер, чтобы начать собирать следующее поле
-                current.setLength(0);
-                // Любой другой символ добавляем в текущее поле
-            } else {
-                current.append(c);
+            });
+        }
+    }
+
+    /**
+     * Сворачивает журнал в новый базовый снимок.
+     * Под блокировкой менеджера берётся опубликованная версия состояния и журнал переключается на новый файл;
+     * запись снимка на диск идёт без блокировки, поэтому изменения продолжают приниматься.
+     * Новый снимок заменяет старый атомарным переименованием, после чего
+     * учтённые в нём сегменты журнала удаляются.
+     */
+    public void compact() {
+        awaitLoaded();
+        if (mode == PersistenceMode.SNAPSHOT) {
+            return;
+        }
+        synchronized (compactionMonitor) {
+            ManagerState state;
+            List<Integer> history;
+            long seq;
+            GroupCommitWriter.Commit rotation;
+            synchronized (this) {
+                if (!journalAttached || lastSeq == snapshotSeq) {
+                    return;
+                }
+                state = getState();
+                history = historyIds();
+                historyJournal.rotate();
+                seq = lastSeq;
+                rotation = journal.rotate(seq);
+                lastCompactionNanos = System.nanoTime();
+            }
+
+            replaceSnapshot(state, history, seq);
+            synchronized (this) {
+                snapshotSeq = seq;
             }
+            rotation.await();
+            journal.deleteSegmentsUpTo(seq);
+            historyJournal.dropRotated();
         }
-        // Добавляем последнее поле после выхода из цикла (после последней запятой)
-        result.add(current.toString());
-        // Возвращаем итоговый список полей
-        return result;
     }
 
     /**
-     * Преобразует CSV-строку в задачу.
+     * Записывает снимок во временный файл и атомарно заменяет им основной.
      */
-    private static Task fromString(String line) {
-        List<String> fields = parseCSVLine(line);
-        if (fields.size() < 6) {
-            throw new ManagerSaveException("Недостаточно полей в CSV-строке: " + line);
+    private void replaceSnapshot(ManagerState state, List<Integer> history, long seq) {
+        File temp = new File(file.getPath() + TEMP_SUFFIX);
+        writeSnapshot(temp, state.getTasks(), state.getEpics(), state.getSubtasks(), history, seq);
+        try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.WRITE)) {
+            channel.force(true);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка при сохранении снимка: " + temp.getName(), e);
         }
+        try {
+            Files.move(temp.toPath(), file.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка при замене снимка: " + file.getName(), e);
+        }
+    }
 
-        int id = Integer.parseInt(fields.get(0));
-        TypeTask type = TypeTask.valueOf(fields.get(1));
-        String name = unescapeCSV(fields.get(2));
-        TaskStatus status = TaskStatus.valueOf(fields.get(3));
-        String description = unescapeCSV(fields.get(4));
+    /**
+     * Дожидается записи журналов и несохранённых изменений на диск и останавливает фоновые потоки.
+     * Другого способа остановить их нет: незакрытый менеджер держит свои потоки до конца работы JVM.
+     */
+    @Override
+    public void close() {
+        awaitLoaded();
+        if (compactor != null) {
+            compactor.shutdownNow();
+        }
+        if (flusher != null) {
+            flusher.shutdown(); // текущая фоновая запись доделывается, flush() дождётся её
+        }
+        journal.close();
+        flush();
+        historyJournal.flush();
+    }
+
+    private String journalRecord(JournalOp op, Task task) {
+        return op.name() + "," + CsvSnapshot.toCsv(task);
+    }
+
+    private String journalRecord(JournalOp op, TypeTask type, int id) {
+        return op.name() + "," + type.name() + "," + id;
+    }
+
+    private String journalRecord(JournalOp op, TypeTask type) {
+        return op.name() + "," + type.name();
+    }
 
-        // Новые поля duration и startTime
-        Duration duration = null;
-        if (!fields.get(5).isBlank()) {
-            duration = Duration.ofMinutes(Long.parseLong(fields.get(5)));
+    /**
+     * Записывает изменения транзакции одной строкой журнала: записи операций идут подряд, каждая
+     * с префиксом длины ("длина:запись"), поэтому их содержимое не нужно экранировать. Оборванная
+     * строка отбрасывается при чтении целиком, как и любая оборванная запись.
+     */
+    private String batchRecord(List<String> records) {
+        StringBuilder record = new StringBuilder(JournalOp.BATCH.name()).append(',');
+        for (String part : records) {
+            record.append(part.length()).append(':').append(part);
         }
+        return record.toString();
+    }
 
-        LocalDateTime startTime = null;
-        if (fields.size() > 6 && !fields.get(6).isBlank()) {
-            startTime = LocalDateTime.parse(fields.get(6));
+    private List<Operation> parseBatch(String payload) {
+        List<Operation> operations = new ArrayList<>();
+        int pos = 0;
+        while (pos < payload.length()) {
+            int colon = payload.indexOf(':', pos);
+            int end = colon + 1 + Integer.parseInt(payload.substring(pos, colon));
+            operations.add(parseOperation(payload.substring(colon + 1, end)));
+            pos = end;
         }
+        return operations;
+    }
 
-        // Если в списке fields есть элемент с индексом 7, присваиваем его значение переменной epicField.
-        // Иначе присваиваем пустую строку.
-        String epicField = fields.size() > 7 ? fields.get(7) : "";
+    /**
+     * Разбирает запись операции без номера: вид операции и данные.
+     */
+    private Operation parseOperation(String record) {
+        int comma = record.indexOf(',');
+        String payload = record.substring(comma + 1);
+        return switch (JournalOp.valueOf(record.substring(0, comma))) {
+            case ADD -> Operation.add(CsvTaskReader.fromString(payload));
+            case UPDATE -> Operation.update(CsvTaskReader.fromString(payload));
+            case DELETE -> {
+                String[] parts = payload.split(",");
+                yield Operation.delete(TypeTask.valueOf(parts[0]), Integer.parseInt(parts[1]));
+            }
+            case CLEAR -> Operation.deleteAll(TypeTask.valueOf(payload));
+            case BATCH -> throw new IllegalArgumentException("Вложенный пакет в записи журнала");
+        };
+    }
 
-        return switch (type) {
-            case TASK -> new Task(id, name, description, status, duration, startTime);
-            case EPIC -> {
-                Epic e = new Epic(name, description);
-                e.setId(id);
-                e.setStatus(status);
-                yield e;
+    /**
+     * Применяет одну запись журнала к менеджеру.
+     *
+     * @param record строка журнала
+     */
+    private void applyJournalRecord(String record) {
+        int seqComma = record.indexOf(',');
+        int comma = seqComma < 0 ? -1 : record.indexOf(',', seqComma + 1);
+        if (comma < 0) {
+            throw new ManagerSaveException("Некорректная запись журнала: " + record);
+        }
+        String payload = record.substring(comma + 1);
+        try {
+            long seq = Long.parseLong(record.substring(0, seqComma));
+            if (seq <= snapshotSeq) {
+                return; // запись уже учтена в базовом снимке
             }
-            case SUBTASK -> {
-                int epicId = epicField.isBlank() ? 0 : Integer.parseInt(epicField);
-                yield new Subtask(id, name, description, status, duration, startTime, epicId);
+            lastSeq = seq;
+            String body = record.substring(seqComma + 1);
+            if (body.startsWith(JournalOp.BATCH.name() + ",")) {
+                applyBatch(parseBatch(payload));
+            } else {
+                parseOperation(body).applyTo(this);
             }
-        };
+        } catch (ManagerSaveException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw new ManagerSaveException("Ошибка применения записи журнала: " + record, e);
+        }
     }
 
     /**
@@ -230,163 +644,367 @@ public class FileBackedTaskManager extends InMemoryTaskManager {
      * @return загруженный менеджер задач.
      */
     public static FileBackedTaskManager loadFromFile(File file) {
-        FileBackedTaskManager manager = new FileBackedTaskManager(file);
+        return loadFromFile(file, PersistenceMode.SNAPSHOT);
+    }
 
-        try {
-            // Если файла нет или он пуст — просто вернуть пустой менеджер
-            if (!file.exists() || file.length() == 0) {
-                return manager;
-            }
+    /**
+     * Загружает менеджер задач из указанного файла с настройками по умолчанию.
+     * Следующие снимки записываются в формате загруженного файла.
+     *
+     * @param file файл для загрузки данных.
+     * @param mode режим сохранения загруженного менеджера.
+     * @return загруженный менеджер задач.
+     */
+    public static FileBackedTaskManager loadFromFile(File file, PersistenceMode mode) {
+        return loadFromFile(file, mode, settingsFor(file));
+    }
 
-            System.out.println("Загружаю данные из файла: " + file.getAbsolutePath()); //для отладки
+    /**
+     * Загружает менеджер задач из указанного файла. В режиме журнала
+     * после базового снимка проигрываются записи журнала. Снимок читается в формате файла,
+     * а все настройки, включая формат следующих снимков, берутся из settings.
+     *
+     * @param file     файл для загрузки данных.
+     * @param mode     режим сохранения загруженного менеджера.
+     * @param settings настройки журнала, фоновой записи и формата снимков.
+     * @return загруженный менеджер задач.
+     */
+    public static FileBackedTaskManager loadFromFile(File file, PersistenceMode mode, JournalSettings settings) {
+        FileBackedTaskManager manager = new FileBackedTaskManager(file, mode, settings);
+        manager.load();
+        return manager;
+    }
 
-            List<String> lines = Files.readAllLines(file.toPath());
+    /**
+     * Открывает двоичный снимок без ожидания полной загрузки.
+     * Файл отображается в память, и строится только индекс id → смещение записи;
+     * getTaskById/getEpicById/getSubtaskById и списки задач сразу обслуживаются разбором
+     * нужных записей из отображения. Полная загрузка идёт в фоновом потоке; изменения,
+     * история и порядок приоритета ждут её окончания.
+     * <p>
+     * Если файл не двоичный или в журнале есть записи поверх снимка, выполняется обычная загрузка.
+     *
+     * @param file двоичный снимок
+     * @param mode режим сохранения
+     * @return менеджер задач с настройками по умолчанию и форматом снимков загруженного файла
+     */
+    public static FileBackedTaskManager openMapped(File file, PersistenceMode mode) {
+        return openMapped(file, mode, settingsFor(file));
+    }
 
-            if (lines.isEmpty()) {
-                // только заголовок или пустой файл
-                return manager;
-            }
+    /**
+     * Открывает двоичный снимок без ожидания полной загрузки, как {@link #openMapped(File, PersistenceMode)},
+     * с заданными настройками.
+     *
+     * @param file     двоичный снимок
+     * @param mode     режим сохранения
+     * @param settings настройки журнала, фоновой записи и формата снимков
+     * @return менеджер задач
+     */
+    public static FileBackedTaskManager openMapped(File file, PersistenceMode mode, JournalSettings settings) {
+        FileBackedTaskManager manager = new FileBackedTaskManager(file, mode, settings);
+        if (!file.exists() || SnapshotFormat.detect(file) != SnapshotFormat.BINARY || !manager.journal.isEmpty()) {
+            manager.load();
+            return manager;
+        }
+        manager.mapped = MappedSnapshot.open(file);
+        manager.loaded = new CompletableFuture<>();
+        Thread thread = new Thread(manager::loadInBackground, "snapshot-loader-" + file.getName());
+        thread.setDaemon(true);
+        manager.loader = thread;
+        thread.start();
+        return manager;
+    }
+
+    /**
+     * Возвращает настройки по умолчанию, в которых снимки пишутся в формате существующего файла.
+     */
+    private static JournalSettings settingsFor(File file) {
+        JournalSettings settings = new JournalSettings();
+        if (file.exists() && file.length() > 0) {
+            settings.setSnapshotFormat(SnapshotFormat.detect(file));
+        }
+        return settings;
+    }
 
-            String header = lines.getFirst().trim();
-            if (!header.equals(CSV_HEADER)) {
-                throw new ManagerSaveException("Файл имеет неверный формат CSV: ожидается заголовок \""
-                        + CSV_HEADER + "\", найдено: " + header);
+    /**
+     * Полная загрузка: снимок, журнал и журнал истории.
+     */
+    private void load() {
+        restoring = true;
+        try {
+            loadSnapshot();
+            if (mode == PersistenceMode.JOURNAL) {
+                journal.replay(this::applyJournalRecord);
             }
+            historyJournal.replay(this::restoreView);
+            if (mode == PersistenceMode.JOURNAL) {
+                attachJournal();
+            }
+        } finally {
+            restoring = false;
+        }
+    }
 
-            // Пропускаем первую строку с заголовками
-            int i = 1;
-            for (; i < lines.size(); i++) {
-                String line = lines.get(i).trim();
-                if (line.isEmpty()) {
-                    // Пустая строка — разделитель между задачами и историей
-                    break;
+    private void loadInBackground() {
+        try {
+            synchronized (this) {
+                load();
+            }
+            synchronized (pendingViews) {
+                // Просмотры, сделанные во время загрузки, идут в историю после загруженных
+                for (int id : pendingViews) {
+                    synchronized (this) {
+                        if (findLoaded(id).isPresent()) {
+                            recordHistoryView(id);
+                        }
+                    }
                 }
+                pendingViews.clear();
+                mapped = null;
+            }
+            loaded.complete(null);
+        } catch (Throwable e) {
+            // Любая ошибка, включая OutOfMemoryError на большом снимке, завершает ожидание загрузки:
+            // иначе изменения ждали бы её вечно, а списки читали бы устаревшее отображение
+            synchronized (pendingViews) {
+                mapped = null;
+            }
+            loaded.completeExceptionally(e);
+        }
+    }
 
-                try {
-                    Task task = fromString(line);
-
-                    if (task instanceof Epic epic) {
-                        manager.addEpic(epic);
-                    } else if (task instanceof Subtask subtask) {
-                        manager.addSubtask(subtask);
-                    } else {
-                        manager.addTask(task);
-                    }
+    /**
+     * Дожидается окончания фоновой загрузки, если она идёт.
+     *
+     * @throws ManagerSaveException если загрузка завершилась ошибкой, в том числе Error
+     */
+    private void awaitLoaded() {
+        if (loaded.isDone() && !loaded.isCompletedExceptionally() || Thread.currentThread() == loader) {
+            return;
+        }
+        try {
+            loaded.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof ManagerSaveException cause) {
+                throw cause;
+            }
+            throw new ManagerSaveException("Ошибка загрузки снимка: " + file.getName(), e.getCause());
+        }
+    }
 
-                } catch (Exception parseError) {
-                    throw new ManagerSaveException("Ошибка парсинга CSV-строки: " + line, parseError);
-                }
+    /**
+     * Загружает задачи и историю из базового снимка. Формат определяется по содержимому файла;
+     * формат дальнейших снимков задаётся настройками.
+     */
+    private void loadSnapshot() {
+        // Если файла нет или он пуст — просто вернуть пустой менеджер
+        if (!file.exists() || file.length() == 0) {
+            return;
+        }
+
+        System.out.println("Загружаю данные из файла: " + file.getAbsolutePath()); //для отладки
+
+        SnapshotFormat format = SnapshotFormat.detect(file);
+        format.read(file, new SnapshotSink() {
+            @Override
+            public void task(Task task) {
+                // Снимок доверенный: строки кладутся в хранилище без проверок по одной,
+                // согласованность проверяется один раз после загрузки всех строк
+                restoreTask(task);
             }
 
-            if (i + 1 < lines.size()) { // если есть строки после разделителя
-                String historyLine = lines.get(i + 1).trim();
-                if (!historyLine.isEmpty()) {
-                    manager.loadHistory(historyLine);
+            @Override
+            public void tasksEnd() {
+                try {
+                    completeRestore();
+                } catch (RuntimeException e) {
+                    throw new ManagerSaveException("Снимок содержит несогласованные данные: " + file.getName(), e);
                 }
             }
 
-        } catch (IOException e) {
-            // Ошибка чтения самого файла
-            throw new ManagerSaveException("Ошибка при чтении файла: " + file.getName(), e);
-        }
+            @Override
+            public void view(int id) {
+                restoreView(id);
+            }
 
-        return manager;
+            @Override
+            public void seq(long seq) {
+                snapshotSeq = seq;
+                lastSeq = seq;
+            }
+        });
     }
 
     @Override
     public void addTask(Task task) {
-        super.addTask(task);
-        save();
+        persist(() -> super.addTask(task), () -> journalRecord(JournalOp.ADD, task));
     }
 
     @Override
     public void addEpic(Epic epic) {
-        super.addEpic(epic);
-        save();
+        persist(() -> super.addEpic(epic), () -> journalRecord(JournalOp.ADD, epic));
     }
 
     @Override
     public void addSubtask(Subtask subtask) {
-        super.addSubtask(subtask);
-        save();
+        persist(() -> super.addSubtask(subtask), () -> journalRecord(JournalOp.ADD, subtask));
     }
 
     @Override
     public void updateTask(Task task) {
-        super.updateTask(task);
-        save();
+        persist(() -> super.updateTask(task), () -> journalRecord(JournalOp.UPDATE, task));
     }
 
     @Override
     public void updateEpic(Epic epic) {
-        super.updateEpic(epic);
-        save();
+        persist(() -> super.updateEpic(epic), () -> journalRecord(JournalOp.UPDATE, epic));
     }
 
     @Override
     public void updateSubtask(Subtask subtask) {
-        super.updateSubtask(subtask);
-        save();
+        persist(() -> super.updateSubtask(subtask), () -> journalRecord(JournalOp.UPDATE, subtask));
     }
 
     @Override
     public void deleteTaskById(int id) {
-        super.deleteTaskById(id);
-        save();
+        persist(() -> super.deleteTaskById(id), () -> journalRecord(JournalOp.DELETE, TypeTask.TASK, id));
     }
 
     @Override
     public void deleteEpicById(int id) {
-        super.deleteEpicById(id);
-        save();
+        persist(() -> super.deleteEpicById(id), () -> journalRecord(JournalOp.DELETE, TypeTask.EPIC, id));
     }
 
     @Override
     public void deleteSubtaskById(int id) {
-        super.deleteSubtaskById(id);
-        save();
+        persist(() -> super.deleteSubtaskById(id), () -> journalRecord(JournalOp.DELETE, TypeTask.SUBTASK, id));
     }
 
     @Override
     public void deleteAllTasks() {
-        super.deleteAllTasks();
-        save();
+        persist(() -> super.deleteAllTasks(), () -> journalRecord(JournalOp.CLEAR, TypeTask.TASK));
     }
 
     @Override
     public void deleteAllEpics() {
-        super.deleteAllEpics();
-        save();
+        persist(() -> super.deleteAllEpics(), () -> journalRecord(JournalOp.CLEAR, TypeTask.EPIC));
     }
 
     @Override
     public void deleteAllSubtasks() {
-        super.deleteAllSubtasks();
-        save();
+        persist(() -> super.deleteAllSubtasks(), () -> journalRecord(JournalOp.CLEAR, TypeTask.SUBTASK));
+    }
+
+    /**
+     * Выполняет транзакцию и сохраняет её один раз: одним снимком или одной записью журнала,
+     * которая при восстановлении применяется целиком. Откаченная транзакция не сохраняется.
+     * Просмотры внутри транзакции копятся и пишутся в журнал истории после фиксации,
+     * а при откате отбрасываются вместе с остальными изменениями.
+     * Пакет операций ({@link #applyBatch}) выполняется этой же транзакцией.
+     */
+    @Override
+    public void runInTransaction(Consumer<? super TaskManager> work) {
+        List<String> records = new ArrayList<>();
+        List<Integer> views = new ArrayList<>();
+        persist(() -> {
+            List<String> outer = transactionRecords;
+            List<Integer> outerViews = transactionViews;
+            // вложенная транзакция пишет во внешнюю
+            transactionRecords = outer != null ? outer : records;
+            transactionViews = outerViews != null ? outerViews : views;
+            try {
+                super.runInTransaction(work);
+            } finally {
+                transactionRecords = outer;
+                transactionViews = outerViews;
+            }
+            views.forEach(this::recordHistoryView); // у вложенной список пуст
+        }, () -> records.isEmpty() ? null : batchRecord(records));
     }
 
-    // Получение задачи по ID с сохранением истории
+    // Получение задачи по ID с записью просмотра в журнал истории
     @Override
     public Optional<Task> getTaskById(int id) {
-        Optional<Task> task = super.getTaskById(id);
-        save();
-        return task;
+        return recordView(id, Task.class, () -> super.getTaskById(id));
     }
 
-    // Получение эпика по ID с сохранением истории
+    // Получение эпика по ID с записью просмотра в журнал истории
     @Override
     public Optional<Epic> getEpicById(int id) {
-        Optional<Epic> epic = super.getEpicById(id);
-        save();
-        return epic;
+        return recordView(id, Epic.class, () -> super.getEpicById(id));
     }
 
-    // Получение подзадачи по ID с сохранением истории
+    // Получение подзадачи по ID с записью просмотра в журнал истории
     @Override
     public Optional<Subtask> getSubtaskById(int id) {
-        Optional<Subtask> subtask = super.getSubtaskById(id);
-        save();
-        return subtask;
+        return recordView(id, Subtask.class, () -> super.getSubtaskById(id));
+    }
+
+    @Override
+    public List<Task> getAllTasks() {
+        MappedSnapshot snapshot = mapped;
+        if (snapshot != null) {
+            return snapshot.all(Task.class);
+        }
+        awaitLoaded();
+        return super.getAllTasks();
+    }
+
+    @Override
+    public List<Epic> getAllEpics() {
+        MappedSnapshot snapshot = mapped;
+        if (snapshot != null) {
+            return snapshot.all(Epic.class);
+        }
+        awaitLoaded();
+        return super.getAllEpics();
+    }
+
+    @Override
+    public List<Subtask> getAllSubtasks() {
+        MappedSnapshot snapshot = mapped;
+        if (snapshot != null) {
+            return snapshot.all(Subtask.class);
+        }
+        awaitLoaded();
+        return super.getAllSubtasks();
+    }
+
+    @Override
+    public ManagerState getState() {
+        awaitLoaded();
+        return super.getState();
+    }
+
+    @Override
+    public List<Subtask> getSubtasksOfEpic(int epicId) {
+        awaitLoaded();
+        return super.getSubtasksOfEpic(epicId);
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        awaitLoaded();
+        return super.getHistory();
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks() {
+        awaitLoaded();
+        return super.getPrioritizedTasks();
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks(LocalDateTime from, LocalDateTime to) {
+        awaitLoaded();
+        return super.getPrioritizedTasks(from, to);
+    }
+
+    @Override
+    public Optional<LocalDateTime> findEarliestFreeSlot(Duration duration, LocalDateTime notBefore) {
+        awaitLoaded();
+        return super.findEarliestFreeSlot(duration, notBefore);
     }
 
     /**
@@ -0,0 +1,272 @@
+package com.yandex.app.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Запись в файл с групповой фиксацией (group commit).
+ * Записи из разных потоков ставятся в очередь, отдельный поток записывает накопившуюся
+ * пачку одним вызовом и сбрасывает её на диск одним {@link FileChannel#force(boolean)}.
+ * Каждый вызывающий ждёт только фиксации той пачки, в которую попала его запись.
+ */
+class GroupCommitWriter {
+
+    private static final int MAX_BATCH = 1024;
+
+    /**
+     * Элемент очереди: данные для записи или действие, выполняемое после записи предыдущих элементов.
+     */
+    private static final class Entry {
+        final byte[] data;
+        final IoAction action;
+        final long enqueuedNanos = System.nanoTime();
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Entry(byte[] data, IoAction action) {
+            this.data = data;
+            this.action = action;
+        }
+    }
+
+    /**
+     * Действие с файлом, выполняемое потоком записи (например, ротация журнала).
+     */
+    interface IoAction {
+        void run() throws IOException;
+    }
+
+    private final File file;
+    private final long windowNanos;
+    private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+    private final Thread flusher;
+    private FileChannel channel; // используется только потоком записи
+    private volatile boolean closed;
+
+    // Счётчики статистики, изменяются только потоком записи
+    private volatile long batches;
+    private volatile long records;
+    private volatile int maxBatchSize;
+    private volatile long totalLatencyNanos;
+    private volatile long maxLatencyNanos;
+
+    /**
+     * @param file   файл, в конец которого дописываются данные
+     * @param window сколько ждать дополнительных записей после первой записи пачки
+     */
+    GroupCommitWriter(File file, Duration window) {
+        this.file = file;
+        this.windowNanos = window == null ? 0 : window.toNanos();
+        this.flusher = new Thread(this::run, "journal-writer-" + file.getName());
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Ставит данные в очередь на запись.
+     *
+     * @param data байты записи
+     * @return фиксация, которую можно дождаться методом {@link Commit#await()}
+     */
+    Commit append(byte[] data) {
+        return enqueue(new Entry(data, null));
+    }
+
+    /**
+     * Выполняет действие в потоке записи после фиксации всех ранее поставленных записей.
+     *
+     * @param action действие с файлом
+     * @return фиксация, завершающаяся после выполнения действия
+     */
+    Commit submit(IoAction action) {
+        return enqueue(new Entry(null, action));
+    }
+
+    /**
+     * Дожидается записи всех поставленных данных и останавливает поток записи.
+     */
+    void close() {
+        if (closed) {
+            return;
+        }
+        Commit last = submit(() -> { });
+        closed = true;
+        last.await();
+        flusher.interrupt();
+    }
+
+    CommitStats getStats() {
+        return new CommitStats(batches, records, maxBatchSize, totalLatencyNanos, maxLatencyNanos);
+    }
+
+    private Commit enqueue(Entry entry) {
+        if (closed) {
+            throw new ManagerSaveException("Журнал закрыт: " + file.getName());
+        }
+        queue.add(entry);
+        return new Commit(entry.done);
+    }
+
+    private void run() {
+        List<Entry> batch = new ArrayList<>();
+        try {
+            while (!closed || !queue.isEmpty()) {
+                batch.add(queue.take());
+                collectBatch(batch);
+                processBatch(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeChannel();
+        }
+    }
+
+    /**
+     * Добирает в пачку записи, пришедшие в течение окна группировки.
+     */
+    private void collectBatch(List<Entry> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + windowNanos;
+        while (batch.size() < MAX_BATCH) {
+            queue.drainTo(batch, MAX_BATCH - batch.size());
+            long left = deadline - System.nanoTime();
+            if (left <= 0 || batch.size() >= MAX_BATCH) {
+                return;
+            }
+            Entry next = queue.poll(left, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void processBatch(List<Entry> batch) {
+        int from = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            Entry entry = batch.get(i);
+            if (entry.action != null) {
+                // Действие выполняется строго после записи предшествующих данных
+                commit(batch.subList(from, i));
+                try {
+                    closeChannel();
+                    entry.action.run();
+                    entry.done.complete(null);
+                } catch (IOException | RuntimeException e) {
+                    entry.done.completeExceptionally(
+                            new ManagerSaveException("Ошибка обработки журнала: " + file.getName(), e));
+                }
+                from = i + 1;
+            }
+        }
+        commit(batch.subList(from, batch.size()));
+    }
+
+    private void commit(List<Entry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        try {
+            if (channel == null) {
+                channel = FileChannel.open(file.toPath(),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            }
+            ByteBuffer[] buffers = new ByteBuffer[entries.size()];
+            for (int i = 0; i < buffers.length; i++) {
+                buffers[i] = ByteBuffer.wrap(entries.get(i).data);
+            }
+            long remaining = 0;
+            for (ByteBuffer buffer : buffers) {
+                remaining += buffer.remaining();
+            }
+            while (remaining > 0) {
+                remaining -= channel.write(buffers);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            ManagerSaveException error = new ManagerSaveException("Ошибка при записи в журнал: " + file.getName(), e);
+            entries.forEach(entry -> entry.done.completeExceptionally(error));
+            closeChannel();
+            return;
+        }
+        long now = System.nanoTime();
+        long latency = 0;
+        long maxLatency = maxLatencyNanos;
+        for (Entry entry : entries) {
+            long entryLatency = now - entry.enqueuedNanos;
+            latency += entryLatency;
+            maxLatency = Math.max(maxLatency, entryLatency);
+        }
+        batches++;
+        records += entries.size();
+        maxBatchSize = Math.max(maxBatchSize, entries.size());
+        totalLatencyNanos += latency;
+        maxLatencyNanos = maxLatency;
+        // Статистика обновляется до пробуждения ожидающих, чтобы они видели свою запись учтённой
+        entries.forEach(entry -> entry.done.complete(null));
+    }
+
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // канал уже не используется
+            }
+            channel = null;
+        }
+    }
+
+    /**
+     * Фиксация записи: позволяет дождаться, пока запись окажется на диске.
+     */
+    static final class Commit {
+        static final Commit DONE = new Commit(CompletableFuture.completedFuture(null));
+
+        private final CompletableFuture<Void> future;
+
+        private Commit(CompletableFuture<Void> future) {
+            this.future = future;
+        }
+
+        /**
+         * Объединяет две фиксации: результат завершается, когда зафиксированы обе записи.
+         */
+        Commit and(Commit other) {
+            if (this == DONE) {
+                return other;
+            }
+            if (other == DONE) {
+                return this;
+            }
+            return new Commit(CompletableFuture.allOf(future, other.future));
+        }
+
+        /**
+         * Блокирует поток до фиксации записи.
+         *
+         * @throws ManagerSaveException если запись не удалась
+         */
+        void await() {
+            try {
+                future.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof ManagerSaveException cause) {
+                    throw cause;
+                }
+                throw new ManagerSaveException("Ошибка при записи в журнал", e.getCause());
+            }
+        }
+    }
+}
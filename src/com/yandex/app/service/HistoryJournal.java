@@ -0,0 +1,141 @@
+package com.yandex.app.service;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashSet;
+import java.util.function.IntConsumer;
+
+/**
+ * Журнал просмотров задач.
+ * Просмотры копятся в памяти: повторный просмотр той же задачи только переносит её id в конец очереди.
+ * Накопленные id дописываются в файл по одному в строке, когда их становится много,
+ * а также при сохранении снимка, закрытии менеджера и раз в секунду фоновым потоком менеджера,
+ * так что при сбое теряются просмотры не более чем за последнюю секунду.
+ * <p>
+ * Проигрывание не идемпотентно: просмотр переносит задачу в конец истории. Поэтому файл
+ * проигрывается поверх снимка один раз, а просмотры, вошедшие в снимок, удаляются ({@link #clear()})
+ * или откладываются до его записи ({@link #rotate()}).
+ */
+class HistoryJournal {
+
+    private static final int FLUSH_THRESHOLD = 64;
+    private static final String PREVIOUS_SUFFIX = ".prev";
+
+    private final File file;
+    private final File previous; // просмотры, ожидающие попадания в новый снимок
+    private final LinkedHashSet<Integer> pending = new LinkedHashSet<>();
+
+    HistoryJournal(File file) {
+        this.file = file;
+        this.previous = new File(file.getPath() + PREVIOUS_SUFFIX);
+    }
+
+    /**
+     * Запоминает просмотр задачи.
+     *
+     * @param id идентификатор просмотренной задачи
+     */
+    synchronized void view(int id) {
+        pending.remove(id);
+        pending.add(id);
+        if (pending.size() >= FLUSH_THRESHOLD) {
+            flush();
+        }
+    }
+
+    /**
+     * Дописывает накопленные просмотры в файл.
+     */
+    synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        StringBuilder data = new StringBuilder(pending.size() * 8);
+        for (int id : pending) {
+            data.append(id).append('\n');
+        }
+        try (OutputStream out = new FileOutputStream(file, true)) {
+            out.write(data.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка при записи истории: " + file.getName(), e);
+        }
+        pending.clear();
+    }
+
+    /**
+     * Сбрасывает просмотры, которые уже вошли в записанный снимок.
+     */
+    synchronized void clear() {
+        pending.clear();
+        try {
+            Files.deleteIfExists(previous.toPath());
+            Files.deleteIfExists(file.toPath());
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка при очистке истории: " + file.getName(), e);
+        }
+    }
+
+    /**
+     * Откладывает текущие просмотры до записи нового снимка.
+     * Вызывается в момент снятия копии истории для снимка.
+     */
+    synchronized void rotate() {
+        flush();
+        if (!file.exists()) {
+            return;
+        }
+        try {
+            if (previous.exists()) {
+                // Предыдущий снимок не был записан — сохраняем порядок просмотров
+                Files.write(previous.toPath(), Files.readAllBytes(file.toPath()), StandardOpenOption.APPEND);
+                Files.delete(file.toPath());
+            } else {
+                Files.move(file.toPath(), previous.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка при ротации истории: " + file.getName(), e);
+        }
+    }
+
+    /**
+     * Удаляет отложенные просмотры после того, как новый снимок записан.
+     */
+    synchronized void dropRotated() {
+        previous.delete();
+    }
+
+    /**
+     * Передаёт сохранённые просмотры обработчику в порядке их записи.
+     *
+     * @param consumer обработчик id просмотренных задач
+     */
+    void replay(IntConsumer consumer) {
+        replayFile(previous, consumer);
+        replayFile(file, consumer);
+    }
+
+    private void replayFile(File source, IntConsumer consumer) {
+        if (!source.exists()) {
+            return;
+        }
+        String content;
+        try {
+            content = Files.readString(source.toPath(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка при чтении истории: " + source.getName(), e);
+        }
+        // Строка без перевода строки в конце — оборванная при сбое запись, её пропускаем
+        int end = content.lastIndexOf('\n');
+        for (String line : content.substring(0, end + 1).split("\n")) {
+            if (!line.isBlank()) {
+                consumer.accept(Integer.parseInt(line.trim()));
+            }
+        }
+    }
+}
@@ -6,8 +6,10 @@ import java.util.*;
 
 /**
  * Класс InMemoryHistoryManager реализует интерфейс HistoryManager.
- * Хранит историю просмотренных задач с использованием двусвязного списка и HashMap.
+ * Хранит историю просмотренных задач с использованием двусвязного списка и словаря с ключами int.
  * Обеспечивает удаление и добавление за O(1).
+ * Методы синхронизированы: просмотры из параллельных чтений (например, под блокировкой чтения
+ * {@link ConcurrentTaskManager}) попадают в историю в едином порядке.
  */
 public class InMemoryHistoryManager implements HistoryManager {
 
@@ -30,7 +32,7 @@ public class InMemoryHistoryManager implements HistoryManager {
     private Node tail;
 
     //Словарь: id задачи → узел списка
-    private final Map<Integer, Node> nodeMap = new HashMap<>();
+    private final IntObjectMap<Node> nodeMap = new IntObjectMap<>();
 
     /**
      * Добавляет задачу в историю просмотров.
@@ -40,7 +42,7 @@ public class InMemoryHistoryManager implements HistoryManager {
      * @param task задача для добавления в историю
      */
     @Override
-    public void add(Task task) {
+    public synchronized void add(Task task) {
         if (task == null) {
             return; // просто игнорируем null
         }
@@ -63,7 +65,7 @@ public class InMemoryHistoryManager implements HistoryManager {
      * @param id удаляемой задачи
      */
     @Override
-    public void remove(int id) {
+    public synchronized void remove(int id) {
         Node node = nodeMap.remove(id);
         if (node != null) {
             removeNode(node);
@@ -76,7 +78,7 @@ public class InMemoryHistoryManager implements HistoryManager {
      * @return список задач
      */
     @Override
-    public List<Task> getHistory() {
+    public synchronized List<Task> getHistory() {
         List<Task> tasks = new ArrayList<>();
         Node current = head;
         while (current != null) {
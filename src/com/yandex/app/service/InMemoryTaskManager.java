@@ -3,70 +3,57 @@ package com.yandex.app.service;
 import com.yandex.app.model.Epic;
 import com.yandex.app.model.Subtask;
 import com.yandex.app.model.Task;
-import com.yandex.app.model.TaskStatus;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * Класс InMemoryTaskManager реализует интерфейс TaskManager.
  * Отвечает за хранение и управление задачами, эпиками и подзадачами.
  * Использует HistoryManager для хранения истории просмотров задач.
+ * <p>
+ * Изменения выполняются по одному (менеджер не потокобезопасен для записи), а после каждого
+ * успешного изменения публикуется новая неизменяемая версия состояния {@link ManagerState}.
+ * Списки задач, эпиков, подзадач и порядок приоритета читаются из неё, поэтому такие чтения
+ * можно выполнять из других потоков параллельно с изменениями без блокировок.
  */
-public class InMemoryTaskManager implements TaskManager {
+public class InMemoryTaskManager implements VersionedTaskManager {
 
     private int nextId = 1; // Счётчик для генерации уникальных id задач
 
-    private static final Duration SLOT_SIZE = Duration.ofMinutes(15);
-    private static final Duration MAX_PLANNING = Duration.ofDays(365);
-
-    private final Map<Integer, Task> tasks = new HashMap<>();
-    private final Map<Integer, Epic> epics = new HashMap<>();
-    private final Map<Integer, Subtask> subtasks = new HashMap<>();
-    private final Map<LocalDateTime, Boolean> timeSlots = new HashMap<>();
+    // Хранилища по id без упаковки ключей в Integer
+    private final IntObjectMap<Task> tasks = new IntObjectMap<>();
+    private final IntObjectMap<Epic> epics = new IntObjectMap<>();
+    private final IntObjectMap<Subtask> subtasks = new IntObjectMap<>();
 
     /**
-     * Конструктор инициализирует менеджер задач и временную сетку.
+     * Менеджер истории просмотров задач
      */
-    public InMemoryTaskManager() {
-        initializeTimeGrid();
-    }
+    private final HistoryManager historyManager = Managers.getDefaultHistory();
 
     /**
-     * Инициализирует временную сетку для отслеживания занятых слотов.
+     * Порядок приоритета, занятые интервалы и слоты задач и подзадач с временем.
      */
-    private void initializeTimeGrid() {
-        LocalDateTime now = LocalDateTime.now()
-                .minusDays(1)
-                .withMinute(0)
-                .withSecond(0)
-                .withNano(0);
-        LocalDateTime end = now.plus(MAX_PLANNING);
+    private final TaskSchedule schedule = new TaskSchedule();
 
-        for (LocalDateTime t = now; t.isBefore(end); t = t.plus(SLOT_SIZE)) {
-            timeSlots.put(t, false);
-        }
-    }
+    /**
+     * Накопленные статус и время подзадач каждого эпика по его id.
+     * Изменение подзадачи обновляет поля эпика за O(log k) без обхода всех его подзадач.
+     */
+    private final IntObjectMap<EpicAggregate> epicAggregates = new IntObjectMap<>();
 
     /**
-     * Менеджер истории просмотров задач
+     * Черновик следующей версии состояния и последняя опубликованная версия.
      */
-    private final HistoryManager historyManager = Managers.getDefaultHistory();
+    private final ManagerState.Draft draft = new ManagerState.Draft();
+    private volatile ManagerState state = ManagerState.EMPTY;
 
     /**
-     * Хранилище задач в порядке приоритета (по времени начала)
-     * Используется TreeSet для автоматической сортировки.
-     * Задачи без startTime не включаются в это множество.
+     * Выполняемая транзакция или null вне транзакции.
      */
-    private final Set<Task> prioritizedTasks = new TreeSet<>(
-            Comparator
-                    .comparing(
-                            (Task t) -> t.getStartTime().orElse(LocalDateTime.MAX),
-                            Comparator.naturalOrder()
-                    )
-                    .thenComparing(Task::getId)
-    );
+    private Transaction transaction;
 
     /**
      * Генерирует уникальный id для новой задачи.
@@ -82,12 +69,6 @@ public class InMemoryTaskManager implements TaskManager {
         return task.getId();
     }
 
-    // Добавление в TreeSet только если есть startTime
-    private void addToPrioritized(Task task) {
-        task.getStartTime().ifPresent(t -> prioritizedTasks.add(task));
-    }
-
-
     /**
      * Добавляет новую Task в менеджер.
      *
@@ -97,17 +78,16 @@ public class InMemoryTaskManager implements TaskManager {
     @Override
     public void addTask(Task task) {
         Objects.requireNonNull(task, "Task не может быть null");
-        if (hasOverlap(task)) {
-            throw new IllegalArgumentException("Задача пересекается по времени: " + task.getTitle());
-        }
-        occupySlots(task);
+        boolean overlapping = checkOverlap(task, "Задача пересекается по времени: ");
 
         int id = assignId(task);
         Task copy = new Task(task);
         copy.setId(id);
-        tasks.put(id, copy);
-        addToPrioritized(copy); // Добавляем только с валидным временем
-        task.setId(id);
+        put(tasks, id, copy);
+        addToSchedule(copy, overlapping);
+        draft.putTask(copy);
+        publish();
+        assignCallerId(task, id);
     }
 
     /**
@@ -122,8 +102,11 @@ public class InMemoryTaskManager implements TaskManager {
         int id = assignId(epic);
         Epic copy = new Epic(epic);
         copy.setId(id);
-        epics.put(id, copy);
-        epic.setId(id);
+        put(epics, id, copy);
+        put(epicAggregates, id, new EpicAggregate());
+        draft.putEpic(copy);
+        publish();
+        assignCallerId(epic, id);
     }
 
     /**
@@ -147,45 +130,105 @@ public class InMemoryTaskManager implements TaskManager {
             throw new IllegalArgumentException("Подзадача не может ссылаться на саму себя как на эпик.");
         }
 
-        if (hasOverlap(subtask)) {
-            throw new IllegalArgumentException("Подзадача пересекается по времени: " + subtask.getTitle());
-        }
-        occupySlots(subtask);
+        boolean overlapping = checkOverlap(subtask, "Подзадача пересекается по времени: ");
 
         int id = assignId(subtask);
         Subtask copy = new Subtask(subtask);
         copy.setId(id);
-        subtasks.put(id, copy);
-        addToPrioritized(copy);
-        subtask.setId(id);
+        put(subtasks, id, copy);
+        addToSchedule(copy, overlapping);
+        assignCallerId(subtask, id);
 
+        saveEpic(epic);
         epic.addSubtaskId(id);
-        updateEpicStatus(epic);
-        updateEpicTime(epic);
+        addToAggregate(epic, copy);
+        draft.putSubtask(copy);
+        refreshEpic(epic);
+        publish();
+    }
+
+    /**
+     * Кладёт задачу, эпик или подзадачу в хранилище без проверок и пересчётов.
+     * Используется при массовой загрузке доверенных данных (например, снимка с диска) в пустой менеджер:
+     * пересечения по времени, слоты, порядок приоритета и поля эпиков
+     * строятся один раз в {@link #completeRestore()}, который нужно вызвать после загрузки.
+     *
+     * @param task восстанавливаемая задача (сохраняется копия)
+     */
+    protected void restoreTask(Task task) {
+        Objects.requireNonNull(task, "Task не может быть null");
+        int id = assignId(task);
+        if (task instanceof Epic epic) {
+            Epic copy = new Epic(epic);
+            copy.setId(id);
+            copy.clearSubtasks(); // состав эпика восстанавливается по подзадачам
+            epics.put(id, copy);
+            epicAggregates.put(id, new EpicAggregate());
+        } else if (task instanceof Subtask subtask) {
+            Subtask copy = new Subtask(subtask);
+            copy.setId(id);
+            subtasks.put(id, copy);
+        } else {
+            Task copy = new Task(task);
+            copy.setId(id);
+            tasks.put(id, copy);
+        }
+        task.setId(id);
+    }
+
+    /**
+     * Завершает массовую загрузку: связывает подзадачи с эпиками, строит порядок приоритета
+     * и занятые слоты, пересчитывает эпики и один раз проверяет согласованность данных.
+     *
+     * @throws EpicNotFoundException    если подзадача ссылается на несуществующий эпик
+     * @throws IllegalArgumentException если загруженные задачи пересекаются по времени
+     */
+    protected void completeRestore() {
+        Set<Epic> changedEpics = new HashSet<>();
+        for (Subtask subtask : subtasks.values()) {
+            Epic epic = epics.get(subtask.getEpicId());
+            if (epic == null) {
+                throw new EpicNotFoundException("Epic с id " + subtask.getEpicId() + " не найден.");
+            }
+            epic.addSubtaskId(subtask.getId());
+            epicAggregates.get(epic.getId()).add(subtask);
+            changedEpics.add(epic);
+        }
+
+        List<Task> timed = new ArrayList<>(tasks.size() + subtasks.size());
+        timed.addAll(tasks.values());
+        timed.addAll(subtasks.values());
+        schedule.addAll(timed);
+        for (Epic epic : changedEpics) {
+            epicAggregates.get(epic.getId()).applyTo(epic);
+        }
+        draft.restore(tasks.values(), epics.values(), subtasks.values());
+        publish();
     }
 
     /**
-     * Возвращает список всех задач Task.
+     * Возвращает список всех задач Task из последней опубликованной версии, без копирования.
      */
     @Override
     public List<Task> getAllTasks() {
-        return new ArrayList<>(tasks.values());
+        return state.getTasks();
     }
 
     /**
-     * Возвращает список всех эпиков Epic.
+     * Возвращает список всех эпиков Epic из последней опубликованной версии.
+     * Эпики списка — копии, изменения менеджера на них не отражаются.
      */
     @Override
     public List<Epic> getAllEpics() {
-        return List.copyOf(epics.values());
+        return state.getEpics();
     }
 
     /**
-     * Возвращает список всех подзадач Subtask.
+     * Возвращает список всех подзадач Subtask из последней опубликованной версии, без копирования.
      */
     @Override
     public List<Subtask> getAllSubtasks() {
-        return new ArrayList<>(subtasks.values());
+        return state.getSubtasks();
     }
 
     /**
@@ -197,7 +240,7 @@ public class InMemoryTaskManager implements TaskManager {
     public Optional<Task> getTaskById(int id) {
         Task task = tasks.get(id);
         if (task != null) {
-            historyManager.add(task);
+            addToHistory(task);
             return Optional.of(new Task(task));
         }
         return Optional.empty();
@@ -212,7 +255,7 @@ public class InMemoryTaskManager implements TaskManager {
     public Optional<Epic> getEpicById(int id) {
         Epic epic = epics.get(id);
         if (epic != null) {
-            historyManager.add(epic);
+            addToHistory(epic);
             return Optional.of(new Epic(epic));
         }
         return Optional.empty();
@@ -227,7 +270,7 @@ public class InMemoryTaskManager implements TaskManager {
     public Optional<Subtask> getSubtaskById(int id) {
         Subtask subtask = subtasks.get(id);
         if (subtask != null) {
-            historyManager.add(subtask);
+            addToHistory(subtask);
             return Optional.of(new Subtask(subtask));
         }
         return Optional.empty();
@@ -249,23 +292,25 @@ public class InMemoryTaskManager implements TaskManager {
         }
 
         Task oldTask = tasks.get(task.getId());
-        prioritizedTasks.remove(oldTask);
-        releaseSlots(oldTask); // Добавляем: освобождаем старые слоты
+        removeFromSchedule(oldTask); // освобождаем старые интервалы
 
-        if (hasOverlap(task)) {
-            occupySlots(oldTask); // возвращаем старые слоты, если новая версия не подходит
+        boolean overlapping = schedule.overlaps(task);
+        if (overlapping && transaction == null) {
+            schedule.add(oldTask); // возвращаем старую версию, если новая не подходит
             throw new IllegalArgumentException("Задача пересекается по времени: " + task.getTitle());
         }
 
-        occupySlots(task); // теперь заносим новые интервалы
-        tasks.put(task.getId(), new Task(task));
-        addToPrioritized(task);
+        Task copy = new Task(task);
+        put(tasks, task.getId(), copy);
+        addToSchedule(copy, overlapping); // теперь заносим новые интервалы
+        draft.putTask(copy);
+        publish();
     }
 
     /**
      * Обновляет существующий эпик.
      * Обновляются только редактируемые поля: title и description.
-     * Статус и время эпика пересчитываются автоматически.
+     * Статус и время эпика поддерживаются автоматически при изменении подзадач.
      *
      * @param epic эпик для обновления
      * @throws EpicNotFoundException если эпик с указанным id не найден
@@ -280,11 +325,11 @@ public class InMemoryTaskManager implements TaskManager {
         }
 
         // Обновляем только редактируемые поля
+        saveEpic(storedEpic);
         storedEpic.setTitle(epic.getTitle());
         storedEpic.setDescription(epic.getDescription());
-
-        updateEpicStatus(epic);
-        updateEpicTime(epic); // Обновляем время эпика
+        draft.putEpic(storedEpic);
+        publish();
     }
 
     /**
@@ -293,6 +338,7 @@ public class InMemoryTaskManager implements TaskManager {
      * @param subtask подзадача для обновления
      * @throws IllegalArgumentException если subtask == null
      * @throws IllegalArgumentException если подзадача с указанным id не найдена
+     * @throws IllegalArgumentException если подзадача переносится в другой эпик
      * @throws IllegalArgumentException если подзадача пересекается по времени
      */
     @Override
@@ -303,23 +349,30 @@ public class InMemoryTaskManager implements TaskManager {
         }
 
         Subtask oldSubtask = subtasks.get(subtask.getId());
-        prioritizedTasks.remove(oldSubtask);
-        releaseSlots(oldSubtask); // освобождаем старые слоты
+        if (oldSubtask.getEpicId() != subtask.getEpicId()) {
+            throw new IllegalArgumentException("Подзадача с id " + subtask.getId()
+                    + " принадлежит эпику " + oldSubtask.getEpicId() + " и не может быть перенесена.");
+        }
+        removeFromSchedule(oldSubtask); // освобождаем старые интервалы
 
-        if (hasOverlap(subtask)) {
-            occupySlots(oldSubtask); // возвращаем старые, если новая пересекается
+        boolean overlapping = schedule.overlaps(subtask);
+        if (overlapping && transaction == null) {
+            schedule.add(oldSubtask); // возвращаем старую версию, если новая пересекается
             throw new IllegalArgumentException("Подзадача пересекается по времени: " + subtask.getTitle());
         }
 
-        occupySlots(subtask);
-        subtasks.put(subtask.getId(), new Subtask(subtask));
-        addToPrioritized(subtask);
+        Subtask copy = new Subtask(subtask);
+        put(subtasks, subtask.getId(), copy);
+        addToSchedule(copy, overlapping);
 
         Epic epic = epics.get(subtask.getEpicId());
         if (epic != null) {
-            updateEpicStatus(epic);
-            updateEpicTime(epic);
+            removeFromAggregate(epic, oldSubtask);
+            addToAggregate(epic, copy);
+            refreshEpic(epic);
         }
+        draft.putSubtask(copy);
+        publish();
     }
 
     /**
@@ -330,13 +383,14 @@ public class InMemoryTaskManager implements TaskManager {
      */
     @Override
     public void deleteTaskById(int id) {
-        Task removed = tasks.remove(id);
+        Task removed = remove(tasks, id);
         if (removed == null) {
             throw new IllegalArgumentException("Задача с id " + id + " не найдена.");
         }
-        releaseSlots(removed); // Освобождаем временные интервалы
-        prioritizedTasks.remove(removed); // Удаляем из приоритетов
-        historyManager.remove(id); // Удаляем задачу из истории просмотров
+        removeFromSchedule(removed); // Освобождаем интервалы и удаляем из приоритетов
+        removeFromHistory(id); // Удаляем задачу из истории просмотров
+        draft.removeTask(removed);
+        publish();
     }
 
     /**
@@ -347,16 +401,23 @@ public class InMemoryTaskManager implements TaskManager {
      */
     @Override
     public void deleteEpicById(int id) {
-        Epic epic = epics.remove(id);
+        Epic epic = remove(epics, id);
         if (epic == null) {
             throw new EpicNotFoundException("Эпик с id " + id + " не найден.");
         }
+        remove(epicAggregates, id);
         // Удаляем все связанные подзадачи
-        for (int subId : epic.getSubtaskIds()) {
-            prioritizedTasks.remove(subtasks.remove(subId));
-            historyManager.remove(subId);
-        }
-        historyManager.remove(id); // Удаляем эпик из истории
+        epic.forEachSubtaskId(subId -> {
+            Subtask removed = remove(subtasks, subId);
+            if (removed != null) {
+                removeFromSchedule(removed); // Освобождаем временные интервалы подзадачи
+                draft.removeSubtask(removed);
+            }
+            removeFromHistory(subId);
+        });
+        removeFromHistory(id); // Удаляем эпик из истории
+        draft.removeEpic(epic);
+        publish();
     }
 
     /**
@@ -367,20 +428,22 @@ public class InMemoryTaskManager implements TaskManager {
      */
     @Override
     public void deleteSubtaskById(int id) {
-        Subtask removed = subtasks.remove(id);
+        Subtask removed = remove(subtasks, id);
         if (removed == null) {
             throw new IllegalArgumentException("Подзадача с id " + id + " не найдена.");
         }
-        releaseSlots(removed); // Освобождаем временные интервалы
-        prioritizedTasks.remove(removed);// Удаляем из приоритетов
-        historyManager.remove(id); // Удаляем из истории просмотров
+        removeFromSchedule(removed); // Освобождаем интервалы и удаляем из приоритетов
+        removeFromHistory(id); // Удаляем из истории просмотров
 
         Epic epic = epics.get(removed.getEpicId());
         if (epic != null) {
+            saveEpic(epic);
             epic.removeSubtaskId(id);
-            updateEpicStatus(epic);
-            updateEpicTime(epic);
+            removeFromAggregate(epic, removed);
+            refreshEpic(epic);
         }
+        draft.removeSubtask(removed);
+        publish();
     }
 
     /**
@@ -390,11 +453,12 @@ public class InMemoryTaskManager implements TaskManager {
     @Override
     public void deleteAllTasks() {
         tasks.values().forEach(t -> {
-            releaseSlots(t); // Освобождаем временные интервалы
-            historyManager.remove(t.getId());
+            removeFromSchedule(t); // Освобождаем временные интервалы
+            removeFromHistory(t.getId());
         });
-        prioritizedTasks.removeAll(tasks.values());
-        tasks.clear();
+        clear(tasks);
+        draft.clearTasks();
+        publish();
     }
 
     /**
@@ -403,12 +467,19 @@ public class InMemoryTaskManager implements TaskManager {
      */
     @Override
     public void deleteAllEpics() {
-        epics.values().forEach(e -> historyManager.remove(e.getId()));
-        subtasks.values().forEach(s -> historyManager.remove(s.getId()));
-        prioritizedTasks.removeAll(subtasks.values());
-        prioritizedTasks.removeAll(epics.values());
-        epics.clear();
-        subtasks.clear();
+        epics.values().forEach(e -> {
+            removeFromHistory(e.getId());
+            remove(epicAggregates, e.getId());
+        });
+        subtasks.values().forEach(s -> {
+            removeFromSchedule(s); // Освобождаем временные интервалы
+            removeFromHistory(s.getId());
+        });
+        clear(epics);
+        clear(subtasks);
+        draft.clearEpics();
+        draft.clearSubtasks();
+        publish();
     }
 
     /**
@@ -418,17 +489,76 @@ public class InMemoryTaskManager implements TaskManager {
     @Override
     public void deleteAllSubtasks() {
         subtasks.values().forEach(s -> {
-            releaseSlots(s); // Освобождаем временные интервалы
-            historyManager.remove(s.getId());
+            removeFromSchedule(s); // Освобождаем временные интервалы
+            removeFromHistory(s.getId());
         });
-        prioritizedTasks.removeAll(subtasks.values());
-        subtasks.clear();
+        clear(subtasks);
 
         epics.values().forEach(e -> {
+            saveEpic(e);
             e.clearSubtasks();
-            updateEpicStatus(e);
-            updateEpicTime(e);
+            put(epicAggregates, e.getId(), new EpicAggregate());
+            refreshEpic(e);
         });
+        draft.clearSubtasks();
+        publish();
+    }
+
+    /**
+     * Выполняет операции пакетом в одной транзакции ({@link #runInTransaction}):
+     * пересечения по времени проверяются по итоговому расписанию пакета, поэтому задачи
+     * могут, например, поменяться временем, а эпики пересчитываются и версия состояния
+     * публикуется один раз в конце. Если операция или итоговая проверка не проходят,
+     * все изменения пакета отменяются, а задачам добавленных операций возвращаются прежние id.
+     *
+     * @param operations операции в порядке выполнения
+     * @throws IllegalArgumentException если операция не прошла проверку
+     * @throws EpicNotFoundException    если операция ссылается на несуществующий эпик
+     */
+    @Override
+    public void applyBatch(List<Operation> operations) {
+        Objects.requireNonNull(operations, "operations не может быть null");
+        operations.forEach(operation -> Objects.requireNonNull(operation, "operation не может быть null"));
+        if (operations.isEmpty()) {
+            return;
+        }
+        runInTransaction(manager -> operations.forEach(operation -> operation.applyTo(manager)));
+    }
+
+    /**
+     * Выполняет изменения менеджера как одно целое: либо все, либо ни одного.
+     * <p>
+     * Внутри транзакции каждое изменение хранилищ, порядка приоритета, занятых слотов, эпиков
+     * и истории просмотров записывает обратное действие в журнал отмены. Пересечение по времени
+     * при добавлении или обновлении не отклоняет операцию сразу: задача откладывается
+     * и занимает своё время при фиксации, когда остальные задачи уже перенесены. Если при фиксации
+     * время всё ещё занято или работа бросила исключение, журнал отменяется в обратном порядке
+     * за O(k log n) от числа изменений, а счётчик id и черновик версии возвращаются к началу
+     * транзакции. Успешная транзакция пересчитывает затронутые эпики и публикует одну версию.
+     * <p>
+     * Вложенный вызов выполняется в рамках внешней транзакции.
+     *
+     * @param work изменения; получает этот менеджер
+     * @throws IllegalArgumentException если изменение не прошло проверку или задачи пересекаются по времени
+     * @throws EpicNotFoundException    если изменение ссылается на несуществующий эпик
+     */
+    public void runInTransaction(Consumer<? super TaskManager> work) {
+        Objects.requireNonNull(work, "work не может быть null");
+        if (transaction != null) {
+            work.accept(this);
+            return;
+        }
+        Transaction tx = new Transaction(state, nextId);
+        transaction = tx;
+        try {
+            work.accept(this);
+            commit(tx);
+        } catch (RuntimeException | Error e) {
+            rollback(tx);
+            throw e;
+        } finally {
+            transaction = null;
+        }
     }
 
     /**
@@ -440,17 +570,7 @@ public class InMemoryTaskManager implements TaskManager {
      */
     @Override
     public List<Subtask> getSubtasksOfEpic(int epicId) {
-        // Проверка существования эпика
-        if (!epics.containsKey(epicId)) {
-            throw new EpicNotFoundException("Эпик с id " + epicId + " не найден.");
-        }
-        // Получение списка подзадач
-        return epics.get(epicId)
-                .getSubtaskIds()
-                .stream()
-                .map(subtasks::get)
-                .filter(Objects::nonNull)
-                .toList();
+        return state.getSubtasksOfEpic(epicId);
     }
 
     /**
@@ -469,104 +589,278 @@ public class InMemoryTaskManager implements TaskManager {
      */
     @Override
     public List<Task> getPrioritizedTasks() {
-        return new ArrayList<>(prioritizedTasks);
+        return state.getPrioritizedTasks();
     }
 
     /**
-     * Проверяет пересечение двух задач по принципу наложения отрезков.
-     * Возвращает true, если интервалы выполнения задач пересекаются.
+     * Возвращает задачи с временем начала в интервале [from, to) в порядке приоритета.
+     * Границы находятся за O(log n), список — представление версии без копирования.
+     *
+     * @param from начало интервала включительно или null — без ограничения
+     * @param to   конец интервала не включительно или null — без ограничения
+     * @throws IllegalArgumentException если from позже to
      */
-    private boolean isOverlapping(Task a, Task b) {
-        if (a.getStartTime().isEmpty() || a.getDuration().isEmpty()
-                || b.getStartTime().isEmpty() || b.getDuration().isEmpty()) {
-            return false;
-        }
+    @Override
+    public List<Task> getPrioritizedTasks(LocalDateTime from, LocalDateTime to) {
+        return state.getPrioritizedTasks(from, to);
+    }
 
-        LocalDateTime aStart = a.getStartTime().get();
-        LocalDateTime aEnd = aStart.plus(a.getDuration().get());
-        LocalDateTime bStart = b.getStartTime().get();
-        LocalDateTime bEnd = bStart.plus(b.getDuration().get());
+    /**
+     * Ищет самое раннее свободное окно указанной длительности, начинающееся не раньше notBefore.
+     * Занятые участки пропускаются по дереву свободных 15-минутных слотов.
+     *
+     * @throws IllegalArgumentException если длительность не больше нуля
+     */
+    @Override
+    public Optional<LocalDateTime> findEarliestFreeSlot(Duration duration, LocalDateTime notBefore) {
+        return schedule.findEarliestFreeSlot(duration, notBefore);
+    }
 
-        // Математический метод наложения отрезков:
-        // [aStart, aEnd) и [bStart, bEnd) пересекаются, если начало одной < конца другой и наоборот
-        return aStart.isBefore(bEnd) && bStart.isBefore(aEnd);
+    /**
+     * Возвращает последнюю опубликованную версию состояния.
+     */
+    @Override
+    public ManagerState getState() {
+        return state;
     }
 
     /**
-     * Проверяет пересечение задачи с уже занятыми интервалами.
+     * Выполняет изменяющую операцию, не дожидаясь сохранения её результата.
+     * Менеджер в памяти ничего не сохраняет, поэтому операция просто выполняется.
+     * Наследники, сохраняющие изменения, возвращают фиксацию записи, чтобы пишущий поток
+     * мог выполнить несколько операций подряд и дождаться их сохранения один раз.
+     *
+     * @param operation вызов изменяющего метода этого менеджера
+     * @return фиксация сохранения всех изменений операции
      */
-    private boolean hasOverlap(Task task) {
-        if (task.getStartTime().isEmpty() || task.getDuration().isEmpty()) {
-            return false;
+    GroupCommitWriter.Commit applyDeferred(Runnable operation) {
+        operation.run();
+        return GroupCommitWriter.Commit.DONE;
+    }
+
+    /**
+     * Переносит накопленные статус и время в эпик и запоминает его поля в черновике.
+     * Внутри транзакции эпик только отмечается и пересчитывается один раз при фиксации.
+     */
+    private void refreshEpic(Epic epic) {
+        if (transaction != null) {
+            transaction.changedEpics.add(epic);
+            return;
+        }
+        epicAggregates.get(epic.getId()).applyTo(epic);
+        draft.putEpic(epic);
+    }
+
+    /**
+     * Фиксирует транзакцию: заносит в расписание отложенные задачи, пересчитывает затронутые
+     * эпики и публикует версию. Пересечение отложенной задачи бросает исключение до изменения эпиков,
+     * и транзакция откатывается.
+     */
+    private void commit(Transaction tx) {
+        for (Task task : tx.parked) {
+            if (schedule.overlaps(task)) {
+                throw new IllegalArgumentException((task instanceof Subtask ? "Подзадача" : "Задача")
+                        + " пересекается по времени: " + task.getTitle());
+            }
+            schedule.add(task);
+            tx.undo.record(() -> schedule.remove(task));
+        }
+        for (Epic epic : tx.changedEpics) {
+            if (epics.get(epic.getId()) == epic) { // эпик мог быть удалён позже в транзакции
+                epicAggregates.get(epic.getId()).applyTo(epic);
+                draft.putEpic(epic);
+            }
         }
+        transaction = null;
+        publish();
+    }
 
-        return getPrioritizedTasks().stream()
-                .filter(existing -> existing.getId() != task.getId()) // не сравниваем саму с собой
-                .anyMatch(existing -> isOverlapping(task, existing));
+    /**
+     * Отменяет изменения транзакции. Черновик возвращается к версии, опубликованной до неё,
+     * так что новая версия не публикуется.
+     */
+    private void rollback(Transaction tx) {
+        transaction = null;
+        tx.undo.rollback();
+        nextId = tx.nextIdBefore;
+        draft.reset(tx.before);
     }
 
     /**
-     * Помечает интервалы задачи как занятые.
+     * Публикует версию состояния с изменениями, накопленными в черновике.
+     * Вызывается в конце каждой успешной изменяющей операции; внутри транзакции
+     * версия публикуется один раз при фиксации.
      */
-    private void occupySlots(Task task) {
-        if (task.getStartTime().isEmpty() || task.getDuration().isEmpty()) {
+    private void publish() {
+        if (transaction != null) {
             return;
         }
+        state = draft.publish(schedule.prioritizedTree());
+    }
 
-        LocalDateTime start = task.getStartTime().get();
-        LocalDateTime end = task.getEndTime().orElse(start);
+    // Изменения структур; в транзакции каждое записывает обратное действие в журнал отмены
 
-        for (LocalDateTime slot = start;
-             slot.isBefore(end);
-             slot = slot.plus(SLOT_SIZE)) {
-            timeSlots.put(slot, true);
+    private <V> void put(IntObjectMap<V> map, int id, V value) {
+        V previous = map.put(id, value);
+        if (transaction != null) {
+            transaction.undo.record(() -> {
+                if (previous == null) {
+                    map.remove(id);
+                } else {
+                    map.put(id, previous);
+                }
+            });
         }
     }
 
+    private <V> V remove(IntObjectMap<V> map, int id) {
+        V removed = map.remove(id);
+        if (removed != null && transaction != null) {
+            transaction.undo.record(() -> map.put(id, removed));
+        }
+        return removed;
+    }
+
+    private <T extends Task> void clear(IntObjectMap<T> map) {
+        if (transaction != null && !map.isEmpty()) {
+            List<T> removed = new ArrayList<>(map.values());
+            transaction.undo.record(() -> removed.forEach(task -> map.put(task.getId(), task)));
+        }
+        map.clear();
+    }
+
     /**
-     * Освобождает интервалы задачи.
+     * Проверяет пересечение новой задачи с расписанием. Вне транзакции пересечение отклоняет
+     * операцию, в транзакции задача откладывается до фиксации.
+     *
+     * @return true, если задачу нужно отложить
      */
-    private void releaseSlots(Task task) {
-        if (task.getStartTime().isEmpty() || task.getDuration().isEmpty()) return;
+    private boolean checkOverlap(Task task, String message) {
+        if (!schedule.overlaps(task)) {
+            return false;
+        }
+        if (transaction == null) {
+            throw new IllegalArgumentException(message + task.getTitle());
+        }
+        return true;
+    }
 
-        LocalDateTime start = task.getStartTime().get();
-        LocalDateTime end = task.getEndTime().orElse(start);
+    private void addToSchedule(Task task, boolean overlapping) {
+        Transaction tx = transaction;
+        if (overlapping) {
+            tx.parked.add(task);
+            tx.undo.record(() -> tx.parked.remove(task));
+            return;
+        }
+        schedule.add(task);
+        if (tx != null) {
+            tx.undo.record(() -> schedule.remove(task));
+        }
+    }
 
-        for (LocalDateTime slot = start;
-             slot.isBefore(end);
-             slot = slot.plus(SLOT_SIZE)) {
-            timeSlots.put(slot, false);
+    private void removeFromSchedule(Task task) {
+        Transaction tx = transaction;
+        if (tx != null && tx.parked.remove(task)) { // отложенная задача ещё не занимает время
+            tx.undo.record(() -> tx.parked.add(task));
+            return;
+        }
+        schedule.remove(task);
+        if (tx != null) {
+            tx.undo.record(() -> schedule.add(task));
         }
     }
 
-    // Пересчёт времени у Epic
-    private void updateEpicTime(Epic epic) {
-        List<Subtask> subs = epic.getSubtaskIds().stream()
-                .map(subtasks::get)
-                .filter(Objects::nonNull)
-                .toList();
-        epic.updateEpicTime(subs);
+    private void addToAggregate(Epic epic, Subtask subtask) {
+        EpicAggregate aggregate = epicAggregates.get(epic.getId());
+        aggregate.add(subtask);
+        if (transaction != null) {
+            transaction.undo.record(() -> aggregate.remove(subtask));
+        }
     }
 
-    // Пересчёт статуса у Epic
-    private void updateEpicStatus(Epic epic) {
-        List<Integer> ids = epic.getSubtaskIds();
-        if (ids.isEmpty()) {
-            epic.setStatus(TaskStatus.NEW);
+    private void removeFromAggregate(Epic epic, Subtask subtask) {
+        EpicAggregate aggregate = epicAggregates.get(epic.getId());
+        aggregate.remove(subtask);
+        if (transaction != null) {
+            transaction.undo.record(() -> aggregate.add(subtask));
+        }
+    }
+
+    /**
+     * Перед первым изменением эпика в транзакции запоминает его поля и состав подзадач.
+     */
+    private void saveEpic(Epic epic) {
+        Transaction tx = transaction;
+        if (tx == null || !tx.savedEpics.add(epic)) {
             return;
         }
-        boolean allNew = true;
-        boolean allDone = true;
+        Epic saved = new Epic(epic);
+        tx.undo.record(() -> {
+            epic.setTitle(saved.getTitle());
+            epic.setDescription(saved.getDescription());
+            epic.setStatus(saved.getStatus());
+            epic.updateEpicTime(saved.getDurationMinutes(), saved.getStartMinute(), saved.getEndMinute());
+            epic.clearSubtasks();
+            saved.forEachSubtaskId(epic::addSubtaskId);
+        });
+    }
+
+    private void addToHistory(Task task) {
+        saveHistory();
+        historyManager.add(task);
+    }
 
-        for (int id : ids) {
-            Subtask s = subtasks.get(id);
-            if (s == null) continue;
-            if (s.getStatus() != TaskStatus.NEW) allNew = false;
-            if (s.getStatus() != TaskStatus.DONE) allDone = false;
+    private void removeFromHistory(int id) {
+        saveHistory();
+        historyManager.remove(id);
+    }
+
+    /**
+     * Перед первым изменением истории в транзакции запоминает её целиком.
+     * История хранит копии задач, поэтому восстанавливается из запомненного списка как есть.
+     */
+    private void saveHistory() {
+        Transaction tx = transaction;
+        if (tx == null || tx.historySaved) {
+            return;
+        }
+        tx.historySaved = true;
+        List<Task> saved = historyManager.getHistory();
+        tx.undo.record(() -> {
+            historyManager.getHistory().forEach(task -> historyManager.remove(task.getId()));
+            saved.forEach(historyManager::add);
+        });
+    }
+
+    /**
+     * Сообщает вызывающему id его задачи; при откате транзакции возвращается прежний id.
+     */
+    private void assignCallerId(Task task, int id) {
+        int previous = task.getId();
+        task.setId(id);
+        if (transaction != null) {
+            transaction.undo.record(() -> task.setId(previous));
         }
+    }
 
-        if (allDone) epic.setStatus(TaskStatus.DONE);
-        else if (allNew) epic.setStatus(TaskStatus.NEW);
-        else epic.setStatus(TaskStatus.IN_PROGRESS);
+    /**
+     * Состояние выполняемой транзакции.
+     */
+    private static final class Transaction {
+        final UndoLog undo = new UndoLog();
+        final ManagerState before;
+        final int nextIdBefore;
+        // Задачи, пересекавшиеся по времени при добавлении: занимают время при фиксации
+        final Set<Task> parked = Collections.newSetFromMap(new IdentityHashMap<>());
+        // Эпики, статус и время которых пересчитываются при фиксации
+        final Set<Epic> changedEpics = Collections.newSetFromMap(new IdentityHashMap<>());
+        // Эпики, поля которых уже запомнены в журнале отмены
+        final Set<Epic> savedEpics = Collections.newSetFromMap(new IdentityHashMap<>());
+        boolean historySaved;
+
+        Transaction(ManagerState before, int nextIdBefore) {
+            this.before = before;
+            this.nextIdBefore = nextIdBefore;
+        }
     }
 }
@@ -0,0 +1,225 @@
+package com.yandex.app.service;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Словарь с ключами int и открытой адресацией для хранилищ задач по id.
+ * <p>
+ * Ключи и значения лежат в двух параллельных массивах, поэтому на запись не создаётся
+ * ни объект Integer, ни узел цепочки, как в HashMap. Свободная ячейка — ячейка с null
+ * в массиве значений, поэтому null в качестве значения не допускается. Коллизии разрешаются
+ * линейным пробированием, а удаление сдвигает следующие ключи цепочки назад, так что пометки
+ * удалённых ячеек не накапливаются. Таблица растёт вдвое при заполнении больше чем на 3/4.
+ * <p>
+ * Для небольших id хеш совпадает с самим id, как в HashMap, поэтому порядок обхода
+ * последовательных id совпадает с порядком возрастания.
+ * <p>
+ * Оценка памяти на запись при сжатых ссылках: HashMap — узел (32 байта), объект Integer
+ * (16 байт, кроме кешированных -128..127) и 4–8 байт ячейки таблицы, всего около 55 байт;
+ * этот словарь — 8 байт на ячейку (int и ссылка) при заполнении от 3/8 до 3/4, то есть 11–21 байт.
+ * Замер приведён в IntObjectMapFootprint в каталоге тестов.
+ *
+ * @param <V> тип значений
+ */
+final class IntObjectMap<V> {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private int[] keys = new int[MIN_CAPACITY];
+    private Object[] values = new Object[MIN_CAPACITY];
+    private int size;
+    private int modCount;
+
+    /**
+     * Возвращает значение по ключу или null.
+     */
+    @SuppressWarnings("unchecked")
+    V get(int key) {
+        int slot = slotOf(key);
+        return (V) values[slot];
+    }
+
+    /**
+     * Проверяет наличие ключа.
+     */
+    boolean containsKey(int key) {
+        return values[slotOf(key)] != null;
+    }
+
+    /**
+     * Кладёт значение по ключу.
+     *
+     * @return прежнее значение или null
+     * @throws NullPointerException если value == null
+     */
+    @SuppressWarnings("unchecked")
+    V put(int key, V value) {
+        Objects.requireNonNull(value, "value не может быть null");
+        int slot = slotOf(key);
+        V previous = (V) values[slot];
+        keys[slot] = key;
+        values[slot] = value;
+        if (previous == null) {
+            modCount++;
+            if (++size * 4 > keys.length * 3) {
+                resize(keys.length * 2);
+            }
+        }
+        return previous;
+    }
+
+    /**
+     * Удаляет значение по ключу.
+     *
+     * @return удалённое значение или null
+     */
+    @SuppressWarnings("unchecked")
+    V remove(int key) {
+        int slot = slotOf(key);
+        V previous = (V) values[slot];
+        if (previous != null) {
+            deleteSlot(slot);
+            size--;
+            modCount++;
+        }
+        return previous;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Удаляет все записи. Таблица возвращается к начальному размеру.
+     */
+    void clear() {
+        keys = new int[MIN_CAPACITY];
+        values = new Object[MIN_CAPACITY];
+        size = 0;
+        modCount++;
+    }
+
+    /**
+     * Возвращает представление значений без копирования. Изменять словарь во время обхода нельзя.
+     */
+    Collection<V> values() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<V> iterator() {
+                return new ValueIterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public void forEach(Consumer<? super V> action) {
+                int expected = modCount;
+                Object[] table = values;
+                for (Object value : table) {
+                    if (value != null) {
+                        action.accept((V) value);
+                    }
+                }
+                if (modCount != expected) {
+                    throw new ConcurrentModificationException();
+                }
+            }
+        };
+    }
+
+    private final class ValueIterator implements Iterator<V> {
+        private final int expected = modCount;
+        private int next = advance(0);
+
+        private int advance(int from) {
+            while (from < values.length && values[from] == null) {
+                from++;
+            }
+            return from;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < values.length;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V next() {
+            if (modCount != expected) {
+                throw new ConcurrentModificationException();
+            }
+            if (next >= values.length) {
+                throw new NoSuchElementException();
+            }
+            V value = (V) values[next];
+            next = advance(next + 1);
+            return value;
+        }
+    }
+
+    /**
+     * Возвращает ячейку с ключом или свободную ячейку, где он должен лежать.
+     */
+    private int slotOf(int key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (values[slot] != null && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Освобождает ячейку, сдвигая назад следующие за ней ключи цепочки, чтобы поиск не прерывался.
+     */
+    private void deleteSlot(int slot) {
+        int mask = keys.length - 1;
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (values[next] != null) {
+            int home = hash(keys[next]) & mask;
+            // Ключ можно перенести в дыру, если его исходная ячейка не лежит в циклическом интервале (gap, next]
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        values[gap] = null;
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new int[capacity];
+        values = new Object[capacity];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null) {
+                int slot = slotOf(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    // То же перемешивание старших битов, что и в HashMap
+    private static int hash(int key) {
+        return key ^ (key >>> 16);
+    }
+}
@@ -0,0 +1,87 @@
+package com.yandex.app.service;
+
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Индекс занятых интервалов времени [начало, конец) для проверки пересечений.
+ * Время задаётся в минутах от начала эпохи, как оно хранится в модели задач.
+ * <p>
+ * Интервалы хранятся в TreeMap по времени начала. Хранимые интервалы не пересекаются,
+ * поэтому среди интервалов, начавшихся раньше момента t, самый поздний конец у интервала
+ * с наибольшим началом: непустые интервалы упорядочены по концу так же, как по началу,
+ * а пустой интервал не может лежать строго внутри непустого. Проверка пересечения сводится
+ * к одному поиску соседа — O(log n) без копирования.
+ */
+final class IntervalIndex {
+
+    /**
+     * Интервалы с одинаковым началом: не больше одного непустого и сколько угодно пустых.
+     */
+    private static final class Bucket {
+        final long start;
+        long end;   // конец непустого интервала или start, если его нет
+        int points; // количество пустых интервалов
+
+        Bucket(long start) {
+            this.start = start;
+            this.end = start;
+        }
+
+        boolean hasInterval() {
+            return end != start;
+        }
+    }
+
+    private final NavigableMap<Long, Bucket> byStart = new TreeMap<>();
+
+    /**
+     * Проверяет, пересекается ли интервал [start, end) с каким-либо из хранимых.
+     * Пересечение понимается так же, как в {@link InMemoryTaskManager}: начало каждого
+     * интервала строго раньше конца другого.
+     */
+    boolean overlaps(long start, long end) {
+        Map.Entry<Long, Bucket> before = byStart.lowerEntry(end);
+        return before != null && before.getValue().end > start;
+    }
+
+    /**
+     * Возвращает самый поздний конец среди интервалов, начавшихся раньше момента time,
+     * или Long.MIN_VALUE, если таких нет.
+     */
+    long latestEndBefore(long time) {
+        Map.Entry<Long, Bucket> before = byStart.lowerEntry(time);
+        return before == null ? Long.MIN_VALUE : before.getValue().end;
+    }
+
+    /**
+     * Добавляет интервал. Вызывающий код проверяет отсутствие пересечений заранее.
+     */
+    void add(long start, long end) {
+        Bucket bucket = byStart.computeIfAbsent(start, Bucket::new);
+        if (start == end) {
+            bucket.points++;
+        } else {
+            bucket.end = end;
+        }
+    }
+
+    /**
+     * Удаляет интервал, если он есть в индексе.
+     */
+    void remove(long start, long end) {
+        Bucket bucket = byStart.get(start);
+        if (bucket == null) {
+            return;
+        }
+        if (start == end) {
+            if (bucket.points > 0) bucket.points--;
+        } else if (end == bucket.end) {
+            bucket.end = start;
+        }
+        if (!bucket.hasInterval() && bucket.points == 0) {
+            byStart.remove(start);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.yandex.app.service;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Настройки журнала FileBackedTaskManager.
+ * Определяют, когда журнал сворачивается в новый базовый снимок (компактизация),
+ * как группируются записи перед сбросом на диск и в каком формате пишутся снимки.
+ * Для режима {@link PersistenceMode#WRITE_BEHIND} задают, как часто снимок записывается в фоне
+ * и сколько несохранённых изменений допускается.
+ * Нулевое значение порога (или null для интервала) отключает соответствующий триггер.
+ */
+public class JournalSettings {
+
+    private long maxJournalBytes = 8L * 1024 * 1024;       // размер журнала в байтах
+    private long maxJournalRecords = 100_000;               // количество записей в журнале
+    private Duration compactionInterval = Duration.ofMinutes(10); // время с последней компактизации
+    private Duration groupCommitWindow = Duration.ZERO; // ожидание попутных записей перед сбросом на диск
+    private SnapshotFormat snapshotFormat = SnapshotFormat.CSV; // формат файла снимка
+    private Duration flushInterval = Duration.ofSeconds(1); // период фоновой записи снимка
+    private long flushThreshold = 1_000;         // несохранённые изменения, запускающие запись досрочно
+    private long maxUnflushedChanges = 10_000;   // несохранённые изменения, после которых операции ждут записи
+
+    public long getMaxJournalBytes() {
+        return maxJournalBytes;
+    }
+
+    public void setMaxJournalBytes(long maxJournalBytes) {
+        this.maxJournalBytes = maxJournalBytes;
+    }
+
+    public long getMaxJournalRecords() {
+        return maxJournalRecords;
+    }
+
+    public void setMaxJournalRecords(long maxJournalRecords) {
+        this.maxJournalRecords = maxJournalRecords;
+    }
+
+    public Duration getCompactionInterval() {
+        return compactionInterval;
+    }
+
+    public void setCompactionInterval(Duration compactionInterval) {
+        this.compactionInterval = compactionInterval;
+    }
+
+    public Duration getGroupCommitWindow() {
+        return groupCommitWindow;
+    }
+
+    /**
+     * Устанавливает окно групповой фиксации. При нулевом окне в пачку попадают записи,
+     * накопившиеся за время предыдущего сброса на диск; ненулевое окно увеличивает пачки
+     * ценой задержки ответа.
+     */
+    public void setGroupCommitWindow(Duration groupCommitWindow) {
+        this.groupCommitWindow = groupCommitWindow;
+    }
+
+    public SnapshotFormat getSnapshotFormat() {
+        return snapshotFormat;
+    }
+
+    /**
+     * Устанавливает формат, в котором записываются снимки.
+     * Загружаемый снимок читается в формате файла независимо от этого значения.
+     */
+    public void setSnapshotFormat(SnapshotFormat snapshotFormat) {
+        this.snapshotFormat = Objects.requireNonNull(snapshotFormat, "snapshotFormat must not be null");
+    }
+
+    public Duration getFlushInterval() {
+        return flushInterval;
+    }
+
+    public void setFlushInterval(Duration flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+
+    public long getFlushThreshold() {
+        return flushThreshold;
+    }
+
+    public void setFlushThreshold(long flushThreshold) {
+        this.flushThreshold = flushThreshold;
+    }
+
+    public long getMaxUnflushedChanges() {
+        return maxUnflushedChanges;
+    }
+
+    /**
+     * Устанавливает предел несохранённых изменений. Когда фоновая запись не успевает
+     * и предел достигнут, изменяющие операции ждут, пока текущие изменения не будут
+     * взяты в запись снимка. Так ограничивается объём данных, теряемых при сбое.
+     */
+    public void setMaxUnflushedChanges(long maxUnflushedChanges) {
+        this.maxUnflushedChanges = maxUnflushedChanges;
+    }
+
+    /**
+     * Проверяет, пора ли сворачивать журнал по размеру или количеству записей.
+     *
+     * @param bytes   текущий размер журнала
+     * @param records количество записей в журнале
+     * @return true, если превышен хотя бы один из порогов
+     */
+    boolean isExceeded(long bytes, long records) {
+        return (maxJournalBytes > 0 && bytes >= maxJournalBytes)
+                || (maxJournalRecords > 0 && records >= maxJournalRecords);
+    }
+}
@@ -0,0 +1,266 @@
+package com.yandex.app.service;
+
+import com.yandex.app.model.Epic;
+import com.yandex.app.model.Subtask;
+import com.yandex.app.model.Task;
+
+import java.time.LocalDateTime;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Неизменяемая версия состояния менеджера задач: задачи, эпики, подзадачи и порядок приоритета
+ * на момент публикации вместе с номером версии.
+ * <p>
+ * Менеджер после каждого успешного изменения публикует новую версию через volatile-ссылку.
+ * Версии строятся на {@link PersistentTree}: изменение копирует только пути к изменённым узлам,
+ * а остальное разделяется с предыдущей версией. Поэтому читатель получает согласованный срез
+ * без блокировок и без копирования коллекций, а сама версия не меняется, сколько бы изменений
+ * ни было сделано после её публикации.
+ * <p>
+ * Эпики менеджер меняет на месте, поэтому в версии хранятся их отдельные неизменяемые копии
+ * без id подзадач, а состав эпика берётся из дерева подзадач, упорядоченного по эпику.
+ * Объект Epic собирается при обращении к элементу списка, так что изменение подзадачи
+ * не требует копировать все id подзадач её эпика. В версии id подзадач эпика идут по возрастанию.
+ * <p>
+ * Списки версии неизменяемы. Задачи в них — те же объекты, что хранит менеджер,
+ * и менять их нельзя.
+ */
+public final class ManagerState {
+
+    private static final Comparator<Task> BY_ID = (a, b) -> Integer.compare(a.getId(), b.getId());
+    private static final Comparator<Subtask> BY_EPIC = (a, b) -> {
+        int byEpic = Integer.compare(a.getEpicId(), b.getEpicId());
+        return byEpic != 0 ? byEpic : Integer.compare(a.getId(), b.getId());
+    };
+
+    static final ManagerState EMPTY = new ManagerState(0,
+            PersistentTree.empty(BY_ID), PersistentTree.empty(BY_ID), PersistentTree.empty(BY_ID),
+            PersistentTree.empty(BY_EPIC), PersistentTree.empty(TaskSchedule.PRIORITY_ORDER));
+
+    private final long version;
+    private final PersistentTree<Task> tasks;
+    private final PersistentTree<Epic> epics; // копии эпиков без id подзадач
+    private final PersistentTree<Subtask> subtasks;
+    private final PersistentTree<Subtask> subtasksByEpic;
+    private final PersistentTree<Task> prioritized;
+
+    private ManagerState(long version, PersistentTree<Task> tasks, PersistentTree<Epic> epics,
+                         PersistentTree<Subtask> subtasks, PersistentTree<Subtask> subtasksByEpic,
+                         PersistentTree<Task> prioritized) {
+        this.version = version;
+        this.tasks = tasks;
+        this.epics = epics;
+        this.subtasks = subtasks;
+        this.subtasksByEpic = subtasksByEpic;
+        this.prioritized = prioritized;
+    }
+
+    /**
+     * Возвращает номер версии. Каждое успешное изменение менеджера увеличивает его на единицу.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Возвращает задачи Task по возрастанию id.
+     */
+    public List<Task> getTasks() {
+        return tasks.asList();
+    }
+
+    /**
+     * Возвращает эпики по возрастанию id. Каждое обращение к элементу собирает новый объект Epic.
+     */
+    public List<Epic> getEpics() {
+        return new AbstractList<>() {
+            @Override
+            public Epic get(int index) {
+                return assemble(epics.get(index));
+            }
+
+            @Override
+            public int size() {
+                return epics.size();
+            }
+
+            @Override
+            public Iterator<Epic> iterator() {
+                Iterator<Epic> headers = epics.iterator();
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return headers.hasNext();
+                    }
+
+                    @Override
+                    public Epic next() {
+                        return assemble(headers.next());
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Возвращает подзадачи по возрастанию id.
+     */
+    public List<Subtask> getSubtasks() {
+        return subtasks.asList();
+    }
+
+    /**
+     * Возвращает подзадачи эпика по возрастанию id.
+     *
+     * @throws EpicNotFoundException если эпика нет в этой версии
+     */
+    public List<Subtask> getSubtasksOfEpic(int epicId) {
+        if (epics.find(epic -> Integer.compare(epicId, epic.getId())) == null) {
+            throw new EpicNotFoundException("Эпик с id " + epicId + " не найден.");
+        }
+        return subtasksOf(epicId);
+    }
+
+    /**
+     * Возвращает задачи и подзадачи с временем начала в порядке приоритета.
+     */
+    public List<Task> getPrioritizedTasks() {
+        return prioritized.asList();
+    }
+
+    /**
+     * Возвращает задачи с временем начала в интервале [from, to) в порядке приоритета.
+     *
+     * @param from начало интервала включительно или null — без ограничения
+     * @param to   конец интервала не включительно или null — без ограничения
+     * @throws IllegalArgumentException если from позже to
+     */
+    public List<Task> getPrioritizedTasks(LocalDateTime from, LocalDateTime to) {
+        return TaskSchedule.window(prioritized, from, to);
+    }
+
+    private List<Subtask> subtasksOf(int epicId) {
+        int from = subtasksByEpic.rank(subtask -> subtask.getEpicId() < epicId ? 1 : -1);
+        int to = subtasksByEpic.rank(subtask -> subtask.getEpicId() <= epicId ? 1 : -1);
+        return subtasksByEpic.asList(from, to);
+    }
+
+    private Epic assemble(Epic header) {
+        Epic epic = new Epic(header);
+        for (Subtask subtask : subtasksOf(header.getId())) {
+            epic.addSubtaskId(subtask.getId());
+        }
+        return epic;
+    }
+
+    /**
+     * Неизменяемая копия эпика без id подзадач: копируются только его собственные поля.
+     */
+    private static Epic header(Epic epic) {
+        Epic header = new Epic(epic.getTitle(), epic.getDescription());
+        header.setId(epic.getId());
+        header.setStatus(epic.getStatus());
+        header.updateEpicTime(epic.getDurationMinutes(), epic.getStartMinute(), epic.getEndMinute());
+        return header;
+    }
+
+    /**
+     * Черновик следующей версии. Пишущий поток менеджера вносит в него изменения по мере
+     * выполнения операции и публикует версию один раз в конце.
+     * Не потокобезопасен: используется только под защитой менеджера.
+     */
+    static final class Draft {
+        private ManagerState last = EMPTY;
+        private PersistentTree<Task> tasks = EMPTY.tasks;
+        private PersistentTree<Epic> epics = EMPTY.epics;
+        private PersistentTree<Subtask> subtasks = EMPTY.subtasks;
+        private PersistentTree<Subtask> subtasksByEpic = EMPTY.subtasksByEpic;
+
+        void putTask(Task task) {
+            tasks = tasks.with(task);
+        }
+
+        void removeTask(Task task) {
+            tasks = tasks.without(task);
+        }
+
+        void clearTasks() {
+            tasks = tasks.cleared();
+        }
+
+        /**
+         * Запоминает текущие поля эпика. Вызывается после каждого изменения эпика.
+         */
+        void putEpic(Epic epic) {
+            epics = epics.with(header(epic));
+        }
+
+        /**
+         * Убирает эпик. Его подзадачи убираются отдельно.
+         */
+        void removeEpic(Epic epic) {
+            epics = epics.without(epic);
+        }
+
+        void clearEpics() {
+            epics = epics.cleared();
+        }
+
+        void putSubtask(Subtask subtask) {
+            subtasks = subtasks.with(subtask);
+            subtasksByEpic = subtasksByEpic.with(subtask);
+        }
+
+        void removeSubtask(Subtask subtask) {
+            subtasks = subtasks.without(subtask);
+            subtasksByEpic = subtasksByEpic.without(subtask);
+        }
+
+        void clearSubtasks() {
+            subtasks = subtasks.cleared();
+            subtasksByEpic = subtasksByEpic.cleared();
+        }
+
+        /**
+         * Заменяет содержимое черновика загруженными данными, строя деревья за O(n log n) сортировкой.
+         */
+        void restore(Collection<Task> allTasks, Collection<Epic> allEpics, Collection<Subtask> allSubtasks) {
+            tasks = sortedTree(BY_ID, allTasks);
+            List<Epic> headers = new ArrayList<>(allEpics.size());
+            allEpics.forEach(epic -> headers.add(header(epic)));
+            epics = sortedTree(BY_ID, headers);
+            subtasks = sortedTree(BY_ID, allSubtasks);
+            subtasksByEpic = sortedTree(BY_EPIC, allSubtasks);
+        }
+
+        private static <E> PersistentTree<E> sortedTree(Comparator<? super E> order, Collection<E> values) {
+            List<E> sorted = new ArrayList<>(values);
+            sorted.sort(order);
+            return PersistentTree.of(order, sorted);
+        }
+
+        /**
+         * Возвращает черновик к опубликованной версии, отбрасывая неопубликованные изменения.
+         */
+        void reset(ManagerState published) {
+            last = published;
+            tasks = published.tasks;
+            epics = published.epics;
+            subtasks = published.subtasks;
+            subtasksByEpic = published.subtasksByEpic;
+        }
+
+        /**
+         * Собирает следующую версию из черновика и порядка приоритета.
+         */
+        ManagerState publish(PersistentTree<Task> prioritized) {
+            last = new ManagerState(last.version + 1, tasks, epics, subtasks, subtasksByEpic, prioritized);
+            return last;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.yandex.app.service;
+
+import com.yandex.app.model.Epic;
+import com.yandex.app.model.Subtask;
+import com.yandex.app.model.Task;
+import com.yandex.app.model.TypeTask;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Двоичный снимок, отображённый в память, с ленивым разбором записей.
+ * При открытии записи только пропускаются, чтобы построить индекс id → смещение
+ * и индекс подзадач по эпикам; объекты задач создаются при обращении к ним.
+ * Индексы — отсортированные массивы long, по 8 байт на запись.
+ */
+final class MappedSnapshot {
+
+    private final File file;
+    private final ByteBuffer buffer;
+    private final int[] offsets;    // смещения записей в порядке файла
+    private final long[] byId;      // (id << 32) | номер записи, по возрастанию id
+    private final long[] byEpic;    // (id эпика << 32) | номер записи подзадачи, по возрастанию id эпика
+
+    private MappedSnapshot(File file, ByteBuffer buffer, int[] offsets, long[] byId, long[] byEpic) {
+        this.file = file;
+        this.buffer = buffer;
+        this.offsets = offsets;
+        this.byId = byId;
+        this.byEpic = byEpic;
+    }
+
+    /**
+     * Отображает файл и строит индексы.
+     *
+     * @param file двоичный снимок
+     */
+    static MappedSnapshot open(File file) {
+        ByteBuffer buffer = BinarySnapshot.map(file);
+        BinarySnapshot.Decoder decoder = new BinarySnapshot.Decoder(buffer, file);
+        int[] offsets = new int[1024];
+        long[] byId = new long[1024];
+        long[] byEpic = new long[256];
+        int count = 0;
+        int subtasks = 0;
+        try {
+            decoder.checkHeader();
+            int flags;
+            int offset = decoder.position();
+            while ((flags = decoder.readByte()) != BinarySnapshot.END) {
+                int id = (int) decoder.readVarLong();
+                int epicId = decoder.skipRecord(flags);
+                if (count == offsets.length) {
+                    offsets = Arrays.copyOf(offsets, count * 2);
+                    byId = Arrays.copyOf(byId, count * 2);
+                }
+                offsets[count] = offset;
+                byId[count] = key(id, count);
+                if ((flags & 0x03) == TypeTask.SUBTASK.ordinal()) {
+                    if (subtasks == byEpic.length) {
+                        byEpic = Arrays.copyOf(byEpic, subtasks * 2);
+                    }
+                    byEpic[subtasks++] = key(epicId, count);
+                }
+                count++;
+                offset = decoder.position();
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new ManagerSaveException("Двоичный снимок оборван: " + file.getName(), e);
+        }
+        offsets = Arrays.copyOf(offsets, count);
+        byId = Arrays.copyOf(byId, count);
+        byEpic = Arrays.copyOf(byEpic, subtasks);
+        Arrays.sort(byId);
+        Arrays.sort(byEpic);
+        return new MappedSnapshot(file, buffer, offsets, byId, byEpic);
+    }
+
+    private static long key(int id, int entry) {
+        return ((long) id << 32) | (entry & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Возвращает количество записей в снимке.
+     */
+    int size() {
+        return offsets.length;
+    }
+
+    /**
+     * Разбирает запись с указанным id, если она есть и имеет нужный тип.
+     * У эпика восстанавливаются список подзадач и время по подзадачам.
+     */
+    <T extends Task> Optional<T> find(int id, Class<T> type) {
+        int entry = entryOf(id);
+        if (entry < 0) {
+            return Optional.empty();
+        }
+        Task task = decode(new BinarySnapshot.Decoder(buffer, file), entry);
+        return task.getClass() == type ? Optional.of(type.cast(task)) : Optional.empty();
+    }
+
+    /**
+     * Разбирает все записи указанного типа в порядке файла.
+     */
+    <T extends Task> List<T> all(Class<T> type) {
+        BinarySnapshot.Decoder decoder = new BinarySnapshot.Decoder(buffer, file);
+        List<T> result = new ArrayList<>();
+        for (int entry = 0; entry < offsets.length; entry++) {
+            if (typeOf(entry) == typeCode(type)) {
+                result.add(type.cast(decode(decoder, entry)));
+            }
+        }
+        return result;
+    }
+
+    private int typeOf(int entry) {
+        return buffer.get(offsets[entry]) & 0x03;
+    }
+
+    private static int typeCode(Class<? extends Task> type) {
+        if (type == Epic.class) return TypeTask.EPIC.ordinal();
+        if (type == Subtask.class) return TypeTask.SUBTASK.ordinal();
+        return TypeTask.TASK.ordinal();
+    }
+
+    private Task decode(BinarySnapshot.Decoder decoder, int entry) {
+        try {
+            decoder.seek(offsets[entry]);
+            Task task = decoder.readRecord(decoder.readByte());
+            if (task instanceof Epic epic) {
+                List<Subtask> subtasks = new ArrayList<>();
+                for (int i = firstSubtaskOf(epic.getId()); i < byEpic.length && (int) (byEpic[i] >> 32) == epic.getId(); i++) {
+                    decoder.seek(offsets[(int) byEpic[i]]);
+                    Subtask subtask = (Subtask) decoder.readRecord(decoder.readByte());
+                    epic.addSubtaskId(subtask.getId());
+                    subtasks.add(subtask);
+                }
+                if (!subtasks.isEmpty()) {
+                    epic.updateEpicTime(subtasks);
+                }
+            }
+            return task;
+        } catch (IndexOutOfBoundsException e) {
+            throw new ManagerSaveException("Двоичный снимок оборван: " + file.getName(), e);
+        }
+    }
+
+    private int entryOf(int id) {
+        int i = Arrays.binarySearch(byId, key(id, 0));
+        if (i < 0) {
+            i = -i - 1;
+        }
+        return i < byId.length && (int) (byId[i] >> 32) == id ? (int) byId[i] : -1;
+    }
+
+    private int firstSubtaskOf(int epicId) {
+        int i = Arrays.binarySearch(byEpic, key(epicId, 0));
+        return i < 0 ? -i - 1 : i;
+    }
+}
@@ -0,0 +1,143 @@
+package com.yandex.app.service;
+
+import com.yandex.app.model.Epic;
+import com.yandex.app.model.Subtask;
+import com.yandex.app.model.Task;
+import com.yandex.app.model.TypeTask;
+
+import java.util.Objects;
+
+/**
+ * Изменяющая операция менеджера задач для пакетного выполнения ({@link TaskManager#applyBatch}).
+ * Вид задачи (задача, эпик или подзадача) для добавления и обновления определяется по классу объекта.
+ * Операции неизменяемы, но задача внутри — тот же объект, что передал вызывающий:
+ * при добавлении ему назначается id, как и при вызове addTask.
+ * Чтобы добавить в одном пакете эпик и его подзадачи, эпику заранее задают id,
+ * на который ссылаются подзадачи.
+ */
+public final class Operation {
+
+    /**
+     * Вид операции.
+     */
+    public enum Type {
+        ADD,
+        UPDATE,
+        DELETE,
+        DELETE_ALL
+    }
+
+    private final Type type;
+    private final TypeTask target;
+    private final Task task; // для ADD и UPDATE
+    private final int id;    // для DELETE
+
+    private Operation(Type type, TypeTask target, Task task, int id) {
+        this.type = type;
+        this.target = target;
+        this.task = task;
+        this.id = id;
+    }
+
+    /**
+     * Добавление задачи, эпика или подзадачи.
+     */
+    public static Operation add(Task task) {
+        Objects.requireNonNull(task, "task не может быть null");
+        return new Operation(Type.ADD, typeOf(task), task, task.getId());
+    }
+
+    /**
+     * Обновление задачи, эпика или подзадачи с тем же id.
+     */
+    public static Operation update(Task task) {
+        Objects.requireNonNull(task, "task не может быть null");
+        return new Operation(Type.UPDATE, typeOf(task), task, task.getId());
+    }
+
+    /**
+     * Удаление задачи, эпика (вместе с подзадачами) или подзадачи по id.
+     */
+    public static Operation delete(TypeTask target, int id) {
+        Objects.requireNonNull(target, "target не может быть null");
+        return new Operation(Type.DELETE, target, null, id);
+    }
+
+    /**
+     * Удаление всех задач указанного вида.
+     */
+    public static Operation deleteAll(TypeTask target) {
+        Objects.requireNonNull(target, "target не может быть null");
+        return new Operation(Type.DELETE_ALL, target, null, 0);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public TypeTask getTarget() {
+        return target;
+    }
+
+    /**
+     * Возвращает задачу добавления или обновления, для удалений — null.
+     */
+    public Task getTask() {
+        return task;
+    }
+
+    /**
+     * Возвращает id удаляемой задачи. Для добавления и обновления — id задачи на момент создания операции.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Выполняет операцию соответствующим методом менеджера.
+     */
+    void applyTo(TaskManager manager) {
+        switch (type) {
+            case ADD -> {
+                switch (target) {
+                    case TASK -> manager.addTask(task);
+                    case EPIC -> manager.addEpic((Epic) task);
+                    case SUBTASK -> manager.addSubtask((Subtask) task);
+                }
+            }
+            case UPDATE -> {
+                switch (target) {
+                    case TASK -> manager.updateTask(task);
+                    case EPIC -> manager.updateEpic((Epic) task);
+                    case SUBTASK -> manager.updateSubtask((Subtask) task);
+                }
+            }
+            case DELETE -> {
+                switch (target) {
+                    case TASK -> manager.deleteTaskById(id);
+                    case EPIC -> manager.deleteEpicById(id);
+                    case SUBTASK -> manager.deleteSubtaskById(id);
+                }
+            }
+            case DELETE_ALL -> {
+                switch (target) {
+                    case TASK -> manager.deleteAllTasks();
+                    case EPIC -> manager.deleteAllEpics();
+                    case SUBTASK -> manager.deleteAllSubtasks();
+                }
+            }
+        }
+    }
+
+    private static TypeTask typeOf(Task task) {
+        if (task instanceof Epic) {
+            return TypeTask.EPIC;
+        }
+        return task instanceof Subtask ? TypeTask.SUBTASK : TypeTask.TASK;
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + target + (task != null ? " " + task.getTitle() : type == Type.DELETE ? " " + id : "");
+    }
+}
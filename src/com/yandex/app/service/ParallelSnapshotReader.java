@@ -0,0 +1,132 @@
+package com.yandex.app.service;
+
+import com.yandex.app.model.Task;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+
+/**
+ * Параллельный разбор строк задач из CSV-снимка.
+ * Файл делится на куски по байтовым смещениям, каждый кусок выравнивается по началу строки
+ * и разбирается отдельной задачей fork-join. Результаты передаются потребителю строго
+ * в порядке строк файла, поэтому загрузка даёт тот же результат, что и последовательная.
+ */
+final class ParallelSnapshotReader {
+
+    static final long MIN_PARALLEL_BYTES = 4L * 1024 * 1024; // меньшие файлы быстрее читать в одном потоке
+    private static final long MIN_CHUNK_BYTES = 1024 * 1024;
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private ParallelSnapshotReader() {
+    }
+
+    /**
+     * Проверяет, имеет ли смысл читать строки задач параллельно.
+     *
+     * @param bytes размер участка со строками задач
+     */
+    static boolean isWorthwhile(long bytes) {
+        return bytes >= MIN_PARALLEL_BYTES && ForkJoinPool.getCommonPoolParallelism() > 1;
+    }
+
+    /**
+     * Разбирает строки задач, начиная со смещения from, до первой пустой строки или конца файла.
+     *
+     * @param file   файл снимка
+     * @param from   смещение первой строки задач (сразу после заголовка)
+     * @param chunks количество кусков, на которые делится файл
+     * @param sink   получатель задач в порядке строк файла
+     * @return смещение пустой строки-разделителя или размер файла, если разделителя нет
+     */
+    static long readRows(File file, long from, int chunks, Consumer<Task> sink) {
+        long size = file.length();
+        int count = (int) Math.max(1, Math.min(chunks, (size - from) / MIN_CHUNK_BYTES));
+        List<Chunk> tasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long start = from + (size - from) * i / count;
+            long end = from + (size - from) * (i + 1) / count;
+            tasks.add(new Chunk(file, start, end, i == 0));
+        }
+        ForkJoinTask.invokeAll(tasks);
+
+        for (Chunk chunk : tasks) {
+            ChunkResult result = chunk.join();
+            if (result.error != null) {
+                throw result.error;
+            }
+            result.tasks.forEach(sink);
+            if (result.separatorOffset >= 0) {
+                return result.separatorOffset; // куски после разделителя содержат историю, а не задачи
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Рекомендуемое количество кусков для текущего пула потоков.
+     */
+    static int defaultChunks() {
+        return ForkJoinPool.getCommonPoolParallelism() * CHUNKS_PER_THREAD;
+    }
+
+    /**
+     * Результат разбора одного куска.
+     */
+    private static final class ChunkResult {
+        final List<Task> tasks = new ArrayList<>();
+        long separatorOffset = -1;    // смещение пустой строки, если она встретилась в куске
+        ManagerSaveException error;   // ошибка разбора; после неё кусок не читается
+    }
+
+    /**
+     * Кусок файла: строки, начинающиеся в диапазоне [start, end).
+     */
+    private static final class Chunk extends RecursiveTask<ChunkResult> {
+        private static final long serialVersionUID = 1L;
+
+        private final File file;
+        private final long start;
+        private final long end;
+        private final boolean alignedStart; // start уже указывает на начало строки
+
+        Chunk(File file, long start, long end, boolean alignedStart) {
+            this.file = file;
+            this.start = start;
+            this.end = end;
+            this.alignedStart = alignedStart;
+        }
+
+        @Override
+        protected ChunkResult compute() {
+            ChunkResult result = new ChunkResult();
+            // Строка, начавшаяся до start, принадлежит предыдущему куску: читаем с байта перед start
+            // и пропускаем всё до первого перевода строки включительно
+            try (CsvTaskReader reader = CsvTaskReader.open(file, alignedStart ? start : start - 1)) {
+                if (!alignedStart && !reader.nextLine()) {
+                    return result;
+                }
+                while (reader.getOffset() < end && reader.nextLine()) {
+                    if (reader.isBlank()) {
+                        result.separatorOffset = reader.getLineOffset();
+                        break;
+                    }
+                    try {
+                        result.tasks.add(reader.parseTask());
+                    } catch (RuntimeException e) {
+                        result.error = new ManagerSaveException("Ошибка парсинга CSV-строки со смещением "
+                                + reader.getLineOffset() + ": " + reader.currentLine(), e);
+                        break;
+                    }
+                }
+            } catch (ManagerSaveException e) {
+                result.error = e;
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.yandex.app.service;
+
+/**
+ * Enum PersistenceMode определяет способ сохранения данных FileBackedTaskManager:
+ * <p> SNAPSHOT — после каждой операции файл перезаписывается целиком
+ * <p> JOURNAL — каждая операция дописывается одной записью в журнал,
+ * а при загрузке журнал проигрывается поверх базового снимка
+ * <p> WRITE_BEHIND — операция завершается сразу после изменения в памяти,
+ * а снимок перезаписывается в фоне по интервалу или числу несохранённых изменений
+ */
+public enum PersistenceMode {
+    SNAPSHOT,
+    JOURNAL,
+    WRITE_BEHIND
+}
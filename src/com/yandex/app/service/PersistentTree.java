@@ -0,0 +1,349 @@
+package com.yandex.app.service;
+
+import java.util.AbstractList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.ToIntFunction;
+
+/**
+ * Неизменяемое упорядоченное множество на AVL-дереве с разделением структуры.
+ * <p>
+ * Добавление и удаление не меняют дерево, а возвращают новое: копируется только путь от корня
+ * до изменённого узла (O(log n) узлов), остальные узлы общие со старой версией. Поэтому старую
+ * версию можно читать из других потоков без блокировок, пока пишущий поток строит следующую.
+ * Узлы хранят размер поддерева, так что доступ по номеру и подсчёт элементов меньше
+ * заданного работают за O(log n), а список-представление не требует копирования.
+ *
+ * @param <E> тип элементов
+ */
+final class PersistentTree<E> implements Iterable<E> {
+
+    private static final class Node<E> {
+        final E value;
+        final Node<E> left;
+        final Node<E> right;
+        final int height;
+        final int size;
+
+        Node(E value, Node<E> left, Node<E> right) {
+            this.value = value;
+            this.left = left;
+            this.right = right;
+            this.height = 1 + Math.max(height(left), height(right));
+            this.size = 1 + size(left) + size(right);
+        }
+    }
+
+    private final Comparator<? super E> order;
+    private final Node<E> root;
+
+    private PersistentTree(Comparator<? super E> order, Node<E> root) {
+        this.order = order;
+        this.root = root;
+    }
+
+    /**
+     * Возвращает пустое дерево с заданным порядком.
+     */
+    static <E> PersistentTree<E> empty(Comparator<? super E> order) {
+        return new PersistentTree<>(Objects.requireNonNull(order, "order не может быть null"), null);
+    }
+
+    /**
+     * Строит сбалансированное дерево за O(n) из элементов, уже упорядоченных
+     * по возрастанию и без повторов. Порядок не проверяется.
+     */
+    static <E> PersistentTree<E> of(Comparator<? super E> order, List<? extends E> sorted) {
+        Objects.requireNonNull(order, "order не может быть null");
+        return new PersistentTree<>(order, build(sorted, 0, sorted.size()));
+    }
+
+    private static <E> Node<E> build(List<? extends E> sorted, int from, int to) {
+        if (from >= to) {
+            return null;
+        }
+        int mid = (from + to) >>> 1;
+        return new Node<>(sorted.get(mid), build(sorted, from, mid), build(sorted, mid + 1, to));
+    }
+
+    /**
+     * Возвращает дерево с элементом. Равный по порядку элемент заменяется.
+     */
+    PersistentTree<E> with(E value) {
+        Objects.requireNonNull(value, "value не может быть null");
+        return new PersistentTree<>(order, insert(root, value));
+    }
+
+    /**
+     * Возвращает дерево без элемента, равного по порядку переданному.
+     * Если такого элемента нет, возвращается это же дерево.
+     */
+    PersistentTree<E> without(E value) {
+        Node<E> newRoot = delete(root, value);
+        return newRoot == root ? this : new PersistentTree<>(order, newRoot);
+    }
+
+    /**
+     * Возвращает пустое дерево с тем же порядком.
+     */
+    PersistentTree<E> cleared() {
+        return root == null ? this : new PersistentTree<>(order, null);
+    }
+
+    int size() {
+        return size(root);
+    }
+
+    boolean isEmpty() {
+        return root == null;
+    }
+
+    /**
+     * Возвращает элемент по номеру в порядке возрастания.
+     *
+     * @throws IndexOutOfBoundsException если номер вне [0, size)
+     */
+    E get(int index) {
+        Objects.checkIndex(index, size());
+        Node<E> node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index == leftSize) {
+                return node.value;
+            } else {
+                index -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    /**
+     * Ищет элемент двоичным поиском.
+     *
+     * @param target возвращает 0 для искомого элемента, отрицательное число — если искомый
+     *               раньше переданного, положительное — если позже
+     * @return найденный элемент или null
+     */
+    E find(ToIntFunction<? super E> target) {
+        Node<E> node = root;
+        while (node != null) {
+            int c = target.applyAsInt(node.value);
+            if (c == 0) {
+                return node.value;
+            }
+            node = c < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    /**
+     * Возвращает количество элементов, после которых лежит граница.
+     *
+     * @param target возвращает положительное число для элементов до границы и неположительное — для остальных;
+     *               элементы до границы должны идти в порядке дерева первыми
+     */
+    int rank(ToIntFunction<? super E> target) {
+        int rank = 0;
+        Node<E> node = root;
+        while (node != null) {
+            if (target.applyAsInt(node.value) > 0) {
+                rank += size(node.left) + 1;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * Возвращает неизменяемое представление всех элементов в виде списка без копирования.
+     */
+    List<E> asList() {
+        return new View(0, size());
+    }
+
+    /**
+     * Возвращает неизменяемое представление элементов с номерами [from, to) без копирования.
+     */
+    List<E> asList(int from, int to) {
+        Objects.checkFromToIndex(from, to, size());
+        return new View(from, to);
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Walker(0, size());
+    }
+
+    private final class View extends AbstractList<E> {
+        private final int from;
+        private final int to;
+
+        View(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public E get(int index) {
+            Objects.checkIndex(index, to - from);
+            return PersistentTree.this.get(from + index);
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            return new Walker(from, to);
+        }
+
+        @Override
+        public List<E> subList(int fromIndex, int toIndex) {
+            Objects.checkFromToIndex(fromIndex, toIndex, to - from);
+            return new View(from + fromIndex, from + toIndex);
+        }
+    }
+
+    /**
+     * Обход элементов с номерами [from, to) по стеку предков: O(log n) на старт и O(1) в среднем на шаг.
+     */
+    private final class Walker implements Iterator<E> {
+        @SuppressWarnings("unchecked")
+        private final Node<E>[] stack = (Node<E>[]) new Node<?>[height(root) + 1];
+        private int depth;
+        private int remaining;
+
+        Walker(int from, int to) {
+            remaining = to - from;
+            if (remaining == 0) {
+                return;
+            }
+            // Спускаемся к элементу с номером from, запоминая узлы, от которых ушли влево
+            Node<E> node = root;
+            int index = from;
+            while (node != null) {
+                int leftSize = size(node.left);
+                if (index < leftSize) {
+                    stack[depth++] = node;
+                    node = node.left;
+                } else if (index == leftSize) {
+                    stack[depth++] = node;
+                    return;
+                } else {
+                    index -= leftSize + 1;
+                    node = node.right;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        @Override
+        public E next() {
+            if (remaining == 0) {
+                throw new NoSuchElementException();
+            }
+            remaining--;
+            Node<E> node = stack[--depth];
+            for (Node<E> next = node.right; next != null; next = next.left) {
+                stack[depth++] = next;
+            }
+            return node.value;
+        }
+    }
+
+    private Node<E> insert(Node<E> node, E value) {
+        if (node == null) {
+            return new Node<>(value, null, null);
+        }
+        int c = order.compare(value, node.value);
+        if (c == 0) {
+            return new Node<>(value, node.left, node.right);
+        }
+        return c < 0
+                ? balance(node.value, insert(node.left, value), node.right)
+                : balance(node.value, node.left, insert(node.right, value));
+    }
+
+    // Возвращает тот же узел, если элемента в поддереве нет
+    private Node<E> delete(Node<E> node, E value) {
+        if (node == null) {
+            return null;
+        }
+        int c = order.compare(value, node.value);
+        if (c < 0) {
+            Node<E> left = delete(node.left, value);
+            return left == node.left ? node : balance(node.value, left, node.right);
+        }
+        if (c > 0) {
+            Node<E> right = delete(node.right, value);
+            return right == node.right ? node : balance(node.value, node.left, right);
+        }
+        if (node.left == null) {
+            return node.right;
+        }
+        if (node.right == null) {
+            return node.left;
+        }
+        Node<E> successor = node.right;
+        while (successor.left != null) {
+            successor = successor.left;
+        }
+        return balance(successor.value, node.left, deleteFirst(node.right));
+    }
+
+    private static <E> Node<E> deleteFirst(Node<E> node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        return balance(node.value, deleteFirst(node.left), node.right);
+    }
+
+    /**
+     * Собирает узел из поддеревьев, высоты которых отличаются не больше чем на 2,
+     * и восстанавливает баланс одним или двумя поворотами.
+     */
+    private static <E> Node<E> balance(E value, Node<E> left, Node<E> right) {
+        int leftHeight = height(left);
+        int rightHeight = height(right);
+        if (leftHeight > rightHeight + 1) {
+            if (height(left.left) >= height(left.right)) {
+                return new Node<>(left.value, left.left, new Node<>(value, left.right, right));
+            }
+            Node<E> pivot = left.right;
+            return new Node<>(pivot.value,
+                    new Node<>(left.value, left.left, pivot.left),
+                    new Node<>(value, pivot.right, right));
+        }
+        if (rightHeight > leftHeight + 1) {
+            if (height(right.right) >= height(right.left)) {
+                return new Node<>(right.value, new Node<>(value, left, right.left), right.right);
+            }
+            Node<E> pivot = right.left;
+            return new Node<>(pivot.value,
+                    new Node<>(value, left, pivot.left),
+                    new Node<>(right.value, pivot.right, right.right));
+        }
+        return new Node<>(value, left, right);
+    }
+
+    private static int height(Node<?> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static int size(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+}
@@ -0,0 +1,480 @@
+package com.yandex.app.service;
+
+import com.yandex.app.model.Epic;
+import com.yandex.app.model.Subtask;
+import com.yandex.app.model.Task;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Потокобезопасный менеджер задач с одним пишущим потоком.
+ * <p>
+ * Изменения не захватывают блокировок: каждое становится командой в ограниченной кольцевой
+ * очереди, а команды по порядку выполняет один выделенный поток. Поток забирает из очереди
+ * сразу все накопившиеся команды (до {@link #MAX_BATCH}) и выполняет их пачкой:
+ * <ul>
+ *     <li>менеджер в памяти меняет только этот поток, поэтому изменения линеаризуемы
+ *     без передачи блокировки между потоками;</li>
+ *     <li>для FileBackedTaskManager в режиме журнала записи всех команд пачки ставятся в журнал
+ *     подряд и сбрасываются на диск общей пачкой, а поток ждёт диска один раз на пачку.</li>
+ * </ul>
+ * Асинхронные методы (addTaskAsync и др.) возвращают CompletableFuture, который завершается
+ * после выполнения команды и сохранения её изменений, или исключением операции.
+ * Методы TaskManager ставят ту же команду и дожидаются её результата.
+ * <p>
+ * Списки задач, эпиков, подзадач, порядок приоритета и история читаются из последней
+ * опубликованной версии без участия пишущего потока. Опубликованная версия может опережать
+ * сохранение на диск: изменения видны читателям раньше, чем завершится их CompletableFuture.
+ * Чтения по id добавляют просмотр в историю, а поиск свободного окна читает изменяемые
+ * индексы, поэтому они тоже выполняются пишущим потоком по порядку с изменениями.
+ * <p>
+ * Если очередь заполнена, вызывающий поток ждёт освобождения места. Колбэки, привязанные
+ * к CompletableFuture, могут выполняться в пишущем потоке, поэтому блокирующие методы
+ * менеджера из них вызывать нельзя. Обёрнутый менеджер нельзя использовать в обход этого.
+ */
+public class SingleWriterTaskManager implements VersionedTaskManager, AutoCloseable {
+
+    /**
+     * Наибольшее число команд, выполняемых одной пачкой.
+     */
+    static final int MAX_BATCH = 1024;
+
+    private static final int DEFAULT_CAPACITY = 4096;
+
+    private final InMemoryTaskManager delegate;
+    private final BlockingQueue<Command<?>> commands;
+    private final Thread writer;
+    private volatile boolean closed;  // новые команды не принимаются
+    private volatile boolean stopped; // пишущий поток больше не выполняет команды
+
+    /**
+     * Создаёт менеджер с очередью на {@value #DEFAULT_CAPACITY} команд.
+     *
+     * @param delegate менеджер, изменения которого выполняет пишущий поток
+     */
+    public SingleWriterTaskManager(InMemoryTaskManager delegate) {
+        this(delegate, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Создаёт менеджер с очередью указанной ёмкости.
+     *
+     * @param delegate менеджер, изменения которого выполняет пишущий поток
+     * @param capacity наибольшее число команд, ожидающих выполнения
+     * @throws IllegalArgumentException если ёмкость не больше нуля
+     */
+    public SingleWriterTaskManager(InMemoryTaskManager delegate, int capacity) {
+        this.delegate = Objects.requireNonNull(delegate, "delegate не может быть null");
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Ёмкость очереди должна быть больше нуля: " + capacity);
+        }
+        this.commands = new ArrayBlockingQueue<>(capacity);
+        this.writer = new Thread(this::run, "task-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Ставит добавление задачи в очередь. Остальные асинхронные методы устроены так же.
+     *
+     * @param task задача для добавления, её id назначается при выполнении команды
+     * @return результат, завершающийся после выполнения и сохранения команды
+     *         или исключением, которое бросил бы addTask
+     * @throws IllegalStateException если менеджер закрыт
+     */
+    public CompletableFuture<Void> addTaskAsync(Task task) {
+        return submit(() -> delegate.addTask(task));
+    }
+
+    public CompletableFuture<Void> addEpicAsync(Epic epic) {
+        return submit(() -> delegate.addEpic(epic));
+    }
+
+    public CompletableFuture<Void> addSubtaskAsync(Subtask subtask) {
+        return submit(() -> delegate.addSubtask(subtask));
+    }
+
+    public CompletableFuture<Void> updateTaskAsync(Task task) {
+        return submit(() -> delegate.updateTask(task));
+    }
+
+    public CompletableFuture<Void> updateEpicAsync(Epic epic) {
+        return submit(() -> delegate.updateEpic(epic));
+    }
+
+    public CompletableFuture<Void> updateSubtaskAsync(Subtask subtask) {
+        return submit(() -> delegate.updateSubtask(subtask));
+    }
+
+    public CompletableFuture<Void> deleteTaskByIdAsync(int id) {
+        return submit(() -> delegate.deleteTaskById(id));
+    }
+
+    public CompletableFuture<Void> deleteEpicByIdAsync(int id) {
+        return submit(() -> delegate.deleteEpicById(id));
+    }
+
+    public CompletableFuture<Void> deleteSubtaskByIdAsync(int id) {
+        return submit(() -> delegate.deleteSubtaskById(id));
+    }
+
+    public CompletableFuture<Void> deleteAllTasksAsync() {
+        return submit(delegate::deleteAllTasks);
+    }
+
+    public CompletableFuture<Void> deleteAllEpicsAsync() {
+        return submit(delegate::deleteAllEpics);
+    }
+
+    public CompletableFuture<Void> deleteAllSubtasksAsync() {
+        return submit(delegate::deleteAllSubtasks);
+    }
+
+    /**
+     * Ставит пакет операций в очередь одной командой.
+     *
+     * @see TaskManager#applyBatch(List)
+     */
+    public CompletableFuture<Void> applyBatchAsync(List<Operation> operations) {
+        return submit(() -> delegate.applyBatch(operations));
+    }
+
+    /**
+     * Ставит транзакцию в очередь одной командой. Работа выполняется пишущим потоком
+     * над менеджером-делегатом, который она и получает.
+     *
+     * @see InMemoryTaskManager#runInTransaction(Consumer)
+     */
+    public CompletableFuture<Void> runInTransactionAsync(Consumer<? super TaskManager> work) {
+        return submit(() -> delegate.runInTransaction(work));
+    }
+
+    @Override
+    public void addTask(Task task) {
+        await(addTaskAsync(task));
+    }
+
+    @Override
+    public void addEpic(Epic epic) {
+        await(addEpicAsync(epic));
+    }
+
+    @Override
+    public void addSubtask(Subtask subtask) {
+        await(addSubtaskAsync(subtask));
+    }
+
+    @Override
+    public List<Task> getAllTasks() {
+        return delegate.getAllTasks();
+    }
+
+    @Override
+    public List<Epic> getAllEpics() {
+        return delegate.getAllEpics();
+    }
+
+    @Override
+    public List<Subtask> getAllSubtasks() {
+        return delegate.getAllSubtasks();
+    }
+
+    @Override
+    public Optional<Task> getTaskById(int id) {
+        return await(submit(() -> delegate.getTaskById(id)));
+    }
+
+    @Override
+    public Optional<Epic> getEpicById(int id) {
+        return await(submit(() -> delegate.getEpicById(id)));
+    }
+
+    @Override
+    public Optional<Subtask> getSubtaskById(int id) {
+        return await(submit(() -> delegate.getSubtaskById(id)));
+    }
+
+    @Override
+    public void updateTask(Task task) {
+        await(updateTaskAsync(task));
+    }
+
+    @Override
+    public void updateEpic(Epic epic) {
+        await(updateEpicAsync(epic));
+    }
+
+    @Override
+    public void updateSubtask(Subtask subtask) {
+        await(updateSubtaskAsync(subtask));
+    }
+
+    @Override
+    public void deleteTaskById(int id) {
+        await(deleteTaskByIdAsync(id));
+    }
+
+    @Override
+    public void deleteEpicById(int id) {
+        await(deleteEpicByIdAsync(id));
+    }
+
+    @Override
+    public void deleteSubtaskById(int id) {
+        await(deleteSubtaskByIdAsync(id));
+    }
+
+    @Override
+    public void deleteAllTasks() {
+        await(deleteAllTasksAsync());
+    }
+
+    @Override
+    public void deleteAllEpics() {
+        await(deleteAllEpicsAsync());
+    }
+
+    @Override
+    public void deleteAllSubtasks() {
+        await(deleteAllSubtasksAsync());
+    }
+
+    @Override
+    public void applyBatch(List<Operation> operations) {
+        await(applyBatchAsync(operations));
+    }
+
+    /**
+     * Выполняет транзакцию пишущим потоком и ждёт её завершения.
+     *
+     * @see InMemoryTaskManager#runInTransaction(Consumer)
+     */
+    public void runInTransaction(Consumer<? super TaskManager> work) {
+        await(runInTransactionAsync(work));
+    }
+
+    @Override
+    public List<Subtask> getSubtasksOfEpic(int epicId) {
+        return delegate.getSubtasksOfEpic(epicId);
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        return delegate.getHistory();
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks() {
+        return delegate.getPrioritizedTasks();
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks(LocalDateTime from, LocalDateTime to) {
+        return delegate.getPrioritizedTasks(from, to);
+    }
+
+    @Override
+    public Optional<LocalDateTime> findEarliestFreeSlot(Duration duration, LocalDateTime notBefore) {
+        return await(submit(() -> delegate.findEarliestFreeSlot(duration, notBefore)));
+    }
+
+    @Override
+    public ManagerState getState() {
+        return delegate.getState();
+    }
+
+    /**
+     * Выполняет уже принятые команды и останавливает пишущий поток.
+     * Новые команды после закрытия отклоняются с IllegalStateException.
+     * Обёрнутый менеджер не закрывается.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        CompletableFuture<Void> last = new CompletableFuture<>();
+        putUninterruptibly(new Command<>(() -> null, last, true));
+        last.join();
+        boolean interrupted = false;
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private CompletableFuture<Void> submit(Runnable operation) {
+        return submit(() -> {
+            operation.run();
+            return null;
+        });
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> operation) {
+        if (closed) {
+            throw new IllegalStateException("Менеджер закрыт");
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Command<T> command = new Command<>(operation, result, false);
+        putUninterruptibly(command);
+        // Пишущий поток уже остановился и мог не увидеть команду при разборе очереди
+        if (stopped && commands.remove(command)) {
+            command.reject();
+        }
+        return result;
+    }
+
+    private void putUninterruptibly(Command<?> command) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                commands.put(command);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Дожидается результата команды и пробрасывает исключение операции как есть.
+     */
+    private <T> T await(CompletableFuture<T> result) {
+        if (Thread.currentThread() == writer) {
+            throw new IllegalStateException("Блокирующий вызов из пишущего потока");
+        }
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Цикл пишущего потока. Если пачка завершилась ошибкой вне команд (например, Error при сохранении),
+     * поток останавливается, но её незавершённые команды и команды в очереди отклоняются,
+     * чтобы вызывающие не ждали вечно.
+     */
+    private void run() {
+        List<Command<?>> batch = new ArrayList<>();
+        boolean stop = false;
+        try {
+            while (!stop) {
+                batch.add(commands.take());
+                commands.drainTo(batch, MAX_BATCH - 1);
+                stop = processBatch(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            stopped = true;
+            batch.forEach(Command::reject); // завершённые результаты не меняются
+            List<Command<?>> rest = new ArrayList<>();
+            commands.drainTo(rest);
+            rest.forEach(Command::reject);
+        }
+    }
+
+    /**
+     * Выполняет команды пачки по порядку, затем ждёт сохранения их изменений
+     * и завершает результаты.
+     *
+     * @return true, если в пачке была команда остановки
+     */
+    private boolean processBatch(List<Command<?>> batch) {
+        GroupCommitWriter.Commit[] commits = new GroupCommitWriter.Commit[batch.size()];
+        int executed = 0;
+        boolean stop = false;
+        for (; executed < batch.size() && !stop; executed++) {
+            Command<?> command = batch.get(executed);
+            commits[executed] = delegate.applyDeferred(command::execute);
+            stop = command.stop;
+        }
+        for (int i = 0; i < executed; i++) {
+            batch.get(i).complete(commits[i]);
+        }
+        // Команды после остановки отклоняются
+        for (int i = executed; i < batch.size(); i++) {
+            batch.get(i).reject();
+        }
+        return stop;
+    }
+
+    /**
+     * Команда пишущему потоку: операция и её будущий результат.
+     */
+    private static final class Command<T> {
+        private final Supplier<T> operation;
+        private final CompletableFuture<T> result;
+        private final boolean stop;
+        private T value;
+        private Throwable error;
+
+        Command(Supplier<T> operation, CompletableFuture<T> result, boolean stop) {
+            this.operation = operation;
+            this.result = result;
+            this.stop = stop;
+        }
+
+        /**
+         * Выполняет операцию. Любое её исключение, включая Error из кода вызывающего
+         * в транзакции, передаётся в результат и не останавливает пишущий поток.
+         */
+        void execute() {
+            try {
+                value = operation.get();
+            } catch (Throwable e) {
+                error = e;
+            }
+        }
+
+        /**
+         * Завершает результат после сохранения изменений команды.
+         */
+        void complete(GroupCommitWriter.Commit commit) {
+            if (error != null) {
+                result.completeExceptionally(error);
+                return;
+            }
+            try {
+                commit.await();
+            } catch (ManagerSaveException e) {
+                result.completeExceptionally(e);
+                return;
+            }
+            result.complete(value);
+        }
+
+        void reject() {
+            result.completeExceptionally(new IllegalStateException("Менеджер закрыт"));
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.yandex.app.service;
+
+import com.yandex.app.model.Task;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Перевод снимков FileBackedTaskManager между форматами CSV и двоичным.
+ * Записи переносятся потоково в исходном порядке, без загрузки в менеджер и без проверок;
+ * история просмотров и номер последней учтённой записи журнала сохраняются.
+ */
+public final class SnapshotConverter {
+
+    private SnapshotConverter() {
+    }
+
+    /**
+     * Переводит CSV-снимок в двоичный формат.
+     *
+     * @param csv    исходный файл CSV
+     * @param binary файл для двоичного снимка
+     */
+    public static void csvToBinary(File csv, File binary) {
+        convert(csv, SnapshotFormat.CSV, binary, SnapshotFormat.BINARY);
+    }
+
+    /**
+     * Переводит двоичный снимок в CSV.
+     *
+     * @param binary исходный двоичный снимок
+     * @param csv    файл для CSV
+     */
+    public static void binaryToCsv(File binary, File csv) {
+        convert(binary, SnapshotFormat.BINARY, csv, SnapshotFormat.CSV);
+    }
+
+    /**
+     * Переводит снимок из одного формата в другой.
+     *
+     * @param source       исходный файл
+     * @param sourceFormat формат исходного файла
+     * @param target       файл результата
+     * @param targetFormat формат результата
+     */
+    public static void convert(File source, SnapshotFormat sourceFormat, File target, SnapshotFormat targetFormat) {
+        if (SnapshotFormat.detect(source) != sourceFormat) {
+            throw new ManagerSaveException("Файл " + source.getName() + " не в формате " + sourceFormat);
+        }
+        try (SnapshotWriter writer = targetFormat.openWriter(target)) {
+            List<Integer> history = new ArrayList<>();
+            long[] seq = {-1};
+            sourceFormat.read(source, new SnapshotSink() {
+                @Override
+                public void task(Task task) {
+                    writer.task(task);
+                }
+
+                @Override
+                public void tasksEnd() {
+                }
+
+                @Override
+                public void view(int id) {
+                    history.add(id);
+                }
+
+                @Override
+                public void seq(long value) {
+                    seq[0] = value;
+                }
+            });
+            // Нулевой номер означает снимок без журнала: в CSV строка "seq" для него не пишется
+            writer.finish(history, seq[0] > 0 ? seq[0] : -1);
+        }
+    }
+}
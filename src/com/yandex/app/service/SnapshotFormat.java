@@ -0,0 +1,38 @@
+package com.yandex.app.service;
+
+import java.io.File;
+
+/**
+ * Формат файла снимка FileBackedTaskManager.
+ */
+public enum SnapshotFormat {
+    /**
+     * Текстовый CSV с заголовком id,type,name,status,description,duration,startTime,epic.
+     */
+    CSV,
+    /**
+     * Компактный двоичный формат с версией (см. {@link BinarySnapshot}).
+     */
+    BINARY;
+
+    /**
+     * Определяет формат существующего файла по сигнатуре.
+     */
+    static SnapshotFormat detect(File file) {
+        return BinarySnapshot.isBinary(file) ? BINARY : CSV;
+    }
+
+    SnapshotWriter openWriter(File target) {
+        return switch (this) {
+            case CSV -> CsvSnapshot.openWriter(target);
+            case BINARY -> BinarySnapshot.openWriter(target);
+        };
+    }
+
+    void read(File source, SnapshotSink sink) {
+        switch (this) {
+            case CSV -> CsvSnapshot.read(source, sink);
+            case BINARY -> BinarySnapshot.read(source, sink);
+        }
+    }
+}
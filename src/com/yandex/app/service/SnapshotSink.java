@@ -0,0 +1,19 @@
+package com.yandex.app.service;
+
+import com.yandex.app.model.Task;
+
+/**
+ * Получатель содержимого снимка при чтении.
+ * Методы вызываются в порядке записи: сначала задачи, затем {@link #tasksEnd()},
+ * затем история просмотров и номер последней учтённой записи журнала.
+ */
+interface SnapshotSink {
+
+    void task(Task task);
+
+    void tasksEnd();
+
+    void view(int id);
+
+    void seq(long seq);
+}
@@ -0,0 +1,24 @@
+package com.yandex.app.service;
+
+import com.yandex.app.model.Task;
+
+import java.util.List;
+
+/**
+ * Последовательная запись снимка: задачи, затем история и номер записи журнала.
+ */
+interface SnapshotWriter extends AutoCloseable {
+
+    void task(Task task);
+
+    /**
+     * Записывает историю просмотров и завершает снимок.
+     *
+     * @param history id просмотренных задач в порядке просмотра
+     * @param seq     номер последней учтённой записи журнала; отрицательный — номер не сохраняется
+     */
+    void finish(List<Integer> history, long seq);
+
+    @Override
+    void close();
+}
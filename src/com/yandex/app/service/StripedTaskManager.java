@@ -0,0 +1,987 @@
+package com.yandex.app.service;
+
+import com.yandex.app.model.Epic;
+import com.yandex.app.model.Subtask;
+import com.yandex.app.model.Task;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Потокобезопасный менеджер задач в памяти с блокировками, разбитыми по эпикам.
+ * <p>
+ * Изменение подзадачи затрагивает только её эпик (состав, накопленные статус и время) и расписание.
+ * Поэтому вместо одной общей блокировки используются:
+ * <ul>
+ *     <li>массив блокировок-полос: эпик и все его подзадачи защищены полосой, выбранной по id эпика,
+ *     обычная задача — полосой по своему id. Новый id занимается под полосой, которую он получит
+ *     (для подзадачи — под полосой её эпика). Записи в разные эпики идут параллельно;</li>
+ *     <li>отдельная блокировка расписания ({@link TaskSchedule}: порядок приоритета, занятые интервалы
+ *     и слоты). Она держится только на время проверки пересечения и вставки в расписание,
+ *     а задачи и подзадачи без времени начала её не берут вовсе.</li>
+ * </ul>
+ * Блокировки берутся в одном порядке: полосы по возрастанию номера, затем расписание,
+ * затем блокировки сегментов подзадач, затем монитор истории просмотров, поэтому взаимных блокировок нет.
+ * Операции над всеми задачами сразу (deleteAll*) берут все полосы.
+ * <p>
+ * Задачи, эпики и накопленные данные эпиков хранятся в {@link IntObjectMap} своей полосы
+ * и читаются и меняются только под ней, так что запись не создаёт ни Integer, ни узла
+ * ConcurrentHashMap. Подзадачи хранятся в сегментах по своему id, чтобы подзадачу можно было
+ * найти, не зная эпика: меняются они под полосой эпика, а блокировка сегмента защищает только
+ * сам словарь и держится без вложенных блокировок (кроме пакета, см. {@link #applyBatch}).
+ * Списки всех задач, эпиков и подзадач собираются под всеми полосами и упорядочиваются по id.
+ * Разные чтения единого снимка не образуют: например, только что добавленная задача
+ * может уже быть в порядке приоритета, но ещё не быть в списке задач.
+ */
+public class StripedTaskManager implements TaskManager {
+
+    static final int DEFAULT_STRIPES = 64;
+
+    private static final Comparator<Task> BY_ID = Comparator.comparingInt(Task::getId);
+
+    private final AtomicInteger nextId = new AtomicInteger(1); // Счётчик для генерации уникальных id задач
+
+    private final HistoryManager historyManager = Managers.getDefaultHistory();
+
+    private final Stripe[] stripes;
+    private final int stripeBits; // log2 числа полос
+    private final Segment[] segments; // подзадачи по id; сегмент выбирается как полоса
+
+    // Выполняемый пакет или null. Меняется под всеми полосами, а читается изменяющими методами
+    // под своей полосой, поэтому видимость обеспечивают сами блокировки
+    private Batch batch;
+    private final ReentrantLock scheduleLock = new ReentrantLock();
+    private final TaskSchedule schedule = new TaskSchedule(); // только под scheduleLock
+
+    /**
+     * Создаёт менеджер с {@value #DEFAULT_STRIPES} полосами блокировок.
+     */
+    public StripedTaskManager() {
+        this(DEFAULT_STRIPES);
+    }
+
+    /**
+     * Создаёт менеджер с заданным числом полос блокировок.
+     * Число округляется вверх до степени двойки.
+     *
+     * @param stripeCount число полос
+     * @throws IllegalArgumentException если число полос не в пределах 1..65536
+     */
+    public StripedTaskManager(int stripeCount) {
+        if (stripeCount <= 0 || stripeCount > 1 << 16) {
+            throw new IllegalArgumentException("Число полос должно быть от 1 до 65536: " + stripeCount);
+        }
+        int size = 1;
+        while (size < stripeCount) {
+            size <<= 1;
+        }
+        stripes = new Stripe[size];
+        segments = new Segment[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new Stripe();
+            segments[i] = new Segment();
+        }
+        stripeBits = Integer.numberOfTrailingZeros(size);
+    }
+
+    /**
+     * Добавляет задачу под полосой её id. Id новой задачи заранее неизвестен, поэтому полоса берётся
+     * по ожидаемому значению счётчика; если другой поток успел занять это id, попытка повторяется.
+     */
+    @Override
+    public void addTask(Task task) {
+        Objects.requireNonNull(task, "Task не может быть null");
+        while (true) {
+            int id = expectedId(task);
+            Stripe stripe = stripeOf(id);
+            stripe.lock();
+            try {
+                Task copy = new Task(task);
+                if (schedule(task, copy, id, "Задача пересекается по времени: ")) {
+                    put(stripe.tasks, keyOf(id), copy);
+                    assignCallerId(task, id);
+                    return;
+                }
+            } finally {
+                stripe.unlock();
+            }
+        }
+    }
+
+    /**
+     * Добавляет эпик под полосой его id, как {@link #addTask}.
+     */
+    @Override
+    public void addEpic(Epic epic) {
+        Objects.requireNonNull(epic, "Epic не может быть null");
+        while (true) {
+            int id = expectedId(epic);
+            Stripe stripe = stripeOf(id);
+            stripe.lock();
+            try {
+                if (claimId(epic, id)) {
+                    Epic copy = new Epic(epic);
+                    copy.setId(id);
+                    put(stripe.aggregates, keyOf(id), new EpicAggregate());
+                    put(stripe.epics, keyOf(id), copy);
+                    assignCallerId(epic, id);
+                    return;
+                }
+            } finally {
+                stripe.unlock();
+            }
+        }
+    }
+
+    /**
+     * Добавляет подзадачу под полосой её эпика, поэтому эпик не может быть удалён
+     * между проверкой его существования и добавлением подзадачи.
+     *
+     * @throws EpicNotFoundException    если эпик с указанным id не найден
+     * @throws IllegalArgumentException если подзадача ссылается на саму себя как на эпик
+     *                                  или пересекается по времени
+     */
+    @Override
+    public void addSubtask(Subtask subtask) {
+        Objects.requireNonNull(subtask, "Subtask не может быть null");
+        Stripe stripe = stripeOf(subtask.getEpicId());
+        stripe.lock();
+        try {
+            Epic epic = stripe.epics.get(keyOf(subtask.getEpicId()));
+            if (epic == null) {
+                throw new EpicNotFoundException("Epic с id " + subtask.getEpicId() + " не найден.");
+            }
+            if (subtask.getEpicId() == subtask.getId()) {
+                throw new IllegalArgumentException("Подзадача не может ссылаться на саму себя как на эпик.");
+            }
+
+            Subtask copy = new Subtask(subtask);
+            int id;
+            do {
+                id = expectedId(subtask);
+            } while (!schedule(subtask, copy, id, "Подзадача пересекается по времени: "));
+            putSubtask(copy);
+            assignCallerId(subtask, id);
+
+            saveEpic(epic);
+            epic.addSubtaskId(id);
+            EpicAggregate aggregate = stripe.aggregates.get(keyOf(epic.getId()));
+            addToAggregate(aggregate, copy);
+            refreshEpic(aggregate, epic);
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    @Override
+    public List<Task> getAllTasks() {
+        List<Task> result = new ArrayList<>();
+        lockAll();
+        try {
+            for (Stripe stripe : stripes) {
+                result.addAll(stripe.tasks.values());
+            }
+        } finally {
+            unlockAll();
+        }
+        result.sort(BY_ID);
+        return result;
+    }
+
+    @Override
+    public List<Epic> getAllEpics() {
+        List<Epic> result = new ArrayList<>();
+        lockAll();
+        try {
+            for (Stripe stripe : stripes) {
+                stripe.epics.values().forEach(epic -> result.add(new Epic(epic)));
+            }
+        } finally {
+            unlockAll();
+        }
+        result.sort(BY_ID);
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Подзадачи меняются только под полосой своего эпика, поэтому под всеми полосами сегменты не меняются.
+     */
+    @Override
+    public List<Subtask> getAllSubtasks() {
+        List<Subtask> result;
+        lockAll();
+        try {
+            result = subtaskValues();
+        } finally {
+            unlockAll();
+        }
+        result.sort(BY_ID);
+        return result;
+    }
+
+    /**
+     * Возвращает задачу по id и добавляет её в историю. Выполняется под полосой задачи,
+     * чтобы одновременное удаление не оставило задачу в истории.
+     */
+    @Override
+    public Optional<Task> getTaskById(int id) {
+        Stripe stripe = stripeOf(id);
+        stripe.lock();
+        try {
+            Task task = stripe.tasks.get(keyOf(id));
+            if (task == null) {
+                return Optional.empty();
+            }
+            historyManager.add(task);
+            return Optional.of(new Task(task));
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    @Override
+    public Optional<Epic> getEpicById(int id) {
+        Stripe stripe = stripeOf(id);
+        stripe.lock();
+        try {
+            Epic epic = stripe.epics.get(keyOf(id));
+            if (epic == null) {
+                return Optional.empty();
+            }
+            historyManager.add(epic);
+            return Optional.of(new Epic(epic));
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    @Override
+    public Optional<Subtask> getSubtaskById(int id) {
+        Subtask found = subtask(id);
+        if (found == null) {
+            return Optional.empty();
+        }
+        // Эпик подзадачи не меняется, поэтому полоса определяется до блокировки
+        Stripe stripe = stripeOf(found.getEpicId());
+        stripe.lock();
+        try {
+            Subtask subtask = subtask(id);
+            if (subtask == null) {
+                return Optional.empty();
+            }
+            historyManager.add(subtask);
+            return Optional.of(new Subtask(subtask));
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    @Override
+    public void updateTask(Task task) {
+        Objects.requireNonNull(task, "Task не может быть null");
+        Stripe stripe = stripeOf(task.getId());
+        stripe.lock();
+        try {
+            Task oldTask = stripe.tasks.get(keyOf(task.getId()));
+            if (oldTask == null) {
+                throw new IllegalArgumentException("Задача с id " + task.getId() + " не найдена.");
+            }
+            Task copy = new Task(task);
+            reschedule(oldTask, copy, "Задача пересекается по времени: ");
+            put(stripe.tasks, keyOf(task.getId()), copy);
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    /**
+     * Обновляет title и description эпика. Статус и время поддерживаются автоматически.
+     *
+     * @throws EpicNotFoundException если эпик с указанным id не найден
+     */
+    @Override
+    public void updateEpic(Epic epic) {
+        Objects.requireNonNull(epic, "epic не может быть null");
+        Stripe stripe = stripeOf(epic.getId());
+        stripe.lock();
+        try {
+            Epic storedEpic = stripe.epics.get(keyOf(epic.getId()));
+            if (storedEpic == null) {
+                throw new EpicNotFoundException("Эпик с id " + epic.getId() + " не найден.");
+            }
+            saveEpic(storedEpic);
+            storedEpic.setTitle(epic.getTitle());
+            storedEpic.setDescription(epic.getDescription());
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    /**
+     * Обновляет подзадачу под полосой её эпика.
+     *
+     * @throws IllegalArgumentException если подзадача не найдена, переносится в другой эпик
+     *                                  или пересекается по времени
+     */
+    @Override
+    public void updateSubtask(Subtask subtask) {
+        Objects.requireNonNull(subtask);
+        Subtask found = subtask(subtask.getId());
+        if (found == null) {
+            throw new IllegalArgumentException("Подзадача с id " + subtask.getId() + " не найдена.");
+        }
+        Stripe stripe = stripeOf(found.getEpicId());
+        stripe.lock();
+        try {
+            Subtask oldSubtask = subtask(subtask.getId());
+            if (oldSubtask == null) {
+                throw new IllegalArgumentException("Подзадача с id " + subtask.getId() + " не найдена.");
+            }
+            if (oldSubtask.getEpicId() != subtask.getEpicId()) {
+                throw new IllegalArgumentException("Подзадача с id " + subtask.getId()
+                        + " принадлежит эпику " + oldSubtask.getEpicId() + " и не может быть перенесена.");
+            }
+            Subtask copy = new Subtask(subtask);
+            reschedule(oldSubtask, copy, "Подзадача пересекается по времени: ");
+            putSubtask(copy);
+
+            Epic epic = stripe.epics.get(keyOf(subtask.getEpicId()));
+            EpicAggregate aggregate = stripe.aggregates.get(keyOf(epic.getId()));
+            removeFromAggregate(aggregate, oldSubtask);
+            addToAggregate(aggregate, copy);
+            refreshEpic(aggregate, epic);
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    @Override
+    public void deleteTaskById(int id) {
+        Stripe stripe = stripeOf(id);
+        stripe.lock();
+        try {
+            Task removed = remove(stripe.tasks, keyOf(id));
+            if (removed == null) {
+                throw new IllegalArgumentException("Задача с id " + id + " не найдена.");
+            }
+            unschedule(removed);
+            forget(id);
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    @Override
+    public void deleteEpicById(int id) {
+        Stripe stripe = stripeOf(id);
+        stripe.lock();
+        try {
+            Epic epic = remove(stripe.epics, keyOf(id));
+            if (epic == null) {
+                throw new EpicNotFoundException("Эпик с id " + id + " не найден.");
+            }
+            remove(stripe.aggregates, keyOf(id));
+            List<Subtask> removed = new ArrayList<>(epic.getSubtaskCount());
+            epic.forEachSubtaskId(subId -> {
+                Subtask subtask = removeSubtask(subId);
+                if (subtask != null) {
+                    removed.add(subtask);
+                }
+                forget(subId);
+            });
+            unschedule(removed); // одна блокировка расписания на все подзадачи эпика
+            forget(id);
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    @Override
+    public void deleteSubtaskById(int id) {
+        Subtask found = subtask(id);
+        if (found == null) {
+            throw new IllegalArgumentException("Подзадача с id " + id + " не найдена.");
+        }
+        Stripe stripe = stripeOf(found.getEpicId());
+        stripe.lock();
+        try {
+            Subtask removed = removeSubtask(id);
+            if (removed == null) {
+                throw new IllegalArgumentException("Подзадача с id " + id + " не найдена.");
+            }
+            unschedule(removed);
+            forget(id);
+
+            Epic epic = stripe.epics.get(keyOf(removed.getEpicId()));
+            saveEpic(epic);
+            epic.removeSubtaskId(id);
+            EpicAggregate aggregate = stripe.aggregates.get(keyOf(epic.getId()));
+            removeFromAggregate(aggregate, removed);
+            refreshEpic(aggregate, epic);
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    @Override
+    public void deleteAllTasks() {
+        lockAll();
+        try {
+            for (Stripe stripe : stripes) {
+                unschedule(stripe.tasks.values());
+                stripe.tasks.values().forEach(task -> forget(task.getId()));
+                clear(stripe.tasks);
+            }
+        } finally {
+            unlockAll();
+        }
+    }
+
+    @Override
+    public void deleteAllEpics() {
+        lockAll();
+        try {
+            List<Subtask> removed = subtaskValues();
+            unschedule(removed);
+            removed.forEach(subtask -> forget(subtask.getId()));
+            clearSubtasks();
+            for (Stripe stripe : stripes) {
+                for (Epic epic : stripe.epics.values()) {
+                    forget(epic.getId());
+                    remove(stripe.aggregates, keyOf(epic.getId()));
+                }
+                clear(stripe.epics);
+            }
+        } finally {
+            unlockAll();
+        }
+    }
+
+    @Override
+    public void deleteAllSubtasks() {
+        lockAll();
+        try {
+            List<Subtask> removed = subtaskValues();
+            unschedule(removed);
+            removed.forEach(subtask -> forget(subtask.getId()));
+            for (Stripe stripe : stripes) {
+                for (Epic epic : stripe.epics.values()) {
+                    EpicAggregate aggregate = stripe.aggregates.get(keyOf(epic.getId()));
+                    clearAggregate(aggregate, epic); // до очистки сегментов: запоминает подзадачи эпика
+                    saveEpic(epic);
+                    epic.clearSubtasks();
+                    refreshEpic(aggregate, epic);
+                }
+            }
+            clearSubtasks();
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /**
+     * Выполняет пакет под всеми полосами, блокировкой расписания и блокировками всех сегментов
+     * подзадач, взятыми в обычном порядке. Берутся все полосы, а не только затронутые: id
+     * добавляемых задач и эпиков становятся известны лишь при выполнении операций, а удаление всех
+     * задач затрагивает все полосы. Пока пакет выполняется, другие потоки не видят его промежуточного
+     * состояния: все хранилища и расписание читаются под этими блокировками, а удаления из истории
+     * просмотров откладываются до конца пакета.
+     * <p>
+     * Операции выполняются обычными методами (блокировки повторно входимы), и каждое изменение
+     * хранилищ, расписания, эпиков и id задач вызывающего записывает обратное действие в журнал отмены.
+     * Статус и время затронутых эпиков пересчитываются один раз в конце пакета. Если операция
+     * не проходит проверку, журнал отменяется в обратном порядке, а счётчик id возвращается
+     * к началу пакета: без полосы id не занимается, поэтому другие потоки его не расходовали.
+     */
+    @Override
+    public void applyBatch(List<Operation> operations) {
+        Objects.requireNonNull(operations, "operations не может быть null");
+        operations.forEach(operation -> Objects.requireNonNull(operation, "operation не может быть null"));
+        if (operations.isEmpty()) {
+            return;
+        }
+        lockAll();
+        scheduleLock.lock();
+        lockSegments();
+        try {
+            Batch current = new Batch(nextId.get());
+            batch = current;
+            try {
+                operations.forEach(operation -> operation.applyTo(this));
+                commit(current);
+            } catch (RuntimeException | Error e) {
+                batch = null;
+                current.undo.rollback(); // от последнего изменения к первому
+                nextId.set(current.nextIdBefore);
+                throw e;
+            } finally {
+                batch = null;
+            }
+        } finally {
+            unlockSegments();
+            scheduleLock.unlock();
+            unlockAll();
+        }
+    }
+
+    @Override
+    public List<Subtask> getSubtasksOfEpic(int epicId) {
+        Stripe stripe = stripeOf(epicId);
+        stripe.lock();
+        try {
+            Epic epic = stripe.epics.get(keyOf(epicId));
+            if (epic == null) {
+                throw new EpicNotFoundException("Эпик с id " + epicId + " не найден.");
+            }
+            List<Subtask> result = new ArrayList<>(epic.getSubtaskCount());
+            epic.forEachSubtaskId(id -> {
+                Subtask subtask = subtask(id);
+                if (subtask != null) result.add(subtask);
+            });
+            return Collections.unmodifiableList(result);
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        return historyManager.getHistory();
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks() {
+        scheduleLock.lock();
+        try {
+            return schedule.prioritized();
+        } finally {
+            scheduleLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks(LocalDateTime from, LocalDateTime to) {
+        scheduleLock.lock();
+        try {
+            return schedule.prioritized(from, to);
+        } finally {
+            scheduleLock.unlock();
+        }
+    }
+
+    @Override
+    public Optional<LocalDateTime> findEarliestFreeSlot(Duration duration, LocalDateTime notBefore) {
+        scheduleLock.lock();
+        try {
+            return schedule.findEarliestFreeSlot(duration, notBefore);
+        } finally {
+            scheduleLock.unlock();
+        }
+    }
+
+    /**
+     * Завершает пакет: пересчитывает затронутые эпики, которые не были удалены,
+     * и одним захватом монитора истории удаляет из неё задачи, удалённые пакетом.
+     */
+    private void commit(Batch current) {
+        batch = null;
+        for (Epic epic : current.changedEpics) {
+            Stripe stripe = stripeOf(epic.getId());
+            if (stripe.epics.get(keyOf(epic.getId())) == epic) {
+                stripe.aggregates.get(keyOf(epic.getId())).applyTo(epic);
+            }
+        }
+        // InMemoryHistoryManager синхронизирован на себе, поэтому чтение истории не увидит часть удалений
+        synchronized (historyManager) {
+            current.forgotten.forEach(historyManager::remove);
+        }
+    }
+
+    /**
+     * Возвращает id, который получит новая задача: заданный вызывающим или следующее значение счётчика.
+     */
+    private int expectedId(Task task) {
+        return task.getId() > 0 ? task.getId() : nextId.get();
+    }
+
+    /**
+     * Занимает id, полученный из {@link #expectedId}.
+     *
+     * @return false, если другой поток уже занял это значение счётчика
+     */
+    private boolean claimId(Task task, int id) {
+        if (task.getId() > 0) {
+            nextId.accumulateAndGet(id + 1, Math::max);
+            return true;
+        }
+        return nextId.compareAndSet(id, id + 1);
+    }
+
+    /**
+     * Занимает для копии id и вносит её в расписание. Задача без времени начала
+     * в расписание не попадает, и блокировка расписания не берётся.
+     * Id занимается после проверки пересечения, чтобы отклонённая задача не расходовала id.
+     *
+     * @return false, если id занят другим потоком и попытку нужно повторить
+     */
+    private boolean schedule(Task task, Task copy, int id, String overlapMessage) {
+        if (task.getStartMinute() == Task.NO_TIME) {
+            if (!claimId(task, id)) {
+                return false;
+            }
+            copy.setId(id);
+            return true;
+        }
+        scheduleLock.lock();
+        try {
+            if (schedule.overlaps(task)) {
+                throw new IllegalArgumentException(overlapMessage + task.getTitle());
+            }
+            if (!claimId(task, id)) {
+                return false;
+            }
+            copy.setId(id);
+            addToSchedule(copy);
+            return true;
+        } finally {
+            scheduleLock.unlock();
+        }
+    }
+
+    /**
+     * Заменяет в расписании прежнюю версию задачи новой. Если новая версия пересекается
+     * с другими задачами, расписание остаётся прежним.
+     */
+    private void reschedule(Task oldTask, Task copy, String overlapMessage) {
+        if (oldTask.getStartMinute() == Task.NO_TIME && copy.getStartMinute() == Task.NO_TIME) {
+            return;
+        }
+        scheduleLock.lock();
+        try {
+            removeFromSchedule(oldTask);
+            if (schedule.overlaps(copy)) {
+                addToSchedule(oldTask);
+                throw new IllegalArgumentException(overlapMessage + copy.getTitle());
+            }
+            addToSchedule(copy);
+        } finally {
+            scheduleLock.unlock();
+        }
+    }
+
+    /**
+     * Удаляет задачу из расписания. Для задачи без времени начала блокировка не берётся.
+     */
+    private void unschedule(Task removed) {
+        if (removed.getStartMinute() != Task.NO_TIME) {
+            unschedule(List.of(removed));
+        }
+    }
+
+    /**
+     * Удаляет задачи из расписания под одной блокировкой.
+     */
+    private void unschedule(Iterable<? extends Task> removed) {
+        scheduleLock.lock();
+        try {
+            for (Task task : removed) {
+                if (task.getStartMinute() != Task.NO_TIME) {
+                    removeFromSchedule(task);
+                }
+            }
+        } finally {
+            scheduleLock.unlock();
+        }
+    }
+
+    private Subtask subtask(int id) {
+        Segment segment = segments[indexOf(id)];
+        segment.lock();
+        try {
+            return segment.subtasks.get(keyOf(id));
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    private void putSubtask(Subtask subtask) {
+        Segment segment = segments[indexOf(subtask.getId())];
+        segment.lock();
+        try {
+            put(segment.subtasks, keyOf(subtask.getId()), subtask);
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    private Subtask removeSubtask(int id) {
+        Segment segment = segments[indexOf(id)];
+        segment.lock();
+        try {
+            return remove(segment.subtasks, keyOf(id));
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    /**
+     * Собирает подзадачи всех сегментов по очереди.
+     */
+    private List<Subtask> subtaskValues() {
+        List<Subtask> result = new ArrayList<>();
+        for (Segment segment : segments) {
+            segment.lock();
+            try {
+                result.addAll(segment.subtasks.values());
+            } finally {
+                segment.unlock();
+            }
+        }
+        return result;
+    }
+
+    private void clearSubtasks() {
+        for (Segment segment : segments) {
+            segment.lock();
+            try {
+                clear(segment.subtasks);
+            } finally {
+                segment.unlock();
+            }
+        }
+    }
+
+    // Изменения структур; в пакете каждое записывает обратное действие в журнал отмены.
+    // Отмена выполняется потоком пакета под всеми его блокировками
+
+    private <V> void put(IntObjectMap<V> map, int key, V value) {
+        V previous = map.put(key, value);
+        if (batch != null) {
+            batch.undo.record(() -> {
+                if (previous == null) {
+                    map.remove(key);
+                } else {
+                    map.put(key, previous);
+                }
+            });
+        }
+    }
+
+    private <V> V remove(IntObjectMap<V> map, int key) {
+        V removed = map.remove(key);
+        if (removed != null && batch != null) {
+            batch.undo.record(() -> map.put(key, removed));
+        }
+        return removed;
+    }
+
+    private <T extends Task> void clear(IntObjectMap<T> map) {
+        if (batch != null && !map.isEmpty()) {
+            List<T> removed = new ArrayList<>(map.values());
+            batch.undo.record(() -> removed.forEach(task -> map.put(keyOf(task.getId()), task)));
+        }
+        map.clear();
+    }
+
+    // Вызываются под блокировкой расписания
+
+    private void addToSchedule(Task task) {
+        schedule.add(task);
+        if (batch != null) {
+            batch.undo.record(() -> schedule.remove(task));
+        }
+    }
+
+    private void removeFromSchedule(Task task) {
+        schedule.remove(task);
+        if (batch != null) {
+            batch.undo.record(() -> schedule.add(task));
+        }
+    }
+
+    private void addToAggregate(EpicAggregate aggregate, Subtask subtask) {
+        aggregate.add(subtask);
+        if (batch != null) {
+            batch.undo.record(() -> aggregate.remove(subtask));
+        }
+    }
+
+    private void removeFromAggregate(EpicAggregate aggregate, Subtask subtask) {
+        aggregate.remove(subtask);
+        if (batch != null) {
+            batch.undo.record(() -> aggregate.add(subtask));
+        }
+    }
+
+    /**
+     * Очищает накопленные данные эпика; вызывается, пока подзадачи эпика ещё лежат в сегментах.
+     */
+    private void clearAggregate(EpicAggregate aggregate, Epic epic) {
+        if (batch != null) {
+            List<Subtask> ofEpic = new ArrayList<>(epic.getSubtaskCount());
+            epic.forEachSubtaskId(id -> {
+                Subtask subtask = subtask(id);
+                if (subtask != null) ofEpic.add(subtask);
+            });
+            batch.undo.record(() -> ofEpic.forEach(aggregate::add));
+        }
+        aggregate.clear();
+    }
+
+    /**
+     * Переносит накопленные статус и время в эпик. В пакете эпик только отмечается
+     * и пересчитывается один раз при его завершении.
+     */
+    private void refreshEpic(EpicAggregate aggregate, Epic epic) {
+        if (batch != null) {
+            batch.changedEpics.add(epic);
+            return;
+        }
+        aggregate.applyTo(epic);
+    }
+
+    /**
+     * Перед первым изменением эпика в пакете запоминает его поля и состав подзадач.
+     */
+    private void saveEpic(Epic epic) {
+        Batch current = batch;
+        if (current == null || !current.savedEpics.add(epic)) {
+            return;
+        }
+        Epic saved = new Epic(epic);
+        current.undo.record(() -> {
+            epic.setTitle(saved.getTitle());
+            epic.setDescription(saved.getDescription());
+            epic.setStatus(saved.getStatus());
+            epic.updateEpicTime(saved.getDurationMinutes(), saved.getStartMinute(), saved.getEndMinute());
+            epic.clearSubtasks();
+            saved.forEachSubtaskId(epic::addSubtaskId);
+        });
+    }
+
+    /**
+     * Удаляет задачу из истории просмотров; в пакете удаление откладывается до его завершения.
+     */
+    private void forget(int id) {
+        if (batch != null) {
+            batch.forgotten.add(id);
+            return;
+        }
+        historyManager.remove(id);
+    }
+
+    /**
+     * Сообщает вызывающему id его задачи; при отмене пакета возвращается прежний id.
+     */
+    private void assignCallerId(Task task, int id) {
+        int previous = task.getId();
+        task.setId(id);
+        if (batch != null) {
+            batch.undo.record(() -> task.setId(previous));
+        }
+    }
+
+    private Stripe stripeOf(int ownerId) {
+        return stripes[indexOf(ownerId)];
+    }
+
+    private int indexOf(int id) {
+        return (id ^ (id >>> 16)) & (stripes.length - 1);
+    }
+
+    /**
+     * Возвращает ключ id в словаре полосы или сегмента: id без младших битов, выбравших полосу.
+     * У id одной полосы эти биты совпадают, и без сдвига их ключи занимали бы лишь каждую
+     * {@code stripes.length}-ю ячейку словаря. Вместе с номером полосы ключ однозначно задаёт id.
+     */
+    private int keyOf(int id) {
+        return id >>> stripeBits;
+    }
+
+    private void lockSegments() {
+        for (Segment segment : segments) {
+            segment.lock();
+        }
+    }
+
+    private void unlockSegments() {
+        for (int i = segments.length - 1; i >= 0; i--) {
+            segments[i].unlock();
+        }
+    }
+
+    private void lockAll() {
+        for (Stripe stripe : stripes) {
+            stripe.lock();
+        }
+    }
+
+    private void unlockAll() {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            stripes[i].unlock();
+        }
+    }
+
+    /**
+     * Полоса: блокировка и хранилища задач и эпиков, id которых попадают в неё.
+     * Словари читаются и меняются только под блокировкой полосы.
+     */
+    private static final class Stripe {
+        final ReentrantLock lock = new ReentrantLock();
+        final IntObjectMap<Task> tasks = new IntObjectMap<>();
+        final IntObjectMap<Epic> epics = new IntObjectMap<>();
+        final IntObjectMap<EpicAggregate> aggregates = new IntObjectMap<>(); // по id эпика
+
+        void lock() {
+            lock.lock();
+        }
+
+        void unlock() {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Сегмент подзадач: блокировка и подзадачи, id которых попадают в него.
+     */
+    private static final class Segment {
+        final ReentrantLock lock = new ReentrantLock();
+        final IntObjectMap<Subtask> subtasks = new IntObjectMap<>();
+
+        void lock() {
+            lock.lock();
+        }
+
+        void unlock() {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Состояние выполняемого пакета.
+     */
+    private static final class Batch {
+        final UndoLog undo = new UndoLog();
+        final int nextIdBefore;
+        // Эпики, статус и время которых пересчитываются в конце пакета
+        final Set<Epic> changedEpics = Collections.newSetFromMap(new IdentityHashMap<>());
+        // Эпики, поля которых уже запомнены в журнале отмены
+        final Set<Epic> savedEpics = Collections.newSetFromMap(new IdentityHashMap<>());
+        // Id, удаляемые из истории просмотров в конце пакета
+        final List<Integer> forgotten = new ArrayList<>();
+
+        Batch(int nextIdBefore) {
+            this.nextIdBefore = nextIdBefore;
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.yandex.app.service;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Журнал операций менеджера задач (write-ahead log).
+ * Каждая операция хранится отдельной строкой и только дописывается в конец файла,
+ * поэтому стоимость записи не зависит от количества задач.
+ * <p>
+ * При компактизации текущий файл журнала переименовывается в сегмент
+ * (имя файла журнала + "." + номер последней записи), а новые записи пишутся в пустой файл.
+ * Сегменты удаляются, когда их записи попали в базовый снимок.
+ * <p>
+ * Запись ведётся через {@link GroupCommitWriter}: записи конкурентных операций
+ * сбрасываются на диск общими пачками.
+ */
+class TaskJournal {
+
+    private final File file;
+    private GroupCommitWriter writer;
+    private long bytes;    // размер текущего файла журнала (с учётом записей в очереди)
+    private long records;  // количество записей в текущем файле журнала (с учётом записей в очереди)
+
+    TaskJournal(File file) {
+        this.file = file;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    long getBytes() {
+        return bytes;
+    }
+
+    long getRecords() {
+        return records;
+    }
+
+    /**
+     * Проверяет, что на диске нет ни текущего файла журнала с записями, ни сегментов.
+     */
+    boolean isEmpty() {
+        return file.length() == 0 && segments().isEmpty();
+    }
+
+    /**
+     * Открывает журнал для дописывания.
+     *
+     * @param window окно группировки записей перед сбросом на диск
+     */
+    void open(Duration window) {
+        writer = new GroupCommitWriter(file, window);
+    }
+
+    /**
+     * Дожидается записи всех поставленных в очередь записей и закрывает журнал.
+     */
+    void close() {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+
+    CommitStats getStats() {
+        return writer == null ? new CommitStats(0, 0, 0, 0, 0) : writer.getStats();
+    }
+
+    /**
+     * Ставит запись в очередь на дописывание в конец журнала.
+     * Порядок записей в файле совпадает с порядком вызовов.
+     *
+     * @param record запись без символа перевода строки
+     * @return фиксация записи, которую нужно дождаться до ответа вызывающему
+     */
+    GroupCommitWriter.Commit append(String record) {
+        byte[] data = (record + "\n").getBytes(StandardCharsets.UTF_8);
+        bytes += data.length;
+        records++;
+        return writer.append(data);
+    }
+
+    /**
+     * Переносит текущие записи в сегмент и начинает журнал заново.
+     * Переименование выполняется после записи всех ранее поставленных записей.
+     *
+     * @param lastSeq номер последней записи в текущем файле журнала
+     * @return фиксация, завершающаяся после переименования
+     */
+    GroupCommitWriter.Commit rotate(long lastSeq) {
+        bytes = 0;
+        records = 0;
+        return writer.submit(() -> {
+            if (file.exists() && file.length() > 0) {
+                Files.move(file.toPath(), segmentFile(lastSeq).toPath(), StandardCopyOption.ATOMIC_MOVE);
+            }
+        });
+    }
+
+    /**
+     * Удаляет сегменты, все записи которых не новее указанного номера.
+     *
+     * @param seq номер последней записи, попавшей в базовый снимок
+     */
+    void deleteSegmentsUpTo(long seq) {
+        for (Map.Entry<Long, File> segment : segments().entrySet()) {
+            if (segment.getKey() <= seq) {
+                segment.getValue().delete();
+            }
+        }
+    }
+
+    /**
+     * Передаёт все записи сегментов и журнала обработчику в порядке их добавления.
+     * Последняя строка без перевода строки считается оборванной при сбое записью:
+     * она пропускается и отрезается, чтобы новые записи не склеились с ней.
+     *
+     * @param consumer обработчик записей
+     */
+    void replay(Consumer<String> consumer) {
+        for (File segment : segments().values()) {
+            replayFile(segment, consumer);
+        }
+        truncateTornTail();
+        records = replayFile(file, consumer);
+        bytes = file.length();
+    }
+
+    /**
+     * Очищает журнал вместе со всеми сегментами.
+     */
+    void clear() {
+        try {
+            for (File segment : segments().values()) {
+                Files.deleteIfExists(segment.toPath());
+            }
+            Files.deleteIfExists(file.toPath());
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка при очистке журнала: " + file.getName(), e);
+        }
+        bytes = 0;
+        records = 0;
+    }
+
+    private File segmentFile(long lastSeq) {
+        return new File(file.getPath() + "." + lastSeq);
+    }
+
+    /**
+     * Возвращает сегменты журнала, упорядоченные по номеру последней записи.
+     */
+    private SortedMap<Long, File> segments() {
+        SortedMap<Long, File> result = new TreeMap<>();
+        File dir = file.getAbsoluteFile().getParentFile();
+        String prefix = file.getName() + ".";
+        File[] candidates = dir.listFiles((d, name) -> name.startsWith(prefix));
+        if (candidates == null) {
+            return result;
+        }
+        for (File candidate : candidates) {
+            try {
+                result.put(Long.parseLong(candidate.getName().substring(prefix.length())), candidate);
+            } catch (NumberFormatException ignored) {
+                // посторонний файл с похожим именем
+            }
+        }
+        return result;
+    }
+
+    private long replayFile(File source, Consumer<String> consumer) {
+        if (!source.exists() || source.length() == 0) {
+            return 0;
+        }
+        long count = 0;
+        try (BufferedReader reader = Files.newBufferedReader(source.toPath(), StandardCharsets.UTF_8)) {
+            long complete = completeLength(source);
+            long read = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                read += line.getBytes(StandardCharsets.UTF_8).length + 1;
+                if (read > complete) {
+                    break; // оборванная запись в конце журнала
+                }
+                if (!line.isBlank()) {
+                    consumer.accept(line);
+                    count++;
+                }
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка при чтении журнала: " + source.getName(), e);
+        }
+        return count;
+    }
+
+    private void truncateTornTail() {
+        if (!file.exists()) {
+            return;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            long complete = completeLength(raf);
+            if (complete < raf.length()) {
+                raf.setLength(complete);
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка при восстановлении журнала: " + file.getName(), e);
+        }
+    }
+
+    private static long completeLength(File source) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(source, "r")) {
+            return completeLength(raf);
+        }
+    }
+
+    /**
+     * Возвращает длину файла до последнего символа перевода строки включительно.
+     */
+    private static long completeLength(RandomAccessFile raf) throws IOException {
+        long pos = raf.length();
+        while (pos > 0) {
+            raf.seek(pos - 1);
+            if (raf.read() == '\n') {
+                return pos;
+            }
+            pos--;
+        }
+        return 0;
+    }
+}
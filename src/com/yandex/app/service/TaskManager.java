@@ -4,6 +4,8 @@ import com.yandex.app.model.Epic;
 import com.yandex.app.model.Subtask;
 import com.yandex.app.model.Task;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -48,9 +50,39 @@ public interface TaskManager {
 
     void deleteAllSubtasks();
 
+    /**
+     * Выполняет операции по порядку как одно изменение: либо все, либо ни одной.
+     * Каждая операция проверяется так же, как одиночный вызов, но с учётом операций,
+     * выполненных перед ней в этом же пакете. Если какая-то операция не проходит проверку,
+     * изменения предыдущих операций отменяются и бросается её исключение.
+     * Реализация может проверять пересечения по времени по итоговому расписанию пакета,
+     * тогда задачи пакета могут, например, поменяться временем.
+     *
+     * @param operations операции в порядке выполнения
+     */
+    void applyBatch(List<Operation> operations);
+
     List<Subtask> getSubtasksOfEpic(int epicId);
 
     List<Task> getHistory();
 
     List<Task> getPrioritizedTasks();
+
+    /**
+     * Возвращает задачи с временем начала в интервале [from, to) в порядке приоритета.
+     *
+     * @param from начало интервала включительно или null — без ограничения
+     * @param to   конец интервала не включительно или null — без ограничения
+     */
+    List<Task> getPrioritizedTasks(LocalDateTime from, LocalDateTime to);
+
+    /**
+     * Ищет самое раннее время начала, не раньше notBefore, в которое задача указанной
+     * длительности не пересекается с уже запланированными.
+     *
+     * @param duration  длительность окна, больше нуля
+     * @param notBefore время, раньше которого окно не ищется
+     * @return время начала окна или пустой Optional, если окна нет
+     */
+    Optional<LocalDateTime> findEarliestFreeSlot(Duration duration, LocalDateTime notBefore);
 }
@@ -0,0 +1,259 @@
+package com.yandex.app.service;
+
+import com.yandex.app.model.EpochMinutes;
+import com.yandex.app.model.Task;
+
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Расписание задач с временем: порядок приоритета, индекс занятых интервалов и карта занятых слотов.
+ * <p>
+ * Три структуры меняются только вместе, поэтому собраны в одном классе: менеджер держит расписание
+ * как единое целое и при многопоточной работе защищает его одной отдельной блокировкой,
+ * не связанной с блокировками хранилищ и эпиков.
+ * В расписание попадают задачи и подзадачи; эпики в нём не участвуют.
+ */
+final class TaskSchedule {
+
+    // Порядок приоритета: по времени начала, при равенстве — по id. Сравниваются минуты без создания объектов
+    static final Comparator<Task> PRIORITY_ORDER = (a, b) -> {
+        int byStart = Long.compare(priorityKey(a), priorityKey(b));
+        return byStart != 0 ? byStart : Integer.compare(a.getId(), b.getId());
+    };
+
+    /**
+     * Задачи в порядке приоритета (по времени начала).
+     * Задачи без startTime не включаются в это множество.
+     * Дерево неизменяемое: каждое изменение даёт новую версию, а прежние можно читать без блокировок.
+     */
+    private PersistentTree<Task> prioritizedTasks = PersistentTree.empty(PRIORITY_ORDER);
+
+    /**
+     * Занятые интервалы задач и подзадач с временем начала и длительностью.
+     * Используется для проверки пересечений за O(log n).
+     */
+    private final IntervalIndex busyIntervals = new IntervalIndex();
+
+    private final TimeSlotBitmap timeSlots = new TimeSlotBitmap(); // занятые 15-минутные слоты
+
+    // Задачи без времени начала идут после всех остальных
+    static long priorityKey(Task task) {
+        return task.getStartMinute() == Task.NO_TIME ? Long.MAX_VALUE : task.getStartMinute();
+    }
+
+    /**
+     * Проверяет пересечение задачи с уже занятыми интервалами.
+     * Перед проверкой обновляемой задачи её прежняя версия удаляется из расписания,
+     * поэтому сама с собой задача не сравнивается.
+     */
+    boolean overlaps(Task task) {
+        long end = task.getEndMinute();
+        return end != Task.NO_TIME && busyIntervals.overlaps(task.getStartMinute(), end);
+    }
+
+    /**
+     * Вносит задачу в расписание. Пересечения должны быть проверены заранее,
+     * а id задачи — уже назначен: он участвует в порядке приоритета.
+     */
+    void add(Task task) {
+        occupySlots(task);
+        if (task.getStartMinute() != Task.NO_TIME) {
+            prioritizedTasks = prioritizedTasks.with(task);
+        }
+    }
+
+    /**
+     * Удаляет из расписания ту же версию задачи, что была внесена.
+     */
+    void remove(Task task) {
+        prioritizedTasks = prioritizedTasks.without(task);
+        releaseSlots(task);
+    }
+
+    /**
+     * Заполняет пустое расписание загруженными задачами. Пересечения проверяются
+     * одним проходом по отсортированному списку вместо проверки каждой задачи по индексу.
+     *
+     * @param tasks задачи в произвольном порядке
+     * @throws IllegalArgumentException если задачи пересекаются по времени
+     */
+    void addAll(List<? extends Task> tasks) {
+        List<Task> timed = new ArrayList<>();
+        for (Task task : tasks) {
+            if (task.getStartMinute() != Task.NO_TIME) timed.add(task);
+        }
+        timed.sort(PRIORITY_ORDER);
+        checkNoOverlaps(timed);
+
+        if (prioritizedTasks.isEmpty()) {
+            prioritizedTasks = PersistentTree.of(PRIORITY_ORDER, timed);
+        } else {
+            for (Task task : timed) {
+                prioritizedTasks = prioritizedTasks.with(task);
+            }
+        }
+        timed.forEach(this::occupySlots);
+    }
+
+    /**
+     * Возвращает текущую версию порядка приоритета. Последующие изменения её не затрагивают.
+     */
+    PersistentTree<Task> prioritizedTree() {
+        return prioritizedTasks;
+    }
+
+    /**
+     * Возвращает задачи в порядке приоритета в виде неизменяемого списка без копирования.
+     */
+    List<Task> prioritized() {
+        return prioritizedTasks.asList();
+    }
+
+    /**
+     * Возвращает задачи с временем начала в интервале [from, to) в порядке приоритета.
+     *
+     * @see #window(PersistentTree, LocalDateTime, LocalDateTime)
+     */
+    List<Task> prioritized(LocalDateTime from, LocalDateTime to) {
+        return window(prioritizedTasks, from, to);
+    }
+
+    /**
+     * Возвращает задачи версии порядка приоритета с временем начала в интервале [from, to).
+     * Границы находятся двумя спусками по дереву, а результат — представление без копирования,
+     * поэтому стоимость O(log n) и не зависит ни от общего числа задач, ни от числа задач в интервале.
+     * Время задач хранится с точностью до минуты, поэтому границы округляются вверх.
+     *
+     * @param from начало интервала включительно или null — без ограничения
+     * @param to   конец интервала не включительно или null — без ограничения
+     * @throws IllegalArgumentException если from позже to
+     */
+    static List<Task> window(PersistentTree<Task> tree, LocalDateTime from, LocalDateTime to) {
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new IllegalArgumentException("Начало интервала позже конца: " + from + " > " + to);
+        }
+        int lower = from == null ? 0 : startingBefore(tree, EpochMinutes.ceil(from));
+        int upper = to == null ? tree.size() : startingBefore(tree, EpochMinutes.ceil(to));
+        return tree.asList(lower, upper);
+    }
+
+    // Количество задач, начинающихся раньше минуты
+    private static int startingBefore(PersistentTree<Task> tree, long minute) {
+        return tree.rank(task -> priorityKey(task) < minute ? 1 : -1);
+    }
+
+    /**
+     * Ищет самое раннее свободное окно указанной длительности.
+     * Кандидат проверяется по индексу интервалов; если окно занято, кандидат переносится
+     * на конец мешающей задачи. Задачи начинаются и заканчиваются на границах минут, поэтому
+     * окно [c, c + d) пересекается с задачей тогда же, когда [floor(c), ceil(c + d)) в минутах. Занятые участки пропускаются целиком по дереву свободных
+     * 15-минутных слотов: окно длительностью d содержит не меньше d / 15 - 1 целых свободных слотов,
+     * поэтому оно не может начаться раньше, чем за слот до первого такого отрезка.
+     *
+     * @throws IllegalArgumentException если длительность не больше нуля
+     */
+    Optional<LocalDateTime> findEarliestFreeSlot(Duration duration, LocalDateTime notBefore) {
+        Objects.requireNonNull(duration, "duration не может быть null");
+        Objects.requireNonNull(notBefore, "notBefore не может быть null");
+        if (duration.isNegative() || duration.isZero()) {
+            throw new IllegalArgumentException("Длительность окна должна быть больше нуля: " + duration);
+        }
+        long wholeSlots = duration.getSeconds() / TimeSlotBitmap.SLOT_SECONDS - 1;
+        LocalDateTime candidate = notBefore;
+        try {
+            while (true) {
+                long end = EpochMinutes.ceil(candidate.plus(duration));
+                if (!busyIntervals.overlaps(EpochMinutes.of(candidate), end)) {
+                    return Optional.of(candidate);
+                }
+                long next = busyIntervals.latestEndBefore(end); // конец задачи, мешающей окну
+                if (wholeSlots > 0) {
+                    long slot = timeSlots.findFree(TimeSlotBitmap.slotAfterMinute(next), wholeSlots);
+                    if (slot == TimeSlotBitmap.NONE) {
+                        return Optional.empty();
+                    }
+                    next = Math.max(next, (slot - 1) * TimeSlotBitmap.SLOT_MINUTES);
+                }
+                candidate = EpochMinutes.toDateTime(next);
+            }
+        } catch (DateTimeException e) {
+            return Optional.empty(); // окно выходит за пределы LocalDateTime
+        }
+    }
+
+    /**
+     * Проверяет за один проход, что задачи, отсортированные по времени начала, не пересекаются.
+     */
+    private static void checkNoOverlaps(List<Task> sorted) {
+        long maxEnd = Long.MIN_VALUE;       // самый поздний конец среди просмотренных задач
+        long maxEndBefore = Long.MIN_VALUE; // то же, но среди задач, начавшихся раньше текущей
+        long groupStart = Task.NO_TIME;
+        for (Task task : sorted) {
+            long end = task.getEndMinute();
+            if (end == Task.NO_TIME) continue;
+            long start = task.getStartMinute();
+            if (start != groupStart) {
+                maxEndBefore = maxEnd;
+                groupStart = start;
+            }
+            // Непустой интервал пересекается с любой более ранней задачей, закончившейся позже его начала;
+            // пустой — только с задачей, начавшейся строго раньше и закончившейся строго позже
+            boolean overlaps = start < end
+                    ? start < maxEnd
+                    : start < maxEndBefore;
+            if (overlaps) {
+                throw new IllegalArgumentException("Задача пересекается по времени: " + task.getTitle());
+            }
+            if (end > maxEnd) maxEnd = end;
+        }
+    }
+
+    /**
+     * Помечает интервалы задачи как занятые.
+     */
+    private void occupySlots(Task task) {
+        long end = task.getEndMinute();
+        if (end == Task.NO_TIME) {
+            return;
+        }
+
+        long start = task.getStartMinute();
+        timeSlots.set(TimeSlotBitmap.slotOfMinute(start), TimeSlotBitmap.slotAfterMinute(end));
+        busyIntervals.add(start, end);
+    }
+
+    /**
+     * Освобождает интервалы задачи.
+     */
+    private void releaseSlots(Task task) {
+        long end = task.getEndMinute();
+        if (end == Task.NO_TIME) return;
+
+        long start = task.getStartMinute();
+        busyIntervals.remove(start, end);
+        long from = TimeSlotBitmap.slotOfMinute(start);
+        long to = TimeSlotBitmap.slotAfterMinute(end);
+        timeSlots.clear(from, to);
+        // Крайние слоты могут быть заняты и соседними задачами
+        if (from < to) {
+            refillSlot(from);
+            refillSlot(to - 1);
+        }
+    }
+
+    /**
+     * Снова отмечает слот занятым, если его время пересекается с какой-либо задачей.
+     */
+    private void refillSlot(long slot) {
+        if (busyIntervals.overlaps(slot * TimeSlotBitmap.SLOT_MINUTES, (slot + 1) * TimeSlotBitmap.SLOT_MINUTES)) {
+            timeSlots.set(slot, slot + 1);
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package com.yandex.app.service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Битовая карта занятых 15-минутных слотов без ограничения горизонта планирования.
+ * Слот с номером n покрывает время [n * 15 минут, (n + 1) * 15 минут) от 1970-01-01T00:00.
+ * <p>
+ * Карта разбита на недельные сегменты по {@value #SEGMENT_SLOTS} слотов. Сегменты лежат в листьях
+ * разреженного дерева отрезков по номерам недель: лист создаётся при первой отметке в его неделе
+ * и удаляется вместе с опустевшими предками, когда в нём не остаётся занятых слотов, а отсутствующее
+ * поддерево означает свободное время. Поэтому память пропорциональна числу недель с задачами,
+ * а не охвату плана, и ход времени не требует перестройки карты.
+ * <p>
+ * Каждый узел хранит длину свободного начала, свободного конца и самого длинного свободного отрезка,
+ * что позволяет найти первый свободный отрезок нужной длины за O(log n) ({@link #findFree(long, long)}).
+ * Операции над диапазонами внутри сегмента работают целыми словами по 64 слота.
+ */
+final class TimeSlotBitmap {
+
+    static final long SLOT_MINUTES = 15;
+    static final long SLOT_SECONDS = SLOT_MINUTES * 60;
+    static final int SEGMENT_SLOTS = 7 * 24 * 4; // неделя
+    static final long NONE = Long.MIN_VALUE;     // свободный отрезок не найден
+
+    private static final int SEGMENT_WORDS = (SEGMENT_SLOTS + 63) / 64;
+    // Номера недель [-2^36, 2^36) покрывают весь диапазон LocalDateTime
+    private static final long FIRST_WEEK = -(1L << 36);
+    private static final long LAST_WEEK = 1L << 36;
+
+    /**
+     * Узел дерева: неделя (лист со словами) или отрезок недель. Длины — в слотах.
+     */
+    private static final class Node {
+        Node left;
+        Node right;
+        long[] words;  // только у листа
+        long prefix;   // свободные слоты от начала отрезка
+        long suffix;   // свободные слоты до конца отрезка
+        long longest;  // самый длинный свободный отрезок
+    }
+
+    private Node root;
+    private int segments; // количество недель с занятыми слотами
+
+    /**
+     * Возвращает номер слота, в который попадает момент времени.
+     */
+    static long slotOf(LocalDateTime time) {
+        return Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), SLOT_SECONDS);
+    }
+
+    /**
+     * Возвращает номер первого слота, целиком лежащего не раньше момента времени.
+     * Интервал [start, end) занимает слоты [slotOf(start), slotAfter(end)).
+     */
+    static long slotAfter(LocalDateTime time) {
+        long seconds = time.toEpochSecond(ZoneOffset.UTC);
+        long slot = Math.floorDiv(seconds, SLOT_SECONDS);
+        return Math.floorMod(seconds, SLOT_SECONDS) == 0 && time.getNano() == 0 ? slot : slot + 1;
+    }
+
+    /**
+     * Возвращает номер слота, в который попадает минута от начала эпохи.
+     */
+    static long slotOfMinute(long minute) {
+        return Math.floorDiv(minute, SLOT_MINUTES);
+    }
+
+    /**
+     * Возвращает номер первого слота, начинающегося не раньше минуты от начала эпохи.
+     */
+    static long slotAfterMinute(long minute) {
+        return -Math.floorDiv(-minute, SLOT_MINUTES);
+    }
+
+    /**
+     * Возвращает время начала слота.
+     */
+    static LocalDateTime startOf(long slot) {
+        return LocalDateTime.ofEpochSecond(slot * SLOT_SECONDS, 0, ZoneOffset.UTC);
+    }
+
+    /**
+     * Отмечает слоты [from, to) как занятые.
+     */
+    void set(long from, long to) {
+        if (from < to) {
+            root = set(root, FIRST_WEEK, LAST_WEEK, from, to);
+        }
+    }
+
+    /**
+     * Отмечает слоты [from, to) как свободные. Опустевшие сегменты удаляются.
+     */
+    void clear(long from, long to) {
+        if (from < to) {
+            root = clear(root, FIRST_WEEK, LAST_WEEK, from, to);
+        }
+    }
+
+    /**
+     * Проверяет, есть ли среди слотов [from, to) хотя бы один занятый.
+     */
+    boolean anySet(long from, long to) {
+        return from < to && anySet(root, FIRST_WEEK, LAST_WEEK, from, to);
+    }
+
+    /**
+     * Проверяет, занят ли слот.
+     */
+    boolean get(long slot) {
+        return anySet(slot, slot + 1);
+    }
+
+    /**
+     * Возвращает количество хранимых недельных сегментов.
+     */
+    int segmentCount() {
+        return segments;
+    }
+
+    /**
+     * Ищет первый отрезок из length свободных слотов, начинающийся не раньше слота from.
+     *
+     * @return номер первого слота отрезка или {@link #NONE}
+     */
+    long findFree(long from, long length) {
+        if (length <= 0) {
+            return from;
+        }
+        long[] run = {0}; // свободные слоты, накопленные перед текущим узлом
+        return find(root, FIRST_WEEK, LAST_WEEK, from, length, run);
+    }
+
+    private Node set(Node node, long lo, long hi, long from, long to) {
+        if (node == null) {
+            node = new Node();
+        }
+        if (hi - lo == 1) {
+            if (node.words == null) {
+                node.words = new long[SEGMENT_WORDS];
+                segments++;
+            }
+            long base = lo * SEGMENT_SLOTS;
+            int first = (int) (Math.max(from, base) - base);
+            int last = (int) (Math.min(to, base + SEGMENT_SLOTS) - base) - 1;
+            for (int w = first >> 6; w <= last >> 6; w++) {
+                node.words[w] |= mask(w, first, last);
+            }
+            summarizeLeaf(node);
+            return node;
+        }
+        long mid = lo + (hi - lo) / 2;
+        if (from < mid * SEGMENT_SLOTS) {
+            node.left = set(node.left, lo, mid, from, to);
+        }
+        if (to > mid * SEGMENT_SLOTS) {
+            node.right = set(node.right, mid, hi, from, to);
+        }
+        summarize(node, mid - lo, hi - mid);
+        return node;
+    }
+
+    private Node clear(Node node, long lo, long hi, long from, long to) {
+        if (node == null) {
+            return null;
+        }
+        if (hi - lo == 1) {
+            long base = lo * SEGMENT_SLOTS;
+            int first = (int) (Math.max(from, base) - base);
+            int last = (int) (Math.min(to, base + SEGMENT_SLOTS) - base) - 1;
+            for (int w = first >> 6; w <= last >> 6; w++) {
+                node.words[w] &= ~mask(w, first, last);
+            }
+            summarizeLeaf(node);
+            if (node.prefix == SEGMENT_SLOTS) {
+                segments--;
+                return null;
+            }
+            return node;
+        }
+        long mid = lo + (hi - lo) / 2;
+        if (from < mid * SEGMENT_SLOTS) {
+            node.left = clear(node.left, lo, mid, from, to);
+        }
+        if (to > mid * SEGMENT_SLOTS) {
+            node.right = clear(node.right, mid, hi, from, to);
+        }
+        if (node.left == null && node.right == null) {
+            return null;
+        }
+        summarize(node, mid - lo, hi - mid);
+        return node;
+    }
+
+    private boolean anySet(Node node, long lo, long hi, long from, long to) {
+        if (node == null) {
+            return false;
+        }
+        if (hi - lo == 1) {
+            long base = lo * SEGMENT_SLOTS;
+            int first = (int) (Math.max(from, base) - base);
+            int last = (int) (Math.min(to, base + SEGMENT_SLOTS) - base) - 1;
+            for (int w = first >> 6; w <= last >> 6; w++) {
+                if ((node.words[w] & mask(w, first, last)) != 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        long mid = lo + (hi - lo) / 2;
+        return (from < mid * SEGMENT_SLOTS && anySet(node.left, lo, mid, from, to))
+                || (to > mid * SEGMENT_SLOTS && anySet(node.right, mid, hi, from, to));
+    }
+
+    /**
+     * Обходит узлы слева направо начиная со слота from. Узел, целиком лежащий после from,
+     * пропускается по сводке, если в нём нет нужного отрезка; иначе ответ находится спуском в него.
+     */
+    private long find(Node node, long lo, long hi, long from, long length, long[] run) {
+        long base = lo * SEGMENT_SLOTS;
+        long size = (hi - lo) * SEGMENT_SLOTS;
+        if (base + size <= from) {
+            return NONE;
+        }
+        if (base >= from) {
+            long prefix = node == null ? size : node.prefix;
+            if (run[0] + prefix >= length) {
+                return base - run[0];
+            }
+            if (node == null || node.longest < length) {
+                run[0] = prefix == size ? run[0] + size : node.suffix;
+                return NONE;
+            }
+        } else if (node == null) {
+            // Свободный отрезок, в который попадает from: до него накопленных слотов нет
+            if (base + size - from >= length) {
+                return from;
+            }
+            run[0] = base + size - from;
+            return NONE;
+        }
+        if (hi - lo == 1) {
+            return scanSegment(node.words, base, Math.max(from, base), length, run);
+        }
+        long mid = lo + (hi - lo) / 2;
+        long found = find(node.left, lo, mid, from, length, run);
+        return found != NONE ? found : find(node.right, mid, hi, from, length, run);
+    }
+
+    /**
+     * Ищет отрезок внутри недели, начиная со слота start, с учётом свободных слотов перед ним.
+     */
+    private static long scanSegment(long[] words, long base, long start, long length, long[] run) {
+        int i = (int) (start - base);
+        while (i < SEGMENT_SLOTS) {
+            int busy = next(words, i, false);
+            if (run[0] + busy - i >= length) {
+                return base + i - run[0];
+            }
+            if (busy == SEGMENT_SLOTS) {
+                run[0] += SEGMENT_SLOTS - i;
+                return NONE;
+            }
+            run[0] = 0;
+            i = next(words, busy, true);
+        }
+        return NONE;
+    }
+
+    /**
+     * Возвращает первый слот сегмента не раньше from, который свободен (free) или занят (!free),
+     * либо {@link #SEGMENT_SLOTS}, если такого нет.
+     */
+    private static int next(long[] words, int from, boolean free) {
+        if (from >= SEGMENT_SLOTS) {
+            return SEGMENT_SLOTS;
+        }
+        int w = from >> 6;
+        long bits = (free ? ~words[w] : words[w]) & (-1L << from);
+        while (bits == 0) {
+            if (++w == SEGMENT_WORDS) {
+                return SEGMENT_SLOTS;
+            }
+            bits = free ? ~words[w] : words[w];
+        }
+        return Math.min((w << 6) + Long.numberOfTrailingZeros(bits), SEGMENT_SLOTS);
+    }
+
+    private static void summarizeLeaf(Node leaf) {
+        long[] words = leaf.words;
+        int prefix = next(words, 0, false);
+        long longest = prefix;
+        long suffix = prefix;
+        int i = prefix;
+        while (i < SEGMENT_SLOTS) {
+            int free = next(words, i, true);
+            int busy = next(words, free, false);
+            suffix = busy - free;
+            longest = Math.max(longest, suffix);
+            i = busy;
+        }
+        leaf.prefix = prefix;
+        leaf.suffix = suffix;
+        leaf.longest = longest;
+    }
+
+    private static void summarize(Node node, long leftWeeks, long rightWeeks) {
+        long leftSize = leftWeeks * SEGMENT_SLOTS;
+        long rightSize = rightWeeks * SEGMENT_SLOTS;
+        long leftPrefix = node.left == null ? leftSize : node.left.prefix;
+        long leftSuffix = node.left == null ? leftSize : node.left.suffix;
+        long leftLongest = node.left == null ? leftSize : node.left.longest;
+        long rightPrefix = node.right == null ? rightSize : node.right.prefix;
+        long rightSuffix = node.right == null ? rightSize : node.right.suffix;
+        long rightLongest = node.right == null ? rightSize : node.right.longest;
+        node.prefix = leftPrefix == leftSize ? leftSize + rightPrefix : leftPrefix;
+        node.suffix = rightSuffix == rightSize ? rightSize + leftSuffix : rightSuffix;
+        node.longest = Math.max(Math.max(leftLongest, rightLongest), leftSuffix + rightPrefix);
+    }
+
+    /**
+     * Маска слотов [first, last] сегмента внутри его слова w.
+     */
+    private static long mask(int w, int first, int last) {
+        long mask = -1L;
+        if (w == first >> 6) mask &= -1L << first; // сдвиг long учитывает только младшие 6 бит
+        if (w == last >> 6) mask &= -1L >>> (63 - (last & 63));
+        return mask;
+    }
+}
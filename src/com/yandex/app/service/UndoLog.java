@@ -0,0 +1,33 @@
+package com.yandex.app.service;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Журнал отмены изменений.
+ * <p>
+ * Каждое изменение структуры записывает обратное ему действие. При откате действия
+ * выполняются в обратном порядке, поэтому каждое из них видит структуры такими, какими они были
+ * сразу после своего изменения, и стоимость отката пропорциональна числу изменений,
+ * а не размеру структур. Не потокобезопасен.
+ */
+final class UndoLog {
+
+    private final Deque<Runnable> actions = new ArrayDeque<>();
+
+    /**
+     * Запоминает действие, отменяющее только что сделанное изменение.
+     */
+    void record(Runnable undo) {
+        actions.push(undo);
+    }
+
+    /**
+     * Отменяет все записанные изменения, начиная с последнего, и очищает журнал.
+     */
+    void rollback() {
+        while (!actions.isEmpty()) {
+            actions.pop().run();
+        }
+    }
+}
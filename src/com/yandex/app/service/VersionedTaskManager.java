@@ -0,0 +1,15 @@
+package com.yandex.app.service;
+
+/**
+ * Менеджер задач, публикующий неизменяемые версии своего состояния.
+ * Списки задач, эпиков, подзадач и порядок приоритета такого менеджера читаются
+ * из последней опубликованной версии и безопасны при параллельных изменениях без блокировок.
+ */
+public interface VersionedTaskManager extends TaskManager {
+
+    /**
+     * Возвращает последнюю опубликованную версию состояния.
+     * Несколько чтений из одной версии согласованы между собой.
+     */
+    ManagerState getState();
+}
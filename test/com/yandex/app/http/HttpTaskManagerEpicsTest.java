@@ -1,5 +1,7 @@
 package com.yandex.app.http;
 
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import com.yandex.app.model.Epic;
 import com.yandex.app.model.Subtask;
 import com.yandex.app.model.TaskStatus;
@@ -14,6 +16,7 @@ import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -132,4 +135,27 @@ public class HttpTaskManagerEpicsTest {
         assertTrue(manager.getAllEpics().isEmpty());
         assertTrue(manager.getAllSubtasks().isEmpty());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testEpicSubtaskIdsAsJsonArray() throws IOException, InterruptedException {
+        Epic epic = new Epic("EpicJson", "");
+        manager.addEpic(epic);
+        Subtask s1 = new Subtask("s1", "d", TaskStatus.NEW, epic.getId());
+        Subtask s2 = new Subtask("s2", "d", TaskStatus.NEW, epic.getId());
+        manager.addSubtask(s1);
+        manager.addSubtask(s2);
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/epics/" + epic.getId()))
+                .GET()
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode());
+        JsonObject json = JsonParser.parseString(response.body()).getAsJsonObject();
+        assertEquals("[" + s1.getId() + "," + s2.getId() + "]", json.get("subtaskIds").toString());
+
+        Epic fromResp = HttpTaskServer.getGson().fromJson(response.body(), Epic.class);
+        assertEquals(List.of(s1.getId(), s2.getId()), fromResp.getSubtaskIds());
+        Epic withoutIds = HttpTaskServer.getGson().fromJson("{\"title\":\"t\",\"description\":\"d\"}", Epic.class);
+        assertTrue(withoutIds.getSubtaskIds().isEmpty(), "Отсутствующий subtaskIds читается как пустое множество");
+    }
+}
@@ -0,0 +1,79 @@
+package com.yandex.app.http;
+
+import com.yandex.app.model.Task;
+import com.yandex.app.model.TaskStatus;
+import com.yandex.app.service.InMemoryTaskManager;
+import com.yandex.app.service.TaskManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты для эндпоинта /free-slot.
+ * Используется InMemoryTaskManager для изоляции от файловой системы.
+ */
+public class HttpTaskManagerFreeSlotTest {
+    private TaskManager manager;
+    private HttpTaskServer server;
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        manager = new InMemoryTaskManager();
+        server = new HttpTaskServer(manager);
+        server.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop();
+    }
+
+    private HttpResponse<String> get(String query) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/free-slot" + query))
+                .GET()
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * Проверяет, что возвращается начало первого окна после занятой задачи.
+     */
+    @Test
+    public void testFindFreeSlotAfterTask() throws IOException, InterruptedException {
+        LocalDateTime start = LocalDateTime.of(2025, 11, 1, 10, 0);
+        Task task = new Task("Задача", "", TaskStatus.NEW);
+        task.setStartTime(start);
+        task.setDuration(Duration.ofMinutes(60));
+        manager.addTask(task);
+
+        HttpResponse<String> response = get("?duration=30&notBefore=2025-11-01T10:15:00");
+        assertEquals(200, response.statusCode(), "При найденном окне должен возвращаться 200");
+        LocalDateTime found = HttpTaskServer.getGson().fromJson(response.body(), LocalDateTime.class);
+        assertEquals(start.plusHours(1), found, "Окно должно начинаться после окончания задачи");
+    }
+
+    /**
+     * Проверяет, что без длительности или с неверными параметрами возвращается 400.
+     */
+    @Test
+    public void testBadParameters() throws IOException, InterruptedException {
+        assertEquals(400, get("").statusCode(), "Без длительности должен возвращаться 400");
+        assertEquals(400, get("?duration=abc").statusCode());
+        assertEquals(400, get("?duration=30&notBefore=завтра").statusCode());
+        assertEquals(400, get("?duration=0").statusCode());
+        assertEquals(400, get("?duration=" + Long.MAX_VALUE).statusCode(),
+                "Длительность, не помещающаяся в Duration, должна давать 400");
+    }
+}
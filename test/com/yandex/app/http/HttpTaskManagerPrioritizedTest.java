@@ -99,4 +99,35 @@ public class HttpTaskManagerPrioritizedTest {
         assertEquals(middle.getId(), tasks[1].getId(), "Вторая задача должна иметь время между первой и последней");
         assertEquals(last.getId(), tasks[2].getId(), "Последняя задача должна быть самой поздней");
     }
-}
\ No newline at end of file
+
+    /**
+     * Проверяет, что параметры from и to ограничивают время начала задач,
+     * а неверное значение параметра даёт 400.
+     */
+    @Test
+    public void testPrioritizedWindow() throws IOException, InterruptedException {
+        LocalDateTime day = LocalDateTime.of(2025, 11, 1, 0, 0);
+        for (int hour : new int[]{-3, 9, 30}) {
+            Task task = new Task("Задача " + hour, "", TaskStatus.NEW);
+            task.setStartTime(day.plusHours(hour));
+            task.setDuration(Duration.ofMinutes(30));
+            manager.addTask(task);
+        }
+
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/prioritized?from=2025-11-01T00:00&to=2025-11-02T00:00"))
+                .GET()
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode());
+        Task[] tasks = HttpTaskServer.getGson().fromJson(response.body(), Task[].class);
+        assertEquals(1, tasks.length, "В интервал попадает только задача этого дня");
+        assertEquals(day.plusHours(9), tasks[0].getStartTime().orElseThrow());
+
+        HttpRequest bad = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/prioritized?from=today"))
+                .GET()
+                .build();
+        assertEquals(400, client.send(bad, HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+}
@@ -1,5 +1,7 @@
 package com.yandex.app.http;
 
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import com.yandex.app.model.Task;
 import com.yandex.app.model.TaskStatus;
 import com.yandex.app.service.InMemoryTaskManager;
@@ -13,6 +15,8 @@ import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDateTime;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -131,4 +135,25 @@ public class HttpTaskManagerTasksTest {
         HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
         assertEquals(404, response.statusCode(), "Должен возвращаться 404 для несуществующей задачи");
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testTaskTimeFieldsInJson() throws IOException, InterruptedException {
+        Task task = new Task(0, "Timed", "d", TaskStatus.IN_PROGRESS,
+                Duration.ofMinutes(45), LocalDateTime.of(2025, 3, 1, 9, 30));
+        manager.addTask(task);
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/tasks/" + task.getId()))
+                .GET()
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode());
+        JsonObject json = JsonParser.parseString(response.body()).getAsJsonObject();
+        assertEquals(45, json.get("duration").getAsInt());
+        assertEquals("2025-03-01T09:30:00", json.get("startTime").getAsString());
+        assertEquals("IN_PROGRESS", json.get("status").getAsString());
+
+        Task fromResponse = HttpTaskServer.getGson().fromJson(response.body(), Task.class);
+        assertEquals(task.getStartTime(), fromResponse.getStartTime());
+        assertEquals(task.getEndTime(), fromResponse.getEndTime());
+    }
+}
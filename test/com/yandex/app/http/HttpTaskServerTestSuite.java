@@ -13,7 +13,8 @@ import org.junit.platform.suite.api.Suite;
         HttpTaskManagerSubtasksTest.class,
         HttpTaskManagerEpicsTest.class,
         HttpTaskManagerHistoryTest.class,
-        HttpTaskManagerPrioritizedTest.class
+        HttpTaskManagerPrioritizedTest.class,
+        HttpTaskManagerFreeSlotTest.class
 })
 public class HttpTaskServerTestSuite {
     // Аннотации делают всю работу.
@@ -0,0 +1,55 @@
+package com.yandex.app.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SubtaskIdSetTest {
+
+    @Test
+    void shouldAgreeWithLinkedHashSet() {
+        SubtaskIdSet ids = new SubtaskIdSet();
+        LinkedHashSet<Integer> expected = new LinkedHashSet<>();
+        Random random = new Random(5);
+
+        for (int i = 0; i < 20_000; i++) {
+            int id = random.nextInt(500) - 20;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(id), ids.remove(id), "Удаление " + id);
+            } else {
+                assertEquals(expected.add(id), ids.add(id), "Добавление " + id);
+            }
+            assertEquals(expected.size(), ids.size());
+            assertEquals(expected.contains(i % 500), ids.contains(i % 500));
+            if (i % 1_000 == 0) {
+                assertEquals(new ArrayList<>(expected), ids.toList(), "Порядок добавления на шаге " + i);
+            }
+        }
+        List<Integer> visited = new ArrayList<>();
+        ids.forEach(visited::add);
+        assertEquals(new ArrayList<>(expected), visited);
+        assertArrayEquals(expected.stream().mapToInt(Integer::intValue).toArray(), ids.toArray());
+    }
+
+    @Test
+    void shouldCopyIndependently() {
+        SubtaskIdSet ids = new SubtaskIdSet();
+        ids.add(1);
+        ids.add(2);
+        SubtaskIdSet copy = new SubtaskIdSet(ids);
+        ids.remove(1);
+        copy.add(3);
+
+        assertEquals(List.of(2), ids.toList());
+        assertEquals(List.of(1, 2, 3), copy.toList());
+        ids.clear();
+        assertTrue(ids.isEmpty());
+        assertFalse(ids.contains(2));
+        assertThrows(IllegalArgumentException.class, () -> ids.add(Integer.MIN_VALUE));
+    }
+}
@@ -0,0 +1,63 @@
+package com.yandex.app.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TaskTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 5, 20, 14, 15);
+
+    @Test
+    void shouldKeepTimeInEpochMinutes() {
+        Task task = new Task(1, "Задача", "Описание", TaskStatus.NEW, Duration.ofMinutes(90), START.plusSeconds(42));
+
+        assertEquals(EpochMinutes.of(START), task.getStartMinute());
+        assertEquals(90, task.getDurationMinutes());
+        assertEquals(EpochMinutes.of(START) + 90, task.getEndMinute());
+        assertEquals(Optional.of(START), task.getStartTime(), "Секунды отбрасываются");
+        assertEquals(Optional.of(START.plusMinutes(90)), task.getEndTime());
+        assertEquals(Optional.of(Duration.ofMinutes(90)), task.getDuration());
+    }
+
+    @Test
+    void shouldUseSentinelsForAbsentTime() {
+        Task task = new Task("Задача", "Описание", TaskStatus.NEW);
+        assertEquals(Task.NO_TIME, task.getStartMinute());
+        assertEquals(Task.NO_DURATION, task.getDurationMinutes());
+        assertEquals(Task.NO_TIME, task.getEndMinute());
+        assertTrue(task.getStartTime().isEmpty() && task.getDuration().isEmpty() && task.getEndTime().isEmpty());
+
+        task.setStartTime(START);
+        assertEquals(Task.NO_TIME, task.getEndMinute(), "Без длительности окончание не определено");
+        task.setDuration(Duration.ZERO);
+        assertEquals(task.getStartMinute(), task.getEndMinute());
+        task.setStartTime(null);
+        assertTrue(task.getStartTime().isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> task.setDuration(Duration.ofDays(3_000_000)));
+    }
+
+    @Test
+    void shouldComputeEpicTimeFromSubtasks() {
+        Epic epic = new Epic("Эпик", "Описание");
+        epic.updateEpicTime(List.of(
+                new Subtask(2, "Первая", "", TaskStatus.NEW, Duration.ofMinutes(30), START, 1),
+                new Subtask(3, "Вторая", "", TaskStatus.NEW, Duration.ofMinutes(15), START.plusHours(2), 1),
+                new Subtask(4, "Без времени", "", TaskStatus.NEW, null, null, 1)));
+
+        assertEquals(Optional.of(Duration.ofMinutes(45)), epic.getDuration());
+        assertEquals(Optional.of(START), epic.getStartTime());
+        assertEquals(Optional.of(START.plusMinutes(135)), epic.getEndTime());
+
+        Epic copy = new Epic(epic);
+        assertEquals(epic.getEndMinute(), copy.getEndMinute());
+        epic.updateEpicTime(List.of());
+        assertEquals(Optional.of(Duration.ZERO), epic.getDuration());
+        assertTrue(epic.getStartTime().isEmpty() && epic.getEndTime().isEmpty());
+    }
+}
@@ -0,0 +1,106 @@
+package com.yandex.app.service;
+
+import com.yandex.app.model.Epic;
+import com.yandex.app.model.Subtask;
+import com.yandex.app.model.Task;
+import com.yandex.app.model.TaskStatus;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentTaskManagerTest extends TaskManagerTest<ConcurrentTaskManager> {
+
+    @Override
+    protected ConcurrentTaskManager createManager() {
+        return new ConcurrentTaskManager(new InMemoryTaskManager());
+    }
+
+    @Test
+    void shouldAssignUniqueIdsAndKeepIndexesConsistentUnderConcurrentWrites() throws InterruptedException {
+        Epic epic = new Epic("Эпик", "Описание");
+        manager.addEpic(epic);
+        LocalDateTime base = LocalDateTime.of(2025, 6, 1, 0, 0);
+        List<Throwable> errors = new CopyOnWriteArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+
+        for (int i = 0; i < 400; i++) {
+            int n = i;
+            pool.execute(() -> {
+                try {
+                    Subtask subtask = new Subtask(0, "Подзадача " + n, "", TaskStatus.DONE,
+                            Duration.ofMinutes(30), base.plusHours(n), epic.getId());
+                    manager.addSubtask(subtask);
+                    // чтения идут вперемешку с записями и не должны падать
+                    manager.getPrioritizedTasks();
+                    manager.getSubtasksOfEpic(epic.getId());
+                    manager.getAllEpics();
+                    manager.findEarliestFreeSlot(Duration.ofMinutes(45), base);
+                } catch (Throwable e) {
+                    errors.add(e);
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertTrue(errors.isEmpty(), "Ошибки при параллельной работе: " + errors);
+        List<Subtask> subtasks = manager.getAllSubtasks();
+        Set<Integer> ids = new HashSet<>();
+        subtasks.forEach(s -> ids.add(s.getId()));
+        assertEquals(400, ids.size(), "Каждая подзадача должна получить свой id");
+        assertEquals(400, manager.getPrioritizedTasks().size());
+        Epic stored = manager.getAllEpics().get(0);
+        assertEquals(TaskStatus.DONE, stored.getStatus());
+        assertEquals(400, stored.getSubtaskCount());
+        assertEquals(Duration.ofMinutes(400 * 30), stored.getDuration().orElseThrow());
+    }
+
+    @Test
+    void shouldNotKeepDeletedTasksInHistoryWhenViewsRaceWithDeletes() throws InterruptedException {
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Task task = new Task("Задача " + i, "", TaskStatus.NEW);
+            manager.addTask(task);
+            ids.add(task.getId());
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        for (int id : ids) {
+            pool.execute(() -> manager.getTaskById(id));
+            pool.execute(() -> manager.getTaskById(id));
+            if (id % 2 == 0) {
+                pool.execute(() -> manager.deleteTaskById(id));
+            }
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+
+        Set<Integer> present = new HashSet<>();
+        manager.getAllTasks().forEach(t -> present.add(t.getId()));
+        for (Task viewed : manager.getHistory()) {
+            assertTrue(present.contains(viewed.getId()), "В истории осталась удалённая задача " + viewed.getId());
+        }
+        assertEquals(100, present.size());
+    }
+
+    @Test
+    void shouldReturnEpicCopiesFromGetAllEpics() {
+        Epic epic = new Epic("Эпик", "Описание");
+        manager.addEpic(epic);
+        Epic listed = manager.getAllEpics().get(0);
+        manager.addSubtask(new Subtask("Подзадача", "", TaskStatus.DONE, epic.getId()));
+
+        assertEquals(TaskStatus.NEW, listed.getStatus(), "Возвращённый эпик не должен меняться позднее");
+        assertEquals(TaskStatus.DONE, manager.getAllEpics().get(0).getStatus());
+    }
+}
@@ -1,17 +1,23 @@
 package com.yandex.app.service;
 
 import com.yandex.app.model.Epic;
+import com.yandex.app.model.EpochMinutes;
 import com.yandex.app.model.Subtask;
 import com.yandex.app.model.Task;
 import com.yandex.app.model.TaskStatus;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -31,7 +37,11 @@ class FileBackedTaskManagerTest extends TaskManagerTest<FileBackedTaskManager> {
 
     @AfterEach
     void cleanup() {
-        if (tempFile != null) tempFile.delete();
+        manager.close();
+        if (tempFile != null) {
+            tempFile.delete();
+            new File(tempFile.getPath() + ".history").delete();
+        }
     }
 
     @Test
@@ -64,20 +74,19 @@ class FileBackedTaskManagerTest extends TaskManagerTest<FileBackedTaskManager> {
         sub.setDuration(Duration.ofMinutes(30));
         manager.addSubtask(sub);
 
+        String snapshot = readFile(tempFile);
+
         // вызываем getById(), чтобы записать историю
         manager.getTaskById(task.getId());
         manager.getEpicById(epic.getId());
         manager.getSubtaskById(sub.getId());
 
-        // читаем содержимое файла и проверяем наличие строки истории
-        String fileData;
-        try {
-            fileData = Files.readString(tempFile.toPath());
-        } catch (IOException e) {
-            throw new RuntimeException("Ошибка чтения временного файла", e);
-        }
-        assertTrue(fileData.contains("1,2,3"),
-                "Файл должен содержать строку истории ID: 1,2,3");
+        assertEquals(snapshot, readFile(tempFile), "Чтение не должно перезаписывать файл");
+
+        // просмотры дописываются в журнал истории при закрытии менеджера
+        manager.close();
+        assertEquals("1\n2\n3\n", readFile(new File(tempFile.getPath() + ".history")),
+                "Журнал истории должен содержать ID: 1, 2, 3");
 
         // загружаем менеджер заново
         FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile);
@@ -90,4 +99,301 @@ class FileBackedTaskManagerTest extends TaskManagerTest<FileBackedTaskManager> {
         assertEquals(epic.getId(), loaded.getHistory().get(1).getId());
         assertEquals(sub.getId(), loaded.getHistory().get(2).getId());
     }
+
+    // Повторный просмотр не дублирует запись, а переносит её в конец
+    @Test
+    void shouldCoalesceRepeatedViewsInHistoryJournal() {
+        manager.addTask(new Task("Первая", "Описание", TaskStatus.NEW));
+        manager.addTask(new Task("Вторая", "Описание", TaskStatus.NEW));
+        for (int i = 0; i < 10; i++) {
+            manager.getTaskById(1);
+            manager.getTaskById(2);
+        }
+        manager.getTaskById(1);
+        manager.close();
+
+        assertEquals("2\n1\n", readFile(new File(tempFile.getPath() + ".history")));
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile);
+        assertEquals(2, loaded.getHistory().size());
+        assertEquals(1, loaded.getHistory().get(1).getId());
+    }
+
+    // Просмотры дописываются в журнал истории по таймеру, без закрытия менеджера
+    @Test
+    void shouldFlushHistoryViewsWithoutClose() throws InterruptedException {
+        manager.addTask(new Task("Задача", "Описание", TaskStatus.NEW));
+        manager.getTaskById(1);
+
+        File history = new File(tempFile.getPath() + ".history");
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!history.exists() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals("1\n", readFile(history), "Просмотр должен попасть на диск без закрытия менеджера");
+    }
+
+    // Поток записи истории в режиме снимка запускается первым просмотром и останавливается только close()
+    @Test
+    void shouldStopHistoryFlusherOnClose() throws InterruptedException {
+        String name = "snapshot-flusher-" + tempFile.getName();
+        manager.addTask(new Task("Задача", "Описание", TaskStatus.NEW));
+        assertTrue(findThread(name).isEmpty(), "Изменения в режиме снимка не запускают фоновый поток");
+
+        manager.getTaskById(1);
+        Thread flusher = findThread(name).orElseThrow();
+        manager.close();
+
+        flusher.join(5_000);
+        assertFalse(flusher.isAlive(), "close() должен останавливать поток записи истории");
+    }
+
+    private static Optional<Thread> findThread(String name) {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().equals(name) && thread.isAlive())
+                .findFirst();
+    }
+
+    // Потоковый загрузчик должен корректно разбирать кавычки и запятые, а секунды времени начала отбрасывать
+    @Test
+    void shouldLoadQuotedFieldsAndDropSecondsOfStartTime() throws IOException {
+        Task task = new Task("Имя, \"в кавычках\"", "Описание, с запятой", TaskStatus.IN_PROGRESS);
+        task.setStartTime(LocalDateTime.of(2025, 3, 4, 5, 6));
+        task.setDuration(Duration.ofMinutes(45));
+        manager.addTask(task);
+        Epic epic = new Epic("Эпик", "");
+        manager.addEpic(epic);
+        manager.addSubtask(new Subtask("Подзадача", "Описание", TaskStatus.DONE, epic.getId()));
+
+        // файл с переводами строк Windows и временем с секундами (как в старых снимках) тоже должен читаться
+        String content = readFile(tempFile);
+        assertTrue(content.contains("2025-03-04T05:06,"), "Снимок хранит время с точностью до минуты");
+        Files.writeString(tempFile.toPath(), content
+                .replace("2025-03-04T05:06,", "2025-03-04T05:06:07.12,")
+                .replace("\n", "\r\n"));
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile);
+
+        Task loadedTask = loaded.getAllTasks().getFirst();
+        assertEquals(task.getTitle(), loadedTask.getTitle());
+        assertEquals(task.getDescription(), loadedTask.getDescription());
+        assertEquals(LocalDateTime.of(2025, 3, 4, 5, 6), loadedTask.getStartTime().orElseThrow());
+        assertEquals(task.getDuration(), loadedTask.getDuration());
+        assertEquals("", loaded.getAllEpics().getFirst().getDescription());
+        assertEquals(epic.getId(), loaded.getAllSubtasks().getFirst().getEpicId());
+        assertEquals(TaskStatus.DONE, loaded.getAllEpics().getFirst().getStatus());
+    }
+
+    // Массовая загрузка проверяет пересечения один раз после чтения всех строк
+    @Test
+    void shouldRejectSnapshotWithOverlappingTasks() throws IOException {
+        Files.writeString(tempFile.toPath(), """
+                id,type,name,status,description,duration,startTime,epic
+                1,TASK,"Первая",NEW,"Описание",30,2025-11-01T10:00,
+                2,TASK,"Вторая",NEW,"Описание",30,2025-11-01T10:15,
+
+                """);
+        assertThrows(ManagerSaveException.class, () -> FileBackedTaskManager.loadFromFile(tempFile));
+    }
+
+    @Test
+    void shouldRestoreEpicAndPrioritiesFromSnapshot() throws IOException {
+        Files.writeString(tempFile.toPath(), """
+                id,type,name,status,description,duration,startTime,epic
+                1,EPIC,"Эпик",NEW,"Описание",,,
+                2,SUBTASK,"Вторая",DONE,"Описание",30,2025-11-01T12:00,1
+                3,SUBTASK,"Первая",NEW,"Описание",60,2025-11-01T10:00,1
+                5,TASK,"Задача",NEW,"Описание",15,2025-11-01T11:00,
+
+                3
+                """);
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile);
+
+        Epic epic = loaded.getAllEpics().getFirst();
+        assertEquals(TaskStatus.IN_PROGRESS, epic.getStatus());
+        assertEquals(2, epic.getSubtaskIds().size());
+        assertEquals(Duration.ofMinutes(90), epic.getDuration().orElseThrow());
+        assertEquals(LocalDateTime.of(2025, 11, 1, 12, 30), epic.getEndTime().orElseThrow());
+        assertEquals(List.of(3, 5, 2), loaded.getPrioritizedTasks().stream().map(Task::getId).toList());
+        assertEquals(3, loaded.getHistory().getFirst().getId());
+
+        Task next = new Task("Новая", "Описание", TaskStatus.NEW);
+        loaded.addTask(next);
+        assertEquals(6, next.getId(), "Счётчик id должен продолжаться после загруженных задач");
+    }
+
+    // Большой снимок разбирается кусками параллельно, результат совпадает с последовательной загрузкой
+    @Test
+    void shouldLoadLargeSnapshotInParallelChunks() throws IOException {
+        StringBuilder csv = new StringBuilder("id,type,name,status,description,duration,startTime,epic\n");
+        csv.append("1,EPIC,\"Эпик\",NEW,\"Описание\",,,\n");
+        LocalDateTime start = LocalDateTime.of(2030, 1, 1, 0, 0);
+        int rows = 60_000;
+        for (int id = 2; id <= rows; id++) {
+            csv.append(id).append(id % 2 == 0 ? ",TASK,\"Задача " : ",SUBTASK,\"Подзадача ").append(id)
+                    .append("\",NEW,\"Описание, с \"\"кавычками\"\"\",15,").append(start.plusMinutes(15L * id))
+                    .append(id % 2 == 0 ? "," : ",1").append('\n');
+        }
+        csv.append("\n7,2\n");
+        Files.writeString(tempFile.toPath(), csv);
+        assertTrue(tempFile.length() >= ParallelSnapshotReader.MIN_PARALLEL_BYTES);
+
+        List<Integer> ids = new ArrayList<>();
+        long separator = ParallelSnapshotReader.readRows(tempFile, csv.indexOf("\n") + 1, 5,
+                task -> ids.add(task.getId()));
+        assertEquals(rows, ids.size());
+        for (int i = 0; i < rows; i++) {
+            assertEquals(i + 1, ids.get(i), "Задачи должны передаваться в порядке строк файла");
+        }
+        assertEquals(tempFile.length() - "\n7,2\n".length(), separator);
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile);
+        assertEquals(List.of(7, 2), loaded.getHistory().stream().map(Task::getId).toList());
+        assertEquals(rows / 2, loaded.getAllTasks().size());
+        assertEquals(rows / 2 - 1, loaded.getEpicById(1).orElseThrow().getSubtaskIds().size());
+        assertEquals(rows - 1, loaded.getPrioritizedTasks().size());
+        assertEquals("Описание, с \"кавычками\"", loaded.getTaskById(2).orElseThrow().getDescription());
+
+        Task next = new Task("Новая", "Описание", TaskStatus.NEW);
+        loaded.addTask(next);
+        assertEquals(rows + 1, next.getId());
+    }
+
+    // Двоичный снимок хранит те же данные, что и CSV, и загружается с автоопределением формата
+    @Test
+    void shouldSaveAndLoadBinarySnapshot() {
+        JournalSettings settings = new JournalSettings();
+        settings.setSnapshotFormat(SnapshotFormat.BINARY);
+        manager = new FileBackedTaskManager(tempFile, PersistenceMode.SNAPSHOT, settings);
+
+        Task task = new Task("Задача, с \"кавычками\"", "Описание", TaskStatus.IN_PROGRESS);
+        task.setStartTime(LocalDateTime.of(2025, 11, 1, 10, 0, 30));
+        task.setDuration(Duration.ofMinutes(90));
+        manager.addTask(task);
+        Epic epic = new Epic("Эпик", "Описание");
+        manager.addEpic(epic);
+        Subtask sub = new Subtask("Подзадача", "Описание", TaskStatus.DONE, epic.getId());
+        sub.setStartTime(LocalDateTime.of(2025, 11, 2, 9, 0));
+        sub.setDuration(Duration.ofMinutes(30));
+        manager.addSubtask(sub);
+        manager.getSubtaskById(sub.getId());
+
+        manager.close();
+        assertEquals(SnapshotFormat.BINARY, SnapshotFormat.detect(tempFile), "Снимок должен быть двоичным");
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile);
+        Task loadedTask = loaded.getAllTasks().getFirst();
+        assertEquals(task.getTitle(), loadedTask.getTitle());
+        assertEquals(task.getStartTime(), loadedTask.getStartTime());
+        assertEquals(task.getDuration(), loadedTask.getDuration());
+        assertEquals(TaskStatus.DONE, loaded.getAllEpics().getFirst().getStatus());
+        assertEquals(sub.getEndTime(), loaded.getAllEpics().getFirst().getEndTime());
+        assertEquals(List.of(sub.getId()), loaded.getHistory().stream().map(Task::getId).toList());
+    }
+
+    // Двоичные снимки старой версии хранили доли минуты времени начала; они пропускаются при чтении
+    @Test
+    void shouldSkipSubMinutePartOfStartInOldBinarySnapshot() throws IOException {
+        LocalDateTime start = LocalDateTime.of(2025, 11, 1, 10, 0);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(BinarySnapshot.MAGIC);
+        out.write(BinarySnapshot.VERSION);
+        out.write(BinarySnapshot.RECORD | BinarySnapshot.HAS_DURATION | BinarySnapshot.HAS_START
+                | BinarySnapshot.HAS_SUB_MINUTE); // TASK, NEW
+        BinarySnapshot.writeVarLong(out, 1);
+        for (String text : List.of("Старая", "Описание")) {
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            BinarySnapshot.writeVarLong(out, bytes.length);
+            out.write(bytes);
+        }
+        BinarySnapshot.writeVarLong(out, BinarySnapshot.zigzagEncode(30));
+        BinarySnapshot.writeVarLong(out, BinarySnapshot.zigzagEncode(EpochMinutes.of(start)));
+        BinarySnapshot.writeVarLong(out, 7_120_000_000L); // 7,12 секунды
+        out.write(BinarySnapshot.END);
+        BinarySnapshot.writeVarLong(out, 1); // история: задача 1
+        BinarySnapshot.writeVarLong(out, 1);
+        BinarySnapshot.writeVarLong(out, 0);
+        Files.write(tempFile.toPath(), out.toByteArray());
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile);
+        Task task = loaded.getAllTasks().getFirst();
+        assertEquals("Старая", task.getTitle());
+        assertEquals(start, task.getStartTime().orElseThrow());
+        assertEquals(Duration.ofMinutes(30), task.getDuration().orElseThrow());
+        assertEquals(List.of(1), loaded.getHistory().stream().map(Task::getId).toList());
+        loaded.close();
+    }
+
+    @Test
+    void shouldServeReadsFromMappedSnapshotBeforeFullLoad() {
+        JournalSettings settings = new JournalSettings();
+        settings.setSnapshotFormat(SnapshotFormat.BINARY);
+        manager = new FileBackedTaskManager(tempFile, PersistenceMode.SNAPSHOT, settings);
+
+        Task task = new Task("Задача", "Описание", TaskStatus.NEW);
+        manager.addTask(task);
+        Epic epic = new Epic("Эпик", "Описание");
+        manager.addEpic(epic);
+        Subtask sub = new Subtask("Подзадача", "Описание", TaskStatus.IN_PROGRESS, epic.getId());
+        sub.setStartTime(LocalDateTime.of(2025, 11, 2, 9, 0));
+        sub.setDuration(Duration.ofMinutes(30));
+        manager.addSubtask(sub);
+        manager.getTaskById(task.getId());
+        manager.close();
+
+        FileBackedTaskManager opened = FileBackedTaskManager.openMapped(tempFile, PersistenceMode.SNAPSHOT);
+        assertEquals(task.getTitle(), opened.getTaskById(task.getId()).orElseThrow().getTitle());
+        assertTrue(opened.getTaskById(epic.getId()).isEmpty(), "Эпик не должен находиться как задача");
+        Epic openedEpic = opened.getAllEpics().getFirst();
+        assertEquals(List.of(sub.getId()), openedEpic.getSubtaskIds());
+        assertEquals(TaskStatus.IN_PROGRESS, openedEpic.getStatus());
+        assertEquals(sub.getEndTime(), openedEpic.getEndTime());
+        opened.getSubtaskById(sub.getId());
+
+        opened.addTask(new Task("Новая", "Описание", TaskStatus.NEW));
+        assertEquals(2, opened.getAllTasks().size());
+        assertEquals(List.of(task.getId(), sub.getId()), opened.getHistory().stream().map(Task::getId).toList());
+        assertEquals(1, opened.getPrioritizedTasks().size());
+        opened.close();
+    }
+
+    @Test
+    void shouldConvertSnapshotBetweenCsvAndBinary() {
+        Task task = new Task("Задача", "Описание", TaskStatus.NEW);
+        task.setStartTime(LocalDateTime.of(2025, 11, 1, 10, 0));
+        task.setDuration(Duration.ofMinutes(15));
+        manager.addTask(task);
+        Epic epic = new Epic("Эпик", "Описание, с запятой");
+        manager.addEpic(epic);
+        manager.addSubtask(new Subtask("Подзадача", "Описание", TaskStatus.NEW, epic.getId()));
+        manager.getEpicById(epic.getId());
+        manager.close();
+        manager.addTask(new Task("Вторая", "Описание", TaskStatus.DONE)); // сохраняет снимок вместе с историей
+
+        File binary = new File(tempFile.getPath() + ".bin");
+        File restored = new File(tempFile.getPath() + ".restored");
+        try {
+            SnapshotConverter.csvToBinary(tempFile, binary);
+            assertTrue(binary.length() < tempFile.length(), "Двоичный снимок должен быть компактнее CSV");
+            SnapshotConverter.binaryToCsv(binary, restored);
+            assertTrue(readFile(restored).startsWith(CsvSnapshot.CSV_HEADER));
+
+            // Перевод туда и обратно не должен менять содержимое снимка
+            FileBackedTaskManager original = FileBackedTaskManager.loadFromFile(tempFile);
+            FileBackedTaskManager converted = FileBackedTaskManager.loadFromFile(restored);
+            assertEquals(original.getAllTasks().toString(), converted.getAllTasks().toString());
+            assertEquals(original.getAllEpics().toString(), converted.getAllEpics().toString());
+            assertEquals(original.getAllSubtasks().toString(), converted.getAllSubtasks().toString());
+            assertEquals(original.getHistory().toString(), converted.getHistory().toString());
+        } finally {
+            binary.delete();
+            restored.delete();
+        }
+    }
+
+    private String readFile(File file) {
+        try {
+            return Files.readString(file.toPath());
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка чтения временного файла", e);
+        }
+    }
 }
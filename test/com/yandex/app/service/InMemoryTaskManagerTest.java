@@ -1,8 +1,225 @@
 package com.yandex.app.service;
 
+import com.yandex.app.model.Epic;
+import com.yandex.app.model.Subtask;
+import com.yandex.app.model.Task;
+import com.yandex.app.model.TaskStatus;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
 class InMemoryTaskManagerTest extends TaskManagerTest<InMemoryTaskManager> {
     @Override
     protected InMemoryTaskManager createManager() {
         return new InMemoryTaskManager();
     }
+
+    @Test
+    void shouldPublishNewVersionOnlyAfterSuccessfulChanges() {
+        LocalDateTime start = LocalDateTime.of(2025, 5, 1, 10, 0);
+        ManagerState initial = manager.getState();
+        Task first = new Task(0, "Первая", "", TaskStatus.NEW, Duration.ofMinutes(60), start);
+        manager.addTask(first);
+        ManagerState afterAdd = manager.getState();
+
+        Task overlapping = new Task(0, "Вторая", "", TaskStatus.NEW, Duration.ofMinutes(30), start);
+        assertThrows(IllegalArgumentException.class, () -> manager.addTask(overlapping));
+        assertSame(afterAdd, manager.getState(), "Неудачное изменение не публикует версию");
+
+        first.setTitle("Переименована");
+        manager.updateTask(first);
+        ManagerState afterUpdate = manager.getState();
+
+        assertEquals(initial.getVersion() + 1, afterAdd.getVersion());
+        assertEquals(afterAdd.getVersion() + 1, afterUpdate.getVersion());
+        assertTrue(initial.getTasks().isEmpty(), "Старая версия не меняется");
+        assertEquals("Первая", afterAdd.getTasks().get(0).getTitle());
+        assertEquals("Переименована", afterUpdate.getTasks().get(0).getTitle());
+        assertEquals(1, afterAdd.getPrioritizedTasks().size());
+    }
+
+    @Test
+    void shouldKeepEpicOfOldVersionUnchangedAfterSubtaskChanges() {
+        Epic epic = new Epic("Эпик", "");
+        manager.addEpic(epic);
+        Subtask first = new Subtask("Первая", "", TaskStatus.DONE, epic.getId());
+        manager.addSubtask(first);
+        ManagerState before = manager.getState();
+
+        manager.addSubtask(new Subtask("Вторая", "", TaskStatus.NEW, epic.getId()));
+        manager.deleteSubtaskById(first.getId());
+
+        Epic old = before.getEpics().get(0);
+        assertEquals(TaskStatus.DONE, old.getStatus());
+        assertEquals(List.of(first.getId()), old.getSubtaskIds());
+        assertEquals(List.of(first.getId()), before.getSubtasksOfEpic(epic.getId()).stream().map(Task::getId).toList());
+
+        Epic current = manager.getState().getEpics().get(0);
+        assertEquals(TaskStatus.NEW, current.getStatus());
+        assertEquals(1, current.getSubtaskCount());
+    }
+
+    @Test
+    void shouldPublishBatchAsOneVersion() {
+        ManagerState before = manager.getState();
+        LocalDateTime start = LocalDateTime.of(2025, 5, 1, 10, 0);
+        Task first = new Task(0, "Первая", "", TaskStatus.NEW, Duration.ofMinutes(60), start);
+
+        assertThrows(IllegalArgumentException.class, () -> manager.applyBatch(List.of(
+                Operation.add(first),
+                Operation.add(new Task(0, "Вторая", "", TaskStatus.NEW, Duration.ofMinutes(30), start)))));
+        assertSame(before, manager.getState(), "Неудачный пакет не публикует версию");
+
+        manager.applyBatch(List.of(Operation.add(first), Operation.add(new Task("Третья", "", TaskStatus.NEW))));
+        assertEquals(before.getVersion() + 1, manager.getState().getVersion());
+        assertEquals(2, manager.getState().getTasks().size());
+        assertEquals(1, first.getId(), "Отменённый пакет не расходует id");
+    }
+
+    @Test
+    void shouldSwapTimesOfTasksInTransaction() {
+        LocalDateTime start = LocalDateTime.of(2025, 5, 1, 10, 0);
+        Epic epic = new Epic("Эпик", "");
+        manager.addEpic(epic);
+        Subtask first = new Subtask(0, "Первая", "", TaskStatus.NEW, Duration.ofMinutes(60), start, epic.getId());
+        Subtask second = new Subtask(0, "Вторая", "", TaskStatus.DONE,
+                Duration.ofMinutes(60), start.plusHours(1), epic.getId());
+        manager.addSubtask(first);
+        manager.addSubtask(second);
+        long version = manager.getState().getVersion();
+
+        manager.runInTransaction(m -> {
+            m.updateSubtask(new Subtask(first.getId(), "Первая", "", TaskStatus.NEW,
+                    Duration.ofMinutes(60), start.plusHours(1), epic.getId()));
+            m.updateSubtask(new Subtask(second.getId(), "Вторая", "", TaskStatus.DONE,
+                    Duration.ofMinutes(60), start, epic.getId()));
+        });
+
+        assertEquals(version + 1, manager.getState().getVersion(), "Транзакция публикует одну версию");
+        assertEquals(List.of(second.getId(), first.getId()),
+                manager.getPrioritizedTasks().stream().map(Task::getId).toList());
+        assertEquals(start, manager.getAllEpics().getFirst().getStartTime().orElseThrow());
+        assertEquals(Optional.of(start.plusHours(2)),
+                manager.findEarliestFreeSlot(Duration.ofMinutes(30), start));
+    }
+
+    @Test
+    void shouldRollBackConflictingReschedulingAsUnit() {
+        LocalDateTime start = LocalDateTime.of(2025, 5, 1, 10, 0);
+        Task a = new Task(0, "A", "", TaskStatus.NEW, Duration.ofMinutes(60), start);
+        Task b = new Task(0, "B", "", TaskStatus.NEW, Duration.ofMinutes(60), start.plusHours(1));
+        Task c = new Task(0, "C", "", TaskStatus.NEW, Duration.ofMinutes(60), start.plusHours(2));
+        manager.addTask(a);
+        manager.addTask(b);
+        manager.addTask(c);
+        Epic epic = new Epic("Эпик", "");
+        manager.addEpic(epic);
+        Subtask subtask = new Subtask(0, "S", "", TaskStatus.NEW,
+                Duration.ofMinutes(60), start.plusHours(3), epic.getId());
+        manager.addSubtask(subtask);
+        manager.getTaskById(a.getId());
+        manager.getSubtaskById(subtask.getId());
+
+        ManagerState before = manager.getState();
+        List<Task> historyBefore = manager.getHistory();
+        Task added = new Task(0, "Новая", "", TaskStatus.NEW, Duration.ofMinutes(15), start.minusHours(1));
+
+        // A и B сдвигаются на час, но место B занято задачей C
+        assertThrows(IllegalArgumentException.class, () -> manager.runInTransaction(m -> {
+            m.addTask(added);
+            m.updateSubtask(new Subtask(subtask.getId(), "S", "", TaskStatus.DONE,
+                    Duration.ofMinutes(60), start.plusHours(4), epic.getId()));
+            m.deleteTaskById(c.getId());
+            m.getTaskById(b.getId());
+            m.addTask(new Task(0, "C2", "", TaskStatus.NEW, Duration.ofMinutes(60), start.plusHours(2)));
+            m.updateTask(new Task(a.getId(), "A", "", TaskStatus.NEW, Duration.ofMinutes(60), start.plusHours(1)));
+            m.updateTask(new Task(b.getId(), "B", "", TaskStatus.NEW, Duration.ofMinutes(60), start.plusHours(2)));
+        }));
+
+        assertSame(before, manager.getState(), "Откаченная транзакция не публикует версию");
+        assertEquals(historyBefore, manager.getHistory());
+        assertEquals(List.of(a, b, c), manager.getAllTasks());
+        assertEquals(List.of(a.getId(), b.getId(), c.getId(), subtask.getId()),
+                manager.getPrioritizedTasks().stream().map(Task::getId).toList());
+        assertEquals(start, manager.getTaskById(a.getId()).orElseThrow().getStartTime().orElseThrow());
+        assertEquals(Optional.of(start.plusHours(4)), manager.findEarliestFreeSlot(Duration.ofMinutes(60), start));
+        assertEquals(Optional.of(start.minusHours(1)),
+                manager.findEarliestFreeSlot(Duration.ofMinutes(15), start.minusHours(1)));
+        Epic storedEpic = manager.getEpicById(epic.getId()).orElseThrow();
+        assertEquals(TaskStatus.NEW, storedEpic.getStatus());
+        assertEquals(start.plusHours(4), storedEpic.getEndTime().orElseThrow());
+        assertEquals(List.of(subtask.getId()), storedEpic.getSubtaskIds());
+        assertEquals(0, added.getId(), "Задаче отменённого добавления возвращается прежний id");
+
+        manager.addTask(added);
+        assertEquals(subtask.getId() + 1, added.getId(), "Откаченная транзакция не расходует id");
+    }
+
+    @Test
+    void shouldRunNestedTransactionAsPartOfOuter() {
+        Task outer = new Task("Внешняя", "", TaskStatus.NEW);
+        Task inner = new Task("Вложенная", "", TaskStatus.NEW);
+        long version = manager.getState().getVersion();
+
+        assertThrows(IllegalStateException.class, () -> manager.runInTransaction(m -> {
+            m.addTask(outer);
+            manager.runInTransaction(n -> n.addTask(inner));
+            throw new IllegalStateException("Отмена");
+        }));
+        assertTrue(manager.getAllTasks().isEmpty(), "Вложенная транзакция откатывается вместе с внешней");
+        assertEquals(version, manager.getState().getVersion());
+
+        manager.runInTransaction(m -> {
+            m.addTask(outer);
+            manager.runInTransaction(n -> n.addTask(inner));
+        });
+        assertEquals(version + 1, manager.getState().getVersion());
+        assertEquals(List.of(outer, inner), manager.getAllTasks());
+    }
+
+    @Test
+    void shouldGiveReadersConsistentVersionsWhileWriting() throws InterruptedException {
+        Epic epic = new Epic("Эпик", "");
+        manager.addEpic(epic);
+        LocalDateTime base = LocalDateTime.of(2025, 5, 1, 0, 0);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 2_000; i++) {
+                manager.addSubtask(new Subtask(0, "Подзадача", "", TaskStatus.NEW,
+                        Duration.ofMinutes(15), base.plusMinutes(15L * i), epic.getId()));
+            }
+        });
+        Thread reader = new Thread(() -> {
+            try {
+                long lastVersion = -1;
+                while (writer.isAlive() || lastVersion < manager.getState().getVersion()) {
+                    ManagerState state = manager.getState();
+                    assertTrue(state.getVersion() >= lastVersion, "Версии не убывают");
+                    lastVersion = state.getVersion();
+                    int subtasks = state.getSubtasks().size();
+                    // Все части одной версии согласованы между собой
+                    assertEquals(subtasks, state.getPrioritizedTasks().size());
+                    assertEquals(subtasks, state.getEpics().get(0).getSubtaskCount());
+                    assertEquals(subtasks, state.getSubtasksOfEpic(epic.getId()).size());
+                    assertEquals(subtasks + 1, state.getVersion(), "Эпик и каждая подзадача — отдельная версия");
+                }
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        });
+        writer.start();
+        reader.start();
+        writer.join();
+        reader.join();
+
+        assertNull(failure.get(), "Ошибка читателя: " + failure.get());
+        assertEquals(2_000, manager.getAllSubtasks().size());
+    }
 }
@@ -0,0 +1,54 @@
+package com.yandex.app.service;
+
+import com.yandex.app.model.Task;
+import com.yandex.app.model.TaskStatus;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Сравнение памяти, занимаемой хранилищем задач на HashMap&lt;Integer, Task&gt; и на {@link IntObjectMap}.
+ * Задачи общие для обоих вариантов, поэтому разница — только стоимость самих словарей.
+ * Запуск: java -Xmx1g com.yandex.app.service.IntObjectMapFootprint [количество задач]
+ */
+public class IntObjectMapFootprint {
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Task[] tasks = new Task[count];
+        for (int i = 0; i < count; i++) {
+            tasks[i] = new Task(i + 1, "Задача", "", TaskStatus.NEW);
+        }
+
+        long before = usedMemory();
+        Map<Integer, Task> hashMap = new HashMap<>();
+        for (Task task : tasks) {
+            hashMap.put(task.getId(), task);
+        }
+        long hashMapBytes = usedMemory() - before;
+
+        before = usedMemory();
+        IntObjectMap<Task> intMap = new IntObjectMap<>();
+        for (Task task : tasks) {
+            intMap.put(task.getId(), task);
+        }
+        long intMapBytes = usedMemory() - before;
+
+        System.out.printf("Задач: %d%n", count);
+        System.out.printf("HashMap<Integer, Task>: %,d байт, %.1f байт на задачу%n", hashMapBytes, (double) hashMapBytes / count);
+        System.out.printf("IntObjectMap<Task>:     %,d байт, %.1f байт на задачу%n", intMapBytes, (double) intMapBytes / count);
+        System.out.printf("Экономия: %.1f байт на задачу%n", (double) (hashMapBytes - intMapBytes) / count);
+        // Словари должны дожить до замера
+        if (hashMap.size() != intMap.size()) {
+            throw new IllegalStateException();
+        }
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
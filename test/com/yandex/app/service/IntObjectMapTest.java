@@ -0,0 +1,69 @@
+package com.yandex.app.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntObjectMapTest {
+
+    @Test
+    void shouldAgreeWithHashMap() {
+        IntObjectMap<String> map = new IntObjectMap<>();
+        Map<Integer, String> expected = new HashMap<>();
+        Random random = new Random(17);
+
+        for (int i = 0; i < 50_000; i++) {
+            // Ключи с общим остатком дают длинные цепочки и проверяют сдвиг при удалении
+            int key = random.nextBoolean() ? random.nextInt(2_000) - 100 : random.nextInt(64) * 1_024;
+            switch (random.nextInt(3)) {
+                case 0 -> assertEquals(expected.put(key, "v" + i), map.put(key, "v" + i));
+                case 1 -> assertEquals(expected.remove(key), map.remove(key), "Удаление " + key);
+                default -> assertEquals(expected.get(key), map.get(key), "Поиск " + key);
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (Map.Entry<Integer, String> entry : expected.entrySet()) {
+            assertTrue(map.containsKey(entry.getKey()));
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+        List<String> values = new ArrayList<>(map.values());
+        values.sort(null);
+        List<String> expectedValues = new ArrayList<>(expected.values());
+        expectedValues.sort(null);
+        assertEquals(expectedValues, values);
+
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(0));
+    }
+
+    @Test
+    void shouldIterateSequentialIdsInAscendingOrder() {
+        IntObjectMap<Integer> map = new IntObjectMap<>();
+        for (int id = 1; id <= 100; id++) {
+            map.put(id, id);
+        }
+        assertEquals(IntStream.rangeClosed(1, 100).boxed().toList(), new ArrayList<>(map.values()));
+    }
+
+    @Test
+    void shouldFailFastOnModificationDuringIteration() {
+        IntObjectMap<String> map = new IntObjectMap<>();
+        map.put(1, "a");
+        map.put(2, "b");
+        Iterator<String> iterator = map.values().iterator();
+        iterator.next();
+        map.remove(2);
+        assertThrows(ConcurrentModificationException.class, iterator::next);
+        assertThrows(NullPointerException.class, () -> map.put(3, null));
+    }
+}
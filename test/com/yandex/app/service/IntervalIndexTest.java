@@ -0,0 +1,49 @@
+package com.yandex.app.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntervalIndexTest {
+
+    private static final long BASE = 29_000_000; // минуты от начала эпохи
+
+    @Test
+    void shouldAgreeWithPairwiseCheck() {
+        IntervalIndex index = new IntervalIndex();
+        List<long[]> stored = new ArrayList<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 5_000; i++) {
+            long start = BASE + random.nextInt(2_000);
+            long end = start + (random.nextInt(4) == 0 ? 0 : random.nextInt(30));
+            boolean expected = stored.stream()
+                    .anyMatch(other -> start < other[1] && other[0] < end);
+            assertEquals(expected, index.overlaps(start, end), "Интервал " + start + " - " + end);
+
+            if (!expected) {
+                index.add(start, end);
+                stored.add(new long[]{start, end});
+            } else if (!stored.isEmpty() && random.nextBoolean()) {
+                long[] removed = stored.remove(random.nextInt(stored.size()));
+                index.remove(removed[0], removed[1]);
+            }
+        }
+    }
+
+    @Test
+    void shouldKeepPointsSharingStartWithInterval() {
+        IntervalIndex index = new IntervalIndex();
+        index.add(BASE, BASE);
+        index.add(BASE, BASE + 30);
+        index.remove(BASE, BASE + 30);
+
+        assertFalse(index.overlaps(BASE + 1, BASE + 2));
+        assertTrue(index.overlaps(BASE - 1, BASE + 1),
+                "Оставшийся пустой интервал должен учитываться");
+    }
+}
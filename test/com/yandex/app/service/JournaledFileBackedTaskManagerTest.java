@@ -0,0 +1,302 @@
+package com.yandex.app.service;
+
+import com.yandex.app.model.Epic;
+import com.yandex.app.model.Subtask;
+import com.yandex.app.model.Task;
+import com.yandex.app.model.TaskStatus;
+import com.yandex.app.model.TypeTask;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты FileBackedTaskManager в режиме журнала.
+ */
+class JournaledFileBackedTaskManagerTest extends TaskManagerTest<FileBackedTaskManager> {
+
+    private File tempFile;
+
+    @Override
+    protected FileBackedTaskManager createManager() {
+        try {
+            tempFile = File.createTempFile("java-kanban", ".csv");
+            return new FileBackedTaskManager(tempFile, PersistenceMode.JOURNAL);
+        } catch (IOException e) {
+            throw new RuntimeException("Не удалось создать временный файл", e);
+        }
+    }
+
+    private File journalFile() {
+        return new File(tempFile.getPath() + ".journal");
+    }
+
+    @AfterEach
+    void cleanup() {
+        manager.close();
+        if (tempFile != null) {
+            File[] files = tempFile.getParentFile().listFiles((dir, name) -> name.startsWith(tempFile.getName()));
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    @Test
+    void shouldAppendToJournalWithoutRewritingSnapshot() throws IOException {
+        manager.addTask(new Task("Первая", "Описание", TaskStatus.NEW));
+        String snapshot = Files.readString(tempFile.toPath());
+
+        manager.addTask(new Task("Вторая", "Описание", TaskStatus.NEW));
+        manager.addEpic(new Epic("Эпик", "Описание"));
+
+        assertEquals(snapshot, Files.readString(tempFile.toPath()), "Снимок не должен перезаписываться");
+        assertEquals(2, Files.readAllLines(journalFile().toPath()).size(),
+                "Каждая операция должна добавлять одну запись в журнал");
+    }
+
+    @Test
+    void shouldReplayJournalOnLoad() {
+        Task task = new Task("Задача", "Описание", TaskStatus.NEW);
+        task.setStartTime(LocalDateTime.of(2025, 11, 1, 10, 0));
+        task.setDuration(Duration.ofMinutes(60));
+        manager.addTask(task);
+
+        Epic epic = new Epic("Эпик", "Описание, с запятой");
+        manager.addEpic(epic);
+        Subtask sub = new Subtask("Подзадача", "Описание", TaskStatus.DONE, epic.getId());
+        manager.addSubtask(sub);
+
+        task.setStatus(TaskStatus.IN_PROGRESS);
+        manager.updateTask(task);
+        manager.getEpicById(epic.getId());
+        manager.close();
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile, PersistenceMode.JOURNAL);
+
+        assertEquals(TaskStatus.IN_PROGRESS, loaded.getAllTasks().getFirst().getStatus());
+        assertEquals("Описание, с запятой", loaded.getAllEpics().getFirst().getDescription());
+        assertEquals(TaskStatus.DONE, loaded.getAllEpics().getFirst().getStatus());
+        assertEquals(1, loaded.getHistory().size());
+        assertEquals(epic.getId(), loaded.getHistory().getFirst().getId());
+    }
+
+    @Test
+    void shouldWriteBatchAsOneJournalRecordAndReplayIt() throws IOException {
+        manager.addTask(new Task("Первая", "Описание", TaskStatus.NEW));
+        Epic epic = new Epic("Эпик", "Описание, с запятой");
+        epic.setId(10);
+        List<Operation> operations = new ArrayList<>();
+        operations.add(Operation.add(epic));
+        for (int i = 0; i < 20; i++) {
+            operations.add(Operation.add(new Subtask(0, "Подзадача: " + i, "", TaskStatus.DONE,
+                    Duration.ofMinutes(15), LocalDateTime.of(2025, 11, 1, 10, 0).plusHours(i), epic.getId())));
+        }
+        operations.add(Operation.delete(TypeTask.TASK, 1));
+        manager.applyBatch(operations);
+
+        assertEquals(1, Files.readAllLines(journalFile().toPath()).size(), "Пакет сохраняется одной записью");
+        manager.close();
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile, PersistenceMode.JOURNAL);
+        assertTrue(loaded.getAllTasks().isEmpty());
+        assertEquals(20, loaded.getSubtasksOfEpic(10).size());
+        assertEquals("Подзадача: 19", loaded.getAllSubtasks().getLast().getTitle());
+        assertEquals(TaskStatus.DONE, loaded.getAllEpics().getFirst().getStatus());
+        assertEquals("Описание, с запятой", loaded.getAllEpics().getFirst().getDescription());
+    }
+
+    @Test
+    void shouldWriteTransactionAsOneJournalRecordAndReplayIt() throws IOException {
+        LocalDateTime start = LocalDateTime.of(2025, 11, 1, 10, 0);
+        Task first = new Task(0, "Первая", "", TaskStatus.NEW, Duration.ofMinutes(60), start);
+        Task second = new Task(0, "Вторая", "", TaskStatus.NEW, Duration.ofMinutes(60), start.plusHours(1));
+        manager.addTask(first);
+        manager.addTask(second);
+        long journalLines = Files.readAllLines(journalFile().toPath()).size();
+
+        manager.runInTransaction(m -> {
+            m.updateTask(new Task(first.getId(), "Первая", "", TaskStatus.NEW, Duration.ofMinutes(60), start.plusHours(1)));
+            m.updateTask(new Task(second.getId(), "Вторая", "", TaskStatus.NEW, Duration.ofMinutes(60), start));
+        });
+        assertThrows(IllegalArgumentException.class, () -> manager.runInTransaction(m ->
+                m.updateTask(new Task(first.getId(), "Первая", "", TaskStatus.NEW, Duration.ofMinutes(60), start))));
+
+        assertEquals(journalLines + 1, Files.readAllLines(journalFile().toPath()).size(),
+                "Транзакция сохраняется одной записью, откаченная не сохраняется");
+        manager.close();
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile, PersistenceMode.JOURNAL);
+        assertEquals(List.of(second.getId(), first.getId()),
+                loaded.getPrioritizedTasks().stream().map(Task::getId).toList());
+        loaded.close();
+    }
+
+    @Test
+    void shouldKeepViewsOfRolledBackTransactionOutOfReloadedHistory() {
+        Task first = new Task("Первая", "", TaskStatus.NEW);
+        Task second = new Task("Вторая", "", TaskStatus.NEW);
+        manager.addTask(first);
+        manager.addTask(second);
+        manager.getTaskById(first.getId());
+
+        assertThrows(IllegalArgumentException.class, () -> manager.runInTransaction(m -> {
+            m.getTaskById(second.getId());
+            m.deleteTaskById(99);
+        }));
+        List<Integer> history = manager.getHistory().stream().map(Task::getId).toList();
+        assertEquals(List.of(first.getId()), history);
+        manager.close();
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile, PersistenceMode.JOURNAL);
+        assertEquals(history, loaded.getHistory().stream().map(Task::getId).toList(),
+                "Просмотр откаченной транзакции не должен попасть в историю после загрузки");
+        loaded.runInTransaction(m -> m.getTaskById(second.getId()));
+        loaded.close();
+
+        FileBackedTaskManager reloaded = FileBackedTaskManager.loadFromFile(tempFile, PersistenceMode.JOURNAL);
+        assertEquals(List.of(first.getId(), second.getId()),
+                reloaded.getHistory().stream().map(Task::getId).toList());
+        reloaded.close();
+    }
+
+    @Test
+    void shouldNotWriteFailedBatchToJournal() {
+        manager.addTask(new Task("Первая", "Описание", TaskStatus.NEW));
+        long journalLength = journalFile().length();
+
+        assertThrows(IllegalArgumentException.class, () -> manager.applyBatch(List.of(
+                Operation.add(new Task("Вторая", "Описание", TaskStatus.NEW)),
+                Operation.delete(TypeTask.TASK, 99))));
+
+        assertEquals(journalLength, journalFile().length());
+        assertEquals(1, manager.getAllTasks().size());
+    }
+
+    @Test
+    void shouldNotWriteOperationJournalOnRead() throws IOException {
+        manager.addTask(new Task("Задача", "Описание", TaskStatus.NEW));
+        long journalLength = journalFile().length();
+
+        manager.getTaskById(1);
+        manager.getTaskById(1);
+
+        assertEquals(journalLength, journalFile().length(), "Просмотр не должен попадать в журнал операций");
+    }
+
+    @Test
+    void shouldIgnoreTornRecordAtJournalEnd() throws IOException {
+        manager.addTask(new Task("Первая", "Описание", TaskStatus.NEW));
+        manager.addTask(new Task("Вторая", "Описание", TaskStatus.NEW));
+        Files.writeString(journalFile().toPath(), "3,ADD,99,TASK,\"Оборв", StandardOpenOption.APPEND);
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile, PersistenceMode.JOURNAL);
+
+        assertEquals(2, loaded.getAllTasks().size());
+    }
+
+    @Test
+    void shouldTruncateJournalAfterCompaction() throws IOException {
+        for (int i = 0; i < 10; i++) {
+            manager.addTask(new Task("Задача " + i, "Описание", TaskStatus.NEW));
+        }
+        manager.getTaskById(3);
+        assertTrue(journalFile().length() > 0, "До компактизации записи должны быть в журнале");
+
+        manager.compact();
+
+        assertFalse(journalFile().exists() && journalFile().length() > 0,
+                "После компактизации журнал должен быть пуст");
+        String snapshot = Files.readString(tempFile.toPath());
+        assertTrue(snapshot.contains("Задача 9"), "Снимок должен содержать все задачи");
+
+        manager.addTask(new Task("После снимка", "Описание", TaskStatus.NEW));
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile, PersistenceMode.JOURNAL);
+        assertEquals(11, loaded.getAllTasks().size());
+        assertEquals(3, loaded.getHistory().getFirst().getId());
+        loaded.close();
+    }
+
+    @Test
+    void shouldCompactInBackgroundWhenRecordLimitReached() throws InterruptedException, IOException {
+        JournalSettings settings = new JournalSettings();
+        settings.setMaxJournalRecords(5);
+        manager.close();
+        manager = new FileBackedTaskManager(tempFile, PersistenceMode.JOURNAL, settings);
+
+        for (int i = 0; i < 20; i++) {
+            manager.addTask(new Task("Задача " + i, "Описание", TaskStatus.NEW));
+        }
+        // ждём, пока фоновая компактизация перенесёт записи журнала в снимок
+        for (int i = 0; i < 100 && !Files.readString(tempFile.toPath()).contains("Задача 5"); i++) {
+            Thread.sleep(20);
+        }
+        assertTrue(Files.readString(tempFile.toPath()).contains("Задача 5"),
+                "Журнал должен сворачиваться в снимок без явного вызова compact()");
+        manager.compact(); // дожидаемся завершения фоновой компактизации
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile, PersistenceMode.JOURNAL);
+        assertEquals(20, loaded.getAllTasks().size(), "Компактизация не должна терять задачи");
+        loaded.close();
+    }
+
+    @Test
+    void shouldKeepJournalSettingsAfterReload() throws InterruptedException, IOException {
+        manager.addTask(new Task("До перезапуска", "Описание", TaskStatus.NEW));
+        manager.close();
+        JournalSettings settings = new JournalSettings();
+        settings.setMaxJournalRecords(5);
+        manager = FileBackedTaskManager.loadFromFile(tempFile, PersistenceMode.JOURNAL, settings);
+
+        for (int i = 0; i < 20; i++) {
+            manager.addTask(new Task("Задача " + i, "Описание", TaskStatus.NEW));
+        }
+        // с настройками по умолчанию (100 000 записей) журнал не свернулся бы
+        for (int i = 0; i < 100 && !Files.readString(tempFile.toPath()).contains("Задача 5"); i++) {
+            Thread.sleep(20);
+        }
+        assertTrue(Files.readString(tempFile.toPath()).contains("Задача 5"),
+                "Порог компактизации из настроек должен действовать после перезапуска");
+        manager.compact(); // дожидаемся завершения фоновой компактизации
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile, PersistenceMode.JOURNAL);
+        assertEquals(21, loaded.getAllTasks().size());
+        loaded.close();
+    }
+
+    @Test
+    void shouldGroupConcurrentWritesIntoBatches() throws InterruptedException {
+        manager.addTask(new Task("Базовая", "Описание", TaskStatus.NEW)); // фиксирует базовый снимок
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 200; i++) {
+            int n = i;
+            executor.submit(() -> manager.addTask(new Task("Задача " + n, "Описание", TaskStatus.NEW)));
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        CommitStats stats = manager.getCommitStats();
+        assertEquals(200, stats.getRecords(), "Каждая операция должна быть зафиксирована");
+        assertTrue(stats.getBatches() <= stats.getRecords());
+        assertTrue(stats.getMaxBatchSize() >= 1);
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile, PersistenceMode.JOURNAL);
+        assertEquals(201, loaded.getAllTasks().size());
+        loaded.close();
+    }
+}
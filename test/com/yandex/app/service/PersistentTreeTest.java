@@ -0,0 +1,97 @@
+package com.yandex.app.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PersistentTreeTest {
+
+    private static final Comparator<Integer> ORDER = Comparator.naturalOrder();
+
+    @Test
+    void shouldAgreeWithTreeSetUnderRandomChanges() {
+        PersistentTree<Integer> tree = PersistentTree.empty(ORDER);
+        TreeSet<Integer> expected = new TreeSet<>();
+        Random random = new Random(7);
+
+        for (int i = 0; i < 20_000; i++) {
+            int value = random.nextInt(2_000);
+            if (random.nextInt(3) == 0) {
+                tree = tree.without(value);
+                expected.remove(value);
+            } else {
+                tree = tree.with(value);
+                expected.add(value);
+            }
+            if (i % 1_000 == 0) {
+                assertEquals(new ArrayList<>(expected), tree.asList());
+            }
+        }
+        assertEquals(new ArrayList<>(expected), tree.asList());
+        assertEquals(expected.size(), tree.size());
+        List<Integer> sorted = new ArrayList<>(expected);
+        for (int i = 0; i < sorted.size(); i += 37) {
+            assertEquals(sorted.get(i), tree.get(i));
+        }
+    }
+
+    @Test
+    void shouldKeepOldVersionsUnchanged() {
+        PersistentTree<Integer> empty = PersistentTree.empty(ORDER);
+        PersistentTree<Integer> v1 = empty.with(2).with(1).with(3);
+        PersistentTree<Integer> v2 = v1.without(2).with(4);
+
+        assertTrue(empty.isEmpty());
+        assertEquals(List.of(1, 2, 3), v1.asList());
+        assertEquals(List.of(1, 3, 4), v2.asList());
+        assertSame(v2, v2.without(10), "Удаление отсутствующего элемента не создаёт новую версию");
+        assertTrue(v2.cleared().isEmpty());
+        assertEquals(3, v2.size());
+    }
+
+    @Test
+    void shouldReplaceEqualElement() {
+        Comparator<int[]> byKey = Comparator.comparingInt(pair -> pair[0]);
+        PersistentTree<int[]> tree = PersistentTree.<int[]>empty(byKey).with(new int[]{1, 10}).with(new int[]{1, 20});
+
+        assertEquals(1, tree.size());
+        assertEquals(20, tree.get(0)[1]);
+    }
+
+    @Test
+    void shouldFindAndRankByTarget() {
+        List<Integer> values = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            values.add(i * 2);
+        }
+        PersistentTree<Integer> tree = PersistentTree.of(ORDER, values);
+
+        assertEquals(500, tree.find(value -> Integer.compare(500, value)));
+        assertNull(tree.find(value -> Integer.compare(501, value)));
+        assertEquals(251, tree.rank(value -> value < 501 ? 1 : -1));
+        assertEquals(0, tree.rank(value -> -1));
+        assertEquals(1_000, tree.rank(value -> 1));
+    }
+
+    @Test
+    void shouldIterateSubListViewsWithoutCopying() {
+        List<Integer> values = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            values.add(i);
+        }
+        PersistentTree<Integer> tree = PersistentTree.of(ORDER, values);
+
+        List<Integer> view = tree.asList(10, 60);
+        assertEquals(values.subList(10, 60), view);
+        assertEquals(values.subList(20, 30), view.subList(10, 20));
+        assertEquals(List.of(), tree.asList(50, 50));
+        assertThrows(UnsupportedOperationException.class, () -> view.add(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> tree.asList(90, 101));
+    }
+}
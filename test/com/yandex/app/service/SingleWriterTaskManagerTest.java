@@ -0,0 +1,155 @@
+package com.yandex.app.service;
+
+import com.yandex.app.model.Epic;
+import com.yandex.app.model.Subtask;
+import com.yandex.app.model.Task;
+import com.yandex.app.model.TaskStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleWriterTaskManagerTest extends TaskManagerTest<SingleWriterTaskManager> {
+
+    @Override
+    protected SingleWriterTaskManager createManager() {
+        return new SingleWriterTaskManager(new InMemoryTaskManager(), 64);
+    }
+
+    @AfterEach
+    void tearDown() {
+        manager.close();
+    }
+
+    @Test
+    void shouldAssignUniqueIdsUnderConcurrentWrites() throws InterruptedException {
+        Epic epic = new Epic("Эпик", "Описание");
+        manager.addEpic(epic);
+        LocalDateTime base = LocalDateTime.of(2025, 6, 1, 0, 0);
+        List<Throwable> errors = new CopyOnWriteArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+
+        for (int i = 0; i < 400; i++) {
+            int n = i;
+            pool.execute(() -> {
+                try {
+                    manager.addSubtask(new Subtask(0, "Подзадача " + n, "", TaskStatus.DONE,
+                            Duration.ofMinutes(30), base.plusHours(n), epic.getId()));
+                    manager.getPrioritizedTasks();
+                    manager.getSubtasksOfEpic(epic.getId());
+                } catch (Throwable e) {
+                    errors.add(e);
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertTrue(errors.isEmpty(), "Ошибки при параллельной работе: " + errors);
+        Set<Integer> ids = new HashSet<>();
+        manager.getAllSubtasks().forEach(s -> ids.add(s.getId()));
+        assertEquals(400, ids.size(), "Каждая подзадача должна получить свой id");
+        Epic stored = manager.getAllEpics().get(0);
+        assertEquals(TaskStatus.DONE, stored.getStatus());
+        assertEquals(Duration.ofMinutes(400 * 30), stored.getDuration().orElseThrow());
+    }
+
+    @Test
+    void shouldCompleteAsyncCommandsInOrderAndReportFailures() {
+        LocalDateTime start = LocalDateTime.of(2025, 6, 1, 10, 0);
+        Task first = new Task(0, "Первая", "", TaskStatus.NEW, Duration.ofMinutes(60), start);
+        Task overlapping = new Task(0, "Вторая", "", TaskStatus.NEW, Duration.ofMinutes(30), start);
+
+        CompletableFuture<Void> added = manager.addTaskAsync(first);
+        CompletableFuture<Void> rejected = manager.addTaskAsync(overlapping);
+        Task untimed = new Task("Третья", "", TaskStatus.NEW);
+        CompletableFuture<Void> next = manager.addTaskAsync(untimed);
+
+        added.join();
+        CompletionException error = assertThrows(CompletionException.class, rejected::join);
+        assertTrue(error.getCause() instanceof IllegalArgumentException, "Ошибка операции передаётся в результат");
+        next.join();
+        assertEquals(List.of(first, untimed), manager.getAllTasks());
+        assertEquals(first.getId() + 1, untimed.getId(), "Отклонённая команда не занимает id");
+        assertThrows(EpicNotFoundException.class,
+                () -> manager.addSubtask(new Subtask("Подзадача", "", TaskStatus.NEW, 999)));
+    }
+
+    @Test
+    void shouldKeepWritingAfterTransactionThrowsError() throws Exception {
+        CompletableFuture<Void> failed = manager.runInTransactionAsync(tm -> {
+            tm.addTask(new Task("Откатится", "", TaskStatus.NEW));
+            throw new AssertionError("ошибка в транзакции");
+        });
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> failed.get(2, TimeUnit.SECONDS));
+        assertTrue(error.getCause() instanceof AssertionError, "Error передаётся в результат");
+        assertThrows(AssertionError.class, () -> manager.runInTransaction(tm -> {
+            throw new AssertionError("ошибка в блокирующем вызове");
+        }));
+        Task task = new Task("После ошибки", "", TaskStatus.NEW);
+        manager.addTask(task);
+        assertEquals(List.of(task), manager.getAllTasks());
+    }
+
+    @Test
+    void shouldRejectCommandsAfterClose() {
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            pending.add(manager.addTaskAsync(new Task("Задача " + i, "", TaskStatus.NEW)));
+        }
+        manager.close();
+
+        pending.forEach(CompletableFuture::join);
+        assertEquals(100, manager.getAllTasks().size(), "Принятые команды выполняются до закрытия");
+        assertThrows(IllegalStateException.class, () -> manager.addTask(new Task("Поздняя", "", TaskStatus.NEW)));
+    }
+
+    @Test
+    void shouldPersistWholeBatchToJournal() throws IOException {
+        File file = File.createTempFile("java-kanban", ".csv");
+        try {
+            FileBackedTaskManager backed = new FileBackedTaskManager(file, PersistenceMode.JOURNAL);
+            SingleWriterTaskManager writer = new SingleWriterTaskManager(backed);
+            writer.addEpic(new Epic("Эпик", ""));
+            List<CompletableFuture<Void>> pending = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                pending.add(writer.addTaskAsync(new Task("Задача " + i, "", TaskStatus.NEW)));
+            }
+            pending.forEach(CompletableFuture::join);
+            writer.close();
+            CommitStats stats = backed.getCommitStats();
+            backed.close();
+
+            assertEquals(500, stats.getRecords());
+            assertTrue(stats.getBatches() < 500, "Записи пачки команд сбрасываются на диск вместе: " + stats);
+            FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(file, PersistenceMode.JOURNAL);
+            assertEquals(500, loaded.getAllTasks().size());
+            assertEquals(1, loaded.getAllEpics().size());
+            loaded.close();
+        } finally {
+            File[] files = file.getParentFile().listFiles((dir, name) -> name.startsWith(file.getName()));
+            if (files != null) {
+                for (File f : files) {
+                    f.delete();
+                }
+            }
+        }
+    }
+}
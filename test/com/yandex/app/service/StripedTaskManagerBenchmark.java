@@ -0,0 +1,103 @@
+package com.yandex.app.service;
+
+import com.yandex.app.model.Epic;
+import com.yandex.app.model.Subtask;
+import com.yandex.app.model.TaskStatus;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Supplier;
+
+/**
+ * Пропускная способность записей подзадач при 1–16 пишущих потоках:
+ * одна общая блокировка ({@link ConcurrentTaskManager} над {@link InMemoryTaskManager})
+ * против блокировок по эпикам ({@link StripedTaskManager}).
+ * <p>
+ * Каждый поток пишет в свои эпики: добавляет подзадачу и затем дважды меняет её статус,
+ * так что на одну подзадачу приходится три записи с пересчётом эпика. Подзадачи разных потоков
+ * не пересекаются по времени. Прогон с временем проходит через общее расписание,
+ * прогон без времени затрагивает только эпики.
+ * Запуск: java com.yandex.app.service.StripedTaskManagerBenchmark [подзадач на поток]
+ */
+public class StripedTaskManagerBenchmark {
+
+    private static final int[] THREADS = {1, 2, 4, 8, 16};
+    private static final int EPICS_PER_THREAD = 4;
+    private static final LocalDateTime BASE = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+    public static void main(String[] args) throws InterruptedException {
+        int perThread = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        System.out.printf("Ядер: %d, подзадач на поток: %d, записей на подзадачу: 3%n",
+                Runtime.getRuntime().availableProcessors(), perThread);
+
+        for (boolean timed : new boolean[]{true, false}) {
+            System.out.println(timed ? "Подзадачи с временем:" : "Подзадачи без времени:");
+            System.out.printf("%8s %22s %22s%n", "потоков", "общая блокировка", "полосы по эпикам");
+            // Прогрев JIT на обоих вариантах
+            run(() -> new ConcurrentTaskManager(new InMemoryTaskManager()), 4, perThread / 4, timed);
+            run(StripedTaskManager::new, 4, perThread / 4, timed);
+            for (int threads : THREADS) {
+                double global = run(() -> new ConcurrentTaskManager(new InMemoryTaskManager()), threads, perThread, timed);
+                double striped = run(StripedTaskManager::new, threads, perThread, timed);
+                System.out.printf("%8d %16.0f оп/мс %16.0f оп/мс%n", threads, global, striped);
+            }
+        }
+    }
+
+    /**
+     * Выполняет прогон и возвращает число записей в миллисекунду.
+     */
+    private static double run(Supplier<TaskManager> factory, int threads, int perThread, boolean timed)
+            throws InterruptedException {
+        TaskManager manager = factory.get();
+        int[][] epicIds = new int[threads][EPICS_PER_THREAD];
+        for (int t = 0; t < threads; t++) {
+            for (int e = 0; e < EPICS_PER_THREAD; e++) {
+                Epic epic = new Epic("Эпик", "");
+                manager.addEpic(epic);
+                epicIds[t][e] = epic.getId();
+            }
+        }
+
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            Thread writer = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < perThread; i++) {
+                        // Поток занимает каждый threads-й получасовой отрезок
+                        LocalDateTime startTime = timed
+                                ? BASE.plusMinutes(30L * ((long) i * threads + thread))
+                                : null;
+                        Subtask subtask = new Subtask(0, "Подзадача", "", TaskStatus.NEW,
+                                timed ? Duration.ofMinutes(30) : null, startTime,
+                                epicIds[thread][i % EPICS_PER_THREAD]);
+                        manager.addSubtask(subtask);
+                        subtask.setStatus(TaskStatus.IN_PROGRESS);
+                        manager.updateSubtask(subtask);
+                        subtask.setStatus(TaskStatus.DONE);
+                        manager.updateSubtask(subtask);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+            writer.start();
+        }
+
+        long began = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - began;
+
+        if (manager.getAllSubtasks().size() != threads * perThread) {
+            throw new IllegalStateException("Потеряны подзадачи");
+        }
+        return threads * perThread * 3 / (elapsed / 1_000_000.0);
+    }
+}
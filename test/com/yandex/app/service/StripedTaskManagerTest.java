@@ -0,0 +1,211 @@
+package com.yandex.app.service;
+
+import com.yandex.app.model.Epic;
+import com.yandex.app.model.Subtask;
+import com.yandex.app.model.Task;
+import com.yandex.app.model.TaskStatus;
+import com.yandex.app.model.TypeTask;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StripedTaskManagerTest extends TaskManagerTest<StripedTaskManager> {
+
+    @Override
+    protected StripedTaskManager createManager() {
+        return new StripedTaskManager();
+    }
+
+    @Test
+    void shouldKeepEpicsConsistentWhenWritingToManyEpicsInParallel() throws InterruptedException {
+        int epicCount = 8;
+        int perEpic = 100;
+        List<Epic> epics = new ArrayList<>();
+        for (int i = 0; i < epicCount; i++) {
+            Epic epic = new Epic("Эпик " + i, "");
+            manager.addEpic(epic);
+            epics.add(epic);
+        }
+        LocalDateTime base = LocalDateTime.of(2025, 6, 1, 0, 0);
+        List<Throwable> errors = new CopyOnWriteArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(epicCount);
+
+        for (int e = 0; e < epicCount; e++) {
+            int epicIndex = e;
+            int epicId = epics.get(e).getId();
+            pool.execute(() -> {
+                try {
+                    for (int i = 0; i < perEpic; i++) {
+                        // У каждой подзадачи свой час, общий для всех эпиков порядок слотов
+                        LocalDateTime start = base.plusHours((long) i * epicCount + epicIndex);
+                        Subtask subtask = new Subtask(0, "Подзадача", "", TaskStatus.NEW,
+                                Duration.ofMinutes(30), start, epicId);
+                        manager.addSubtask(subtask);
+                        subtask.setStatus(TaskStatus.DONE);
+                        manager.updateSubtask(subtask);
+                        manager.getSubtasksOfEpic(epicId);
+                        manager.getPrioritizedTasks();
+                    }
+                } catch (Throwable ex) {
+                    errors.add(ex);
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertTrue(errors.isEmpty(), "Ошибки при параллельной работе: " + errors);
+        Set<Integer> ids = new HashSet<>();
+        manager.getAllSubtasks().forEach(s -> ids.add(s.getId()));
+        assertEquals(epicCount * perEpic, ids.size(), "Каждая подзадача должна получить свой id");
+        assertEquals(epicCount * perEpic, manager.getPrioritizedTasks().size());
+        for (Epic epic : manager.getAllEpics()) {
+            assertEquals(perEpic, epic.getSubtaskCount());
+            assertEquals(TaskStatus.DONE, epic.getStatus());
+            assertEquals(Duration.ofMinutes(perEpic * 30L), epic.getDuration().orElseThrow());
+        }
+    }
+
+    @Test
+    void shouldRejectOverlapsBetweenEpicsWrittenConcurrently() throws InterruptedException {
+        Epic first = new Epic("Эпик 1", "");
+        Epic second = new Epic("Эпик 2", "");
+        manager.addEpic(first);
+        manager.addEpic(second);
+        LocalDateTime base = LocalDateTime.of(2025, 6, 1, 0, 0);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+
+        // Оба эпика претендуют на одни и те же часы — в каждый час должна попасть ровно одна подзадача
+        for (Epic epic : List.of(first, second)) {
+            pool.execute(() -> {
+                for (int i = 0; i < 200; i++) {
+                    try {
+                        manager.addSubtask(new Subtask(0, "Подзадача", "", TaskStatus.NEW,
+                                Duration.ofMinutes(60), base.plusHours(i), epic.getId()));
+                    } catch (IllegalArgumentException ignored) {
+                        // час уже занят подзадачей другого эпика
+                    }
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+
+        List<Task> prioritized = manager.getPrioritizedTasks();
+        assertEquals(200, prioritized.size());
+        for (int i = 0; i < prioritized.size(); i++) {
+            assertEquals(base.plusHours(i), prioritized.get(i).getStartTime().orElseThrow());
+        }
+        assertEquals(200, manager.getAllEpics().stream().mapToInt(Epic::getSubtaskCount).sum());
+    }
+
+    @Test
+    void shouldNotKeepDeletedSubtasksInHistoryWhenViewsRaceWithDeletes() throws InterruptedException {
+        Epic epic = new Epic("Эпик", "");
+        manager.addEpic(epic);
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Subtask subtask = new Subtask("Подзадача " + i, "", TaskStatus.NEW, epic.getId());
+            manager.addSubtask(subtask);
+            ids.add(subtask.getId());
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < ids.size(); i++) {
+            int id = ids.get(i);
+            pool.execute(() -> manager.getSubtaskById(id));
+            if (i % 2 == 0) {
+                pool.execute(() -> manager.deleteSubtaskById(id));
+            }
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+
+        Set<Integer> present = new HashSet<>();
+        manager.getAllSubtasks().forEach(s -> present.add(s.getId()));
+        for (Task viewed : manager.getHistory()) {
+            assertTrue(present.contains(viewed.getId()), "В истории осталась удалённая подзадача " + viewed.getId());
+        }
+        assertEquals(100, present.size());
+        assertEquals(100, manager.getEpicById(epic.getId()).orElseThrow().getSubtaskCount());
+    }
+
+    @Test
+    void shouldNotConsumeIdsWhenBatchIsRolledBack() {
+        LocalDateTime start = LocalDateTime.of(2025, 7, 1, 9, 0);
+        Task kept = new Task(0, "Задача", "", TaskStatus.NEW, Duration.ofMinutes(60), start);
+        manager.addTask(kept);
+
+        assertThrows(IllegalArgumentException.class, () -> manager.applyBatch(List.of(
+                Operation.add(new Task("Новая", "", TaskStatus.NEW)),
+                Operation.add(new Epic("Эпик", "")),
+                Operation.add(new Task(0, "Пересекается", "", TaskStatus.NEW, Duration.ofMinutes(30), start)))));
+
+        Task next = new Task("Следующая", "", TaskStatus.NEW);
+        manager.addTask(next);
+        assertEquals(kept.getId() + 1, next.getId(), "Отменённый пакет не должен расходовать id");
+    }
+
+    @Test
+    void shouldKeepSubtaskOrderOfEpicWhenBatchIsRolledBack() {
+        Epic epic = new Epic("Эпик", "");
+        manager.addEpic(epic);
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Subtask subtask = new Subtask("Подзадача " + i, "", TaskStatus.NEW, epic.getId());
+            manager.addSubtask(subtask);
+            ids.add(subtask.getId());
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> manager.applyBatch(List.of(
+                Operation.delete(TypeTask.SUBTASK, ids.get(0)),
+                Operation.delete(TypeTask.SUBTASK, ids.get(1)),
+                Operation.delete(TypeTask.TASK, 999))));
+
+        assertEquals(ids, manager.getSubtasksOfEpic(epic.getId()).stream().map(Task::getId).toList());
+    }
+
+    @Test
+    void shouldNotShowPartOfBatchToConcurrentReaders() throws InterruptedException {
+        List<Throwable> errors = new CopyOnWriteArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        pool.execute(() -> {
+            for (int i = 0; i < 300; i++) {
+                manager.applyBatch(List.of(
+                        Operation.add(new Task("Первая", "", TaskStatus.NEW)),
+                        Operation.add(new Task("Вторая", "", TaskStatus.NEW))));
+            }
+        });
+        pool.execute(() -> {
+            try {
+                for (int i = 0; i < 300; i++) {
+                    int size = manager.getAllTasks().size();
+                    assertEquals(0, size % 2, "Видна половина пакета: " + size);
+                }
+            } catch (Throwable ex) {
+                errors.add(ex);
+            }
+        });
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertTrue(errors.isEmpty(), "Ошибки чтения: " + errors);
+        assertEquals(600, manager.getAllTasks().size());
+    }
+
+    @Test
+    void shouldRejectNonPositiveStripeCount() {
+        assertThrows(IllegalArgumentException.class, () -> new StripedTaskManager(0));
+        assertDoesNotThrow(() -> new StripedTaskManager(3));
+    }
+}
@@ -6,7 +6,11 @@ import org.junit.jupiter.api.Test;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Optional;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -169,4 +173,283 @@ abstract class TaskManagerTest<T extends TaskManager> {
         List<Task> sorted = manager.getPrioritizedTasks();
         assertEquals(List.of(t1, t2), sorted, "Задачи должны быть отсортированы по startTime");
     }
+
+    @Test
+    void shouldAllowAdjacentIntervalsAndRejectEnclosedOnes() {
+        LocalDateTime start = LocalDateTime.of(2025, 11, 1, 10, 0);
+        Task first = new Task("first", "Описание", TaskStatus.NEW);
+        first.setStartTime(start);
+        first.setDuration(Duration.ofMinutes(60));
+        manager.addTask(first);
+
+        Task adjacent = new Task("adjacent", "Описание", TaskStatus.NEW);
+        adjacent.setStartTime(start.plusMinutes(60));
+        adjacent.setDuration(Duration.ofMinutes(30));
+        assertDoesNotThrow(() -> manager.addTask(adjacent), "Смежные интервалы не пересекаются");
+
+        Task before = new Task("before", "Описание", TaskStatus.NEW);
+        before.setStartTime(start.minusMinutes(30));
+        before.setDuration(Duration.ofMinutes(30));
+        assertDoesNotThrow(() -> manager.addTask(before));
+
+        Task enclosing = new Task("enclosing", "Описание", TaskStatus.NEW);
+        enclosing.setStartTime(start.minusHours(2));
+        enclosing.setDuration(Duration.ofHours(5));
+        assertThrows(IllegalArgumentException.class, () -> manager.addTask(enclosing));
+
+        Task point = new Task("point", "Описание", TaskStatus.NEW);
+        point.setStartTime(start.plusMinutes(10));
+        point.setDuration(Duration.ZERO);
+        assertThrows(IllegalArgumentException.class, () -> manager.addTask(point),
+                "Пустой интервал внутри занятого времени пересекается с ним");
+    }
+
+    @Test
+    void shouldFreeTimeOfSubtasksWhenEpicIsDeleted() {
+        LocalDateTime start = LocalDateTime.of(2025, 11, 1, 10, 0);
+        Epic epic = new Epic("Эпик", "Описание");
+        manager.addEpic(epic);
+        Subtask sub = new Subtask("Подзадача", "Описание", TaskStatus.NEW, epic.getId());
+        sub.setStartTime(start);
+        sub.setDuration(Duration.ofMinutes(30));
+        manager.addSubtask(sub);
+        manager.deleteEpicById(epic.getId());
+
+        Task task = new Task("Задача", "Описание", TaskStatus.NEW);
+        task.setStartTime(start);
+        task.setDuration(Duration.ofMinutes(30));
+        assertDoesNotThrow(() -> manager.addTask(task), "Время удалённой подзадачи должно освободиться");
+    }
+
+    @Test
+    void shouldKeepTaskPrioritizedAfterRejectedUpdate() {
+        LocalDateTime start = LocalDateTime.of(2025, 11, 1, 10, 0);
+        Task first = new Task("first", "Описание", TaskStatus.NEW);
+        first.setStartTime(start);
+        first.setDuration(Duration.ofMinutes(30));
+        manager.addTask(first);
+        Task second = new Task("second", "Описание", TaskStatus.NEW);
+        second.setStartTime(start.plusHours(1));
+        second.setDuration(Duration.ofMinutes(30));
+        manager.addTask(second);
+
+        Task moved = new Task(second);
+        moved.setStartTime(start.plusMinutes(15));
+        assertThrows(IllegalArgumentException.class, () -> manager.updateTask(moved));
+        assertEquals(List.of(first, second), manager.getPrioritizedTasks());
+
+        Task overlapping = new Task("third", "Описание", TaskStatus.NEW);
+        overlapping.setStartTime(start.plusMinutes(70));
+        overlapping.setDuration(Duration.ofMinutes(10));
+        assertThrows(IllegalArgumentException.class, () -> manager.addTask(overlapping),
+                "Время задачи после отклонённого обновления остаётся занятым");
+    }
+
+    @Test
+    void shouldFindEarliestFreeSlot() {
+        LocalDateTime start = LocalDateTime.of(2025, 11, 1, 10, 0);
+        Task first = new Task("first", "Описание", TaskStatus.NEW);
+        first.setStartTime(start);
+        first.setDuration(Duration.ofMinutes(50)); // до 10:50, внутри слота 10:45
+        manager.addTask(first);
+        Task second = new Task("second", "Описание", TaskStatus.NEW);
+        second.setStartTime(start.plusMinutes(80));
+        second.setDuration(Duration.ofMinutes(60)); // 11:20 - 12:20
+        manager.addTask(second);
+
+        assertEquals(start.minusHours(1), manager.findEarliestFreeSlot(Duration.ofMinutes(60), start.minusHours(1))
+                .orElseThrow(), "Свободное время с самого notBefore");
+        assertEquals(start.plusMinutes(50), manager.findEarliestFreeSlot(Duration.ofMinutes(30), start)
+                .orElseThrow(), "Окно сразу после окончания задачи");
+        assertEquals(start.plusMinutes(140), manager.findEarliestFreeSlot(Duration.ofMinutes(45), start)
+                .orElseThrow(), "Короткий промежуток между задачами пропускается");
+        assertThrows(IllegalArgumentException.class, () -> manager.findEarliestFreeSlot(Duration.ZERO, start));
+    }
+
+    @Test
+    void shouldReturnPrioritizedTasksInWindow() {
+        LocalDateTime day = LocalDateTime.of(2025, 11, 1, 0, 0);
+        Task yesterday = new Task("yesterday", "Описание", TaskStatus.NEW);
+        yesterday.setStartTime(day.minusHours(2));
+        yesterday.setDuration(Duration.ofMinutes(30));
+        manager.addTask(yesterday);
+        Task morning = new Task("morning", "Описание", TaskStatus.NEW);
+        morning.setStartTime(day);
+        morning.setDuration(Duration.ofMinutes(30));
+        manager.addTask(morning);
+        Task evening = new Task("evening", "Описание", TaskStatus.NEW);
+        evening.setStartTime(day.plusHours(20));
+        evening.setDuration(Duration.ofMinutes(30));
+        manager.addTask(evening);
+        Task tomorrow = new Task("tomorrow", "Описание", TaskStatus.NEW);
+        tomorrow.setStartTime(day.plusDays(1));
+        tomorrow.setDuration(Duration.ofMinutes(30));
+        manager.addTask(tomorrow);
+
+        assertEquals(List.of(morning, evening), manager.getPrioritizedTasks(day, day.plusDays(1)),
+                "Начало интервала включается, конец — нет");
+        assertEquals(List.of(yesterday, morning), manager.getPrioritizedTasks(null, day.plusHours(1)));
+        assertEquals(List.of(tomorrow), manager.getPrioritizedTasks(day.plusDays(1), null));
+        assertEquals(manager.getPrioritizedTasks(), manager.getPrioritizedTasks(null, null));
+        assertThrows(IllegalArgumentException.class, () -> manager.getPrioritizedTasks(day.plusDays(1), day));
+    }
+
+    @Test
+    void shouldKeepEpicFieldsInSyncWithSubtasks() {
+        Epic epic = new Epic("Эпик", "Описание");
+        manager.addEpic(epic);
+        LocalDateTime base = LocalDateTime.of(2025, 11, 1, 0, 0);
+        Random random = new Random(3);
+        List<Integer> ids = new ArrayList<>();
+
+        for (int i = 0; i < 300; i++) {
+            TaskStatus status = TaskStatus.values()[random.nextInt(TaskStatus.values().length)];
+            int action = ids.isEmpty() ? 0 : random.nextInt(3);
+            if (action == 2) {
+                manager.deleteSubtaskById(ids.remove(random.nextInt(ids.size())));
+            } else {
+                int id = action == 1 ? ids.get(random.nextInt(ids.size())) : 0;
+                Subtask subtask = new Subtask(id, "Подзадача", "Описание", status,
+                        random.nextBoolean() ? Duration.ofMinutes(random.nextInt(4) * 15) : null,
+                        random.nextInt(4) > 0 ? base.plusHours(i).plusMinutes(random.nextInt(2) * 15) : null,
+                        epic.getId());
+                if (action == 1) {
+                    manager.updateSubtask(subtask);
+                } else {
+                    manager.addSubtask(subtask);
+                    ids.add(subtask.getId());
+                }
+            }
+
+            List<Subtask> subtasks = manager.getSubtasksOfEpic(epic.getId());
+            Epic stored = manager.getAllEpics().get(0);
+            TaskStatus expectedStatus = subtasks.stream().allMatch(s -> s.getStatus() == TaskStatus.DONE) && !subtasks.isEmpty()
+                    ? TaskStatus.DONE
+                    : subtasks.stream().allMatch(s -> s.getStatus() == TaskStatus.NEW) ? TaskStatus.NEW : TaskStatus.IN_PROGRESS;
+            assertEquals(expectedStatus, stored.getStatus(), "Статус эпика на шаге " + i);
+            assertEquals(subtasks.stream().map(Subtask::getDuration).flatMap(Optional::stream)
+                    .reduce(Duration.ZERO, Duration::plus), stored.getDuration().orElseThrow(), "Длительность на шаге " + i);
+            assertEquals(subtasks.stream().map(Subtask::getStartTime).flatMap(Optional::stream)
+                    .min(Comparator.naturalOrder()), stored.getStartTime(), "Начало на шаге " + i);
+            assertEquals(subtasks.stream().map(Subtask::getEndTime).flatMap(Optional::stream)
+                    .max(Comparator.naturalOrder()), stored.getEndTime(), "Окончание на шаге " + i);
+        }
+
+        manager.deleteAllSubtasks();
+        Epic cleared = manager.getAllEpics().get(0);
+        assertEquals(TaskStatus.NEW, cleared.getStatus());
+        assertTrue(cleared.getStartTime().isEmpty() && cleared.getEndTime().isEmpty());
+    }
+
+    @Test
+    void shouldRejectMovingSubtaskToAnotherEpic() {
+        Epic first = new Epic("Первый", "Описание");
+        Epic second = new Epic("Второй", "Описание");
+        manager.addEpic(first);
+        manager.addEpic(second);
+        Subtask subtask = new Subtask("Подзадача", "Описание", TaskStatus.DONE, first.getId());
+        manager.addSubtask(subtask);
+
+        Subtask moved = new Subtask(subtask.getId(), "Подзадача", "Описание", TaskStatus.NEW, null, null, second.getId());
+        assertThrows(IllegalArgumentException.class, () -> manager.updateSubtask(moved));
+        assertEquals(TaskStatus.DONE, manager.getEpicById(first.getId()).orElseThrow().getStatus());
+    }
+
+    @Test
+    void shouldApplyBatchOfEpicWithSubtasks() {
+        LocalDateTime start = LocalDateTime.of(2025, 7, 1, 9, 0);
+        Epic epic = new Epic("Импорт", "Описание");
+        epic.setId(100); // id задаётся заранее, чтобы подзадачи пакета могли на него ссылаться
+        List<Operation> operations = new ArrayList<>();
+        operations.add(Operation.add(epic));
+        List<Subtask> subtasks = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            Subtask subtask = new Subtask(0, "Подзадача " + i, "", i == 0 ? TaskStatus.IN_PROGRESS : TaskStatus.DONE,
+                    Duration.ofMinutes(30), start.plusHours(i), epic.getId());
+            subtasks.add(subtask);
+            operations.add(Operation.add(subtask));
+        }
+        Subtask last = subtasks.get(49);
+
+        manager.applyBatch(operations);
+
+        assertEquals(50, manager.getSubtasksOfEpic(100).size());
+        assertTrue(subtasks.stream().allMatch(s -> s.getId() > 0), "Подзадачам пакета назначены id");
+        Epic stored = manager.getAllEpics().get(0);
+        assertEquals(TaskStatus.IN_PROGRESS, stored.getStatus());
+        assertEquals(start, stored.getStartTime().orElseThrow());
+        assertEquals(last.getEndTime(), stored.getEndTime());
+        assertEquals(Duration.ofMinutes(50 * 30), stored.getDuration().orElseThrow());
+        assertEquals(50, manager.getPrioritizedTasks().size());
+    }
+
+    @Test
+    void shouldApplyLaterOperationsOfBatchOnTopOfEarlierOnes() {
+        Epic epic = new Epic("Эпик", "");
+        manager.addEpic(epic);
+        Subtask subtask = new Subtask("Подзадача", "", TaskStatus.NEW, epic.getId());
+        manager.addSubtask(subtask);
+        LocalDateTime start = LocalDateTime.of(2025, 7, 1, 9, 0);
+        Task moved = new Task(0, "Задача", "", TaskStatus.NEW, Duration.ofMinutes(60), start);
+        manager.addTask(moved);
+
+        // Освобождённый первой операцией интервал занимает следующая
+        Task replacement = new Task(0, "Замена", "", TaskStatus.NEW, Duration.ofMinutes(60), start);
+        manager.applyBatch(List.of(
+                Operation.update(new Task(moved.getId(), "Задача", "", TaskStatus.NEW, Duration.ofMinutes(60), start.plusHours(2))),
+                Operation.add(replacement),
+                Operation.update(new Subtask(subtask.getId(), "Подзадача", "", TaskStatus.DONE, null, null, epic.getId())),
+                Operation.delete(TypeTask.SUBTASK, subtask.getId())));
+
+        assertEquals(List.of(replacement.getId(), moved.getId()),
+                manager.getPrioritizedTasks().stream().map(Task::getId).toList());
+        assertTrue(manager.getSubtasksOfEpic(epic.getId()).isEmpty());
+        assertEquals(TaskStatus.NEW, manager.getAllEpics().get(0).getStatus());
+    }
+
+    @Test
+    void shouldRollBackWholeBatchWhenOperationFails() {
+        LocalDateTime start = LocalDateTime.of(2025, 7, 1, 9, 0);
+        Task kept = new Task(0, "Задача", "", TaskStatus.NEW, Duration.ofMinutes(60), start);
+        manager.addTask(kept);
+        Epic epic = new Epic("Эпик", "");
+        manager.addEpic(epic);
+        Subtask subtask = new Subtask(0, "Подзадача", "", TaskStatus.DONE, Duration.ofMinutes(30), start.plusHours(3), epic.getId());
+        manager.addSubtask(subtask);
+        manager.getTaskById(kept.getId());
+        manager.getSubtaskById(subtask.getId());
+        manager.getEpicById(epic.getId());
+
+        Task added = new Task("Новая", "", TaskStatus.NEW);
+        Task overlapping = new Task(0, "Пересекается", "", TaskStatus.NEW, Duration.ofMinutes(30), start.plusHours(3));
+        List<Operation> operations = List.of(
+                Operation.add(added),
+                Operation.delete(TypeTask.TASK, kept.getId()),
+                Operation.update(new Subtask(subtask.getId(), "Подзадача", "", TaskStatus.NEW,
+                        Duration.ofMinutes(30), start.plusHours(5), epic.getId())),
+                Operation.deleteAll(TypeTask.EPIC),
+                Operation.add(new Task(0, "Заняла", "", TaskStatus.NEW, Duration.ofMinutes(30), start.plusHours(5))),
+                Operation.add(new Task(0, "Свободно", "", TaskStatus.NEW, Duration.ofMinutes(30), start.plusHours(3))),
+                Operation.add(new Task(0, "Свободно", "", TaskStatus.NEW, Duration.ofMinutes(30), start)),
+                Operation.add(overlapping));
+
+        assertThrows(IllegalArgumentException.class, () -> manager.applyBatch(operations));
+
+        assertEquals(0, added.getId(), "Добавленной задаче возвращается прежний id");
+        assertEquals(List.of("Задача"), manager.getAllTasks().stream().map(Task::getTitle).toList());
+        assertEquals(List.of(subtask.getId()), manager.getSubtasksOfEpic(epic.getId()).stream().map(Task::getId).toList());
+        Epic stored = manager.getAllEpics().get(0);
+        assertEquals(TaskStatus.DONE, stored.getStatus());
+        assertEquals(start.plusHours(3), stored.getStartTime().orElseThrow());
+        assertEquals(List.of(kept.getId(), subtask.getId()),
+                manager.getPrioritizedTasks().stream().map(Task::getId).toList());
+        assertEquals(List.of(kept.getId(), subtask.getId(), epic.getId()),
+                manager.getHistory().stream().map(Task::getId).toList(), "История восстановлена в прежнем порядке");
+        assertThrows(IllegalArgumentException.class, () -> manager.addTask(
+                new Task(0, "Занято", "", TaskStatus.NEW, Duration.ofMinutes(30), start.plusHours(3))));
+
+        manager.deleteSubtaskById(subtask.getId()); // восстановленные структуры работают как обычно
+        assertEquals(TaskStatus.NEW, manager.getAllEpics().get(0).getStatus());
+        assertTrue(manager.getHistory().stream().noneMatch(t -> t.getId() == subtask.getId()));
+    }
 }
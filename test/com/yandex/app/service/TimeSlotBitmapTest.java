@@ -0,0 +1,102 @@
+package com.yandex.app.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimeSlotBitmapTest {
+
+    @Test
+    void shouldMapTimeToSlots() {
+        LocalDateTime aligned = LocalDateTime.of(2025, 11, 1, 10, 15);
+        assertEquals(TimeSlotBitmap.slotOf(aligned), TimeSlotBitmap.slotAfter(aligned));
+        assertEquals(TimeSlotBitmap.slotOf(aligned) + 1, TimeSlotBitmap.slotAfter(aligned.plusSeconds(1)));
+        assertEquals(aligned, TimeSlotBitmap.startOf(TimeSlotBitmap.slotOf(aligned.plusMinutes(14))));
+
+        LocalDateTime beforeEpoch = LocalDateTime.of(1969, 12, 31, 23, 50);
+        assertEquals(-1, TimeSlotBitmap.slotOf(beforeEpoch));
+        assertEquals(0, TimeSlotBitmap.slotAfter(beforeEpoch));
+    }
+
+    @Test
+    void shouldAgreeWithBitSetOnRandomRanges() {
+        TimeSlotBitmap bitmap = new TimeSlotBitmap();
+        BitSet expected = new BitSet();
+        long offset = 5_000; // BitSet не поддерживает отрицательные индексы
+        Random random = new Random(7);
+
+        assertFalse(bitmap.anySet(-100, 100), "Пустая карта не содержит занятых слотов");
+        for (int i = 0; i < 2_000; i++) {
+            long from = random.nextInt(10_000) - offset;
+            long to = from + random.nextInt(300);
+            switch (random.nextInt(3)) {
+                case 0 -> {
+                    bitmap.set(from, to);
+                    expected.set((int) (from + offset), (int) (to + offset));
+                }
+                case 1 -> {
+                    bitmap.clear(from, to);
+                    expected.clear((int) (from + offset), (int) (to + offset));
+                }
+                default -> {
+                    boolean any = expected.get((int) (from + offset), (int) (to + offset)).cardinality() > 0;
+                    assertEquals(any, bitmap.anySet(from, to), "Диапазон " + from + ".." + to);
+                }
+            }
+        }
+        for (long slot = -offset; slot < 10_000 - offset; slot++) {
+            assertEquals(expected.get((int) (slot + offset)), bitmap.get(slot), "Слот " + slot);
+        }
+    }
+
+    @Test
+    void shouldKeepOnlyPopulatedWeeks() {
+        TimeSlotBitmap bitmap = new TimeSlotBitmap();
+        long now = TimeSlotBitmap.slotOf(LocalDateTime.of(2025, 11, 1, 10, 0));
+        long inTenYears = TimeSlotBitmap.slotOf(LocalDateTime.of(2035, 11, 1, 10, 0));
+        bitmap.set(now, now + 4);
+        bitmap.set(inTenYears, inTenYears + 4);
+        assertEquals(2, bitmap.segmentCount(), "Сегменты создаются только для недель с задачами");
+        assertTrue(bitmap.get(inTenYears));
+        assertFalse(bitmap.anySet(now + 4, inTenYears));
+
+        bitmap.clear(now, now + 4);
+        assertEquals(1, bitmap.segmentCount(), "Опустевший сегмент должен удаляться");
+
+        long weekEnd = (Math.floorDiv(inTenYears, TimeSlotBitmap.SEGMENT_SLOTS) + 1) * TimeSlotBitmap.SEGMENT_SLOTS;
+        bitmap.set(weekEnd - 2, weekEnd + 2);
+        assertEquals(2, bitmap.segmentCount(), "Диапазон на стыке недель занимает два сегмента");
+        assertTrue(bitmap.get(weekEnd - 1) && bitmap.get(weekEnd + 1));
+    }
+
+    @Test
+    void shouldFindFirstFreeRunLikeLinearScan() {
+        TimeSlotBitmap bitmap = new TimeSlotBitmap();
+        BitSet expected = new BitSet();
+        long offset = 3_000;
+        Random random = new Random(11);
+        for (int i = 0; i < 300; i++) {
+            long from = random.nextInt(6_000) - offset;
+            long to = from + 1 + random.nextInt(random.nextInt(10) == 0 ? 900 : 40);
+            if (random.nextInt(4) == 0) {
+                bitmap.clear(from, to);
+                expected.clear((int) (from + offset), (int) (to + offset));
+            } else {
+                bitmap.set(from, to);
+                expected.set((int) (from + offset), (int) (to + offset));
+            }
+
+            long start = random.nextInt(7_000) - offset;
+            long length = 1 + random.nextInt(random.nextInt(5) == 0 ? 1_500 : 20);
+            long found = start;
+            while (expected.get((int) (found + offset), (int) (found + offset + length)).cardinality() > 0) {
+                found++;
+            }
+            assertEquals(found, bitmap.findFree(start, length), "Отрезок длины " + length + " от " + start);
+        }
+    }
+}
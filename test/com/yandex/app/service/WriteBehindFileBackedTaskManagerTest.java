@@ -0,0 +1,95 @@
+package com.yandex.app.service;
+
+import com.yandex.app.model.Task;
+import com.yandex.app.model.TaskStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты FileBackedTaskManager в режиме отложенной записи.
+ */
+class WriteBehindFileBackedTaskManagerTest extends TaskManagerTest<FileBackedTaskManager> {
+
+    private File tempFile;
+
+    @Override
+    protected FileBackedTaskManager createManager() {
+        try {
+            tempFile = File.createTempFile("java-kanban", ".csv");
+            return new FileBackedTaskManager(tempFile, PersistenceMode.WRITE_BEHIND, settings(Duration.ofHours(1), 0, 0));
+        } catch (IOException e) {
+            throw new RuntimeException("Не удалось создать временный файл", e);
+        }
+    }
+
+    private static JournalSettings settings(Duration interval, long threshold, long maxUnflushed) {
+        JournalSettings settings = new JournalSettings();
+        settings.setFlushInterval(interval);
+        settings.setFlushThreshold(threshold);
+        settings.setMaxUnflushedChanges(maxUnflushed);
+        return settings;
+    }
+
+    @AfterEach
+    void cleanup() {
+        manager.close();
+        if (tempFile != null) {
+            File[] files = tempFile.getParentFile().listFiles((dir, name) -> name.startsWith(tempFile.getName()));
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    @Test
+    void shouldNotWriteSnapshotUntilFlush() {
+        manager.addTask(new Task("Задача", "Описание", TaskStatus.NEW));
+        assertEquals(0, tempFile.length(), "Изменение не должно сразу записываться на диск");
+
+        manager.flush();
+        assertEquals(1, FileBackedTaskManager.loadFromFile(tempFile).getAllTasks().size());
+    }
+
+    @Test
+    void shouldFlushInBackgroundWhenThresholdReached() throws InterruptedException {
+        manager.close();
+        manager = new FileBackedTaskManager(tempFile, PersistenceMode.WRITE_BEHIND, settings(Duration.ofHours(1), 3, 0));
+        for (int i = 0; i < 3; i++) {
+            manager.addTask(new Task("Задача " + i, "Описание", TaskStatus.NEW));
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (tempFile.length() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(3, FileBackedTaskManager.loadFromFile(tempFile).getAllTasks().size(),
+                "Снимок должен записаться в фоне по порогу изменений");
+    }
+
+    @Test
+    void shouldKeepAllChangesUnderBackpressure() throws InterruptedException {
+        manager.close();
+        manager = new FileBackedTaskManager(tempFile, PersistenceMode.WRITE_BEHIND, settings(Duration.ofHours(1), 0, 5));
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        for (int i = 0; i < 200; i++) {
+            int n = i;
+            pool.execute(() -> manager.addTask(new Task("Задача " + n, "Описание", TaskStatus.NEW)));
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS), "Операции не должны зависать при отставании записи");
+
+        manager.close();
+        assertEquals(200, FileBackedTaskManager.loadFromFile(tempFile).getAllTasks().size());
+    }
+}